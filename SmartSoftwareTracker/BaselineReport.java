@@ -0,0 +1,146 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Checks the inventory against a baseline manifest of minimum versions and reports
+// each product as OK, OUTDATED (some install is older than the minimum) or MISSING.
+// Manifest lines are "product,minimum version"; blank lines and # comments are skipped:
+//
+//   # Required at least
+//   Git,2.45
+//   VLC media player,3.0.20
+//
+// Products match by VersionIndex.productKey; records marked "Not Installed" don't count.
+public class BaselineReport {
+    public enum Result { OK, OUTDATED, MISSING }
+
+    public static final class Requirement {
+        private final String product;
+        private final Version minimum;
+
+        public Requirement(String product, String minimum) {
+            this.product = product;
+            this.minimum = Version.of(minimum);
+        }
+
+        public String getProduct() { return product; }
+        public Version getMinimum() { return minimum; }
+    }
+
+    public static final class Entry {
+        private final Requirement requirement;
+        private final List<Software> installs;
+        private final List<Software> outdated;
+
+        Entry(Requirement requirement, List<Software> installs, List<Software> outdated) {
+            this.requirement = requirement;
+            this.installs = installs;
+            this.outdated = outdated;
+        }
+
+        public Requirement getRequirement() { return requirement; }
+        public List<Software> getInstalls() { return installs; }
+        public List<Software> getOutdated() { return outdated; }
+
+        public Result getResult() {
+            if (installs.isEmpty()) return Result.MISSING;
+            return outdated.isEmpty() ? Result.OK : Result.OUTDATED;
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private BaselineReport(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static List<Requirement> readManifest(File file) throws IOException {
+        List<Requirement> requirements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                // Versions have no commas, product names may
+                int comma = line.lastIndexOf(',');
+                if (comma <= 0 || comma == line.length() - 1) {
+                    throw new IOException(file + ":" + lineNumber + ": expected product,version");
+                }
+                requirements.add(new Requirement(line.substring(0, comma).trim(), line.substring(comma + 1).trim()));
+            }
+        }
+        return requirements;
+    }
+
+    public static BaselineReport compare(VersionIndex index, List<Requirement> requirements) {
+        List<Entry> entries = new ArrayList<>(requirements.size());
+        for (Requirement requirement : requirements) {
+            List<Software> installs = new ArrayList<>();
+            List<Software> outdated = new ArrayList<>();
+            // Oldest first, so the outdated installs are a prefix
+            for (Software s : index.getInstalls(requirement.getProduct())) {
+                if (s.getStatus() == Status.NOT_INSTALLED) continue;
+                installs.add(s);
+                if (s.getParsedVersion().compareTo(requirement.getMinimum()) < 0) outdated.add(s);
+            }
+            entries.add(new Entry(requirement, installs, outdated));
+        }
+        return new BaselineReport(entries);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public int count(Result result) {
+        int count = 0;
+        for (Entry e : entries) {
+            if (e.getResult() == result) count++;
+        }
+        return count;
+    }
+
+    public void print(PrintStream out) {
+        for (Entry e : entries) {
+            Requirement r = e.getRequirement();
+            out.printf("%-9s %s (minimum %s)%n", e.getResult(), r.getProduct(), r.getMinimum());
+            for (Software s : e.getInstalls()) {
+                out.printf("          %s %s%s%n", s.getName(), s.getVersion(),
+                    e.getOutdated().contains(s) ? "  <- outdated" : "");
+            }
+        }
+        out.printf("%d ok, %d outdated, %d missing%n", count(Result.OK), count(Result.OUTDATED), count(Result.MISSING));
+    }
+
+    // Reports against the tracker's data file, or against captured "reg query" output:
+    //   java BaselineReport baseline.txt [software_data.txt]
+    //   java BaselineReport fixtures/baseline/manifest.txt fixtures/registry
+    // Exits 1 when anything is outdated or missing.
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java BaselineReport <manifest> [data file | registry capture directory]");
+            System.exit(2);
+        }
+        List<Requirement> requirements = readManifest(new File(args[0]));
+        File inventory = new File(args.length > 1 ? args[1] : "software_data.txt");
+
+        List<Software> rows = new ArrayList<>();
+        if (inventory.isDirectory()) {
+            for (RegistryEntry entry : new RegistryScanner(new FileScanSource(inventory.toPath())).scan()) {
+                if (entry.isApplication()) rows.add(entry.toSoftware());
+            }
+        } else {
+            rows = new TextSoftwareRepository(inventory).read();
+        }
+
+        BaselineReport report = compare(new VersionIndex(rows), requirements);
+        report.print(System.out);
+        if (report.count(Result.OUTDATED) + report.count(Result.MISSING) > 0) System.exit(1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,216 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary form of the data file.
+//
+//   header:     magic "SSTB", format version, generation, row count,
+//               dictionary count, dictionary offset, name heap offset, rows offset
+//   dictionary: length-prefixed UTF-8 strings shared by all rows (versions, statuses)
+//   name heap:  UTF-8 names back to back
+//   rows:       fixed width, ROW_BYTES each: name offset, name length,
+//               version id, install date as epoch day, status id
+//
+// Rows are addressed by offset, so a Software object is only created when get() reads it.
+public class BinarySnapshot {
+    private static final int MAGIC = 0x53535442; // "SSTB"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 4 + 4;
+    private static final int ROW_BYTES = 20;
+
+    private final ByteBuffer buffer;
+    private final long generation;
+    private final int rowCount;
+    private final String[] dictionary;
+    private final int heapOffset;
+    private final int rowsOffset;
+
+    private BinarySnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a binary snapshot");
+        if (buffer.getInt(4) != FORMAT_VERSION) throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+        generation = buffer.getLong(8);
+        rowCount = buffer.getInt(16);
+        int dictionaryCount = buffer.getInt(20);
+        int dictionaryOffset = buffer.getInt(24);
+        heapOffset = buffer.getInt(28);
+        rowsOffset = buffer.getInt(32);
+
+        dictionary = new String[dictionaryCount];
+        int pos = dictionaryOffset;
+        for (int i = 0; i < dictionaryCount; i++) {
+            int length = buffer.getInt(pos);
+            dictionary[i] = decode(pos + 4, length);
+            pos += 4 + length;
+        }
+    }
+
+    // Maps the file read-only; rows are decoded from the mapping on demand
+    public static BinarySnapshot open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinarySnapshot(mapped);
+        }
+    }
+
+    // Reads the file onto the heap instead of mapping it. Windows refuses to replace
+    // a file that is still mapped, so the manager loads its own data file this way.
+    public static BinarySnapshot read(File file) throws IOException {
+        return new BinarySnapshot(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    // For callers that already hold the file contents
+    public static BinarySnapshot wrap(byte[] data) throws IOException {
+        return new BinarySnapshot(ByteBuffer.wrap(data));
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data.length >= HEADER_BYTES && ByteBuffer.wrap(data).getInt(0) == MAGIC;
+    }
+
+    public static boolean isBinary(File file) {
+        if (!file.isFile() || file.length() < HEADER_BYTES) return false;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int size() { return rowCount; }
+    public long getGeneration() { return generation; }
+
+    public Software get(int row) {
+        if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException("row " + row);
+        int pos = rowsOffset + row * ROW_BYTES;
+        return new Software(
+            decode(heapOffset + buffer.getInt(pos), buffer.getInt(pos + 4)),
+            dictionary[buffer.getInt(pos + 8)],
+            buffer.getInt(pos + 12),
+            Status.fromLabel(dictionary[buffer.getInt(pos + 16)])
+        );
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void write(List<Software> rows, long generation, File file) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> dictionary = new ArrayList<>();
+        int[] versionIds = new int[rows.size()];
+        int[] statusIds = new int[rows.size()];
+        byte[][] names = new byte[rows.size()][];
+        int dictionaryBytes = 0;
+        int heapBytes = 0;
+
+        for (int i = 0; i < rows.size(); i++) {
+            Software s = rows.get(i);
+            for (int field = 0; field < 2; field++) {
+                String value = field == 0 ? s.getVersion() : s.getStatus().getLabel();
+                Integer id = ids.get(value);
+                if (id == null) {
+                    id = dictionary.size();
+                    ids.put(value, id);
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    dictionary.add(bytes);
+                    dictionaryBytes += 4 + bytes.length;
+                }
+                if (field == 0) versionIds[i] = id; else statusIds[i] = id;
+            }
+            names[i] = s.getName().getBytes(StandardCharsets.UTF_8);
+            heapBytes += names[i].length;
+        }
+
+        int dictionaryOffset = HEADER_BYTES;
+        int heapOffset = dictionaryOffset + dictionaryBytes;
+        int rowsOffset = heapOffset + heapBytes;
+
+        try (FileOutputStream fileOut = new FileOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(generation);
+            out.writeInt(rows.size());
+            out.writeInt(dictionary.size());
+            out.writeInt(dictionaryOffset);
+            out.writeInt(heapOffset);
+            out.writeInt(rowsOffset);
+
+            for (byte[] bytes : dictionary) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            for (byte[] name : names) {
+                out.write(name);
+            }
+            int nameOffset = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                out.writeInt(nameOffset);
+                out.writeInt(names[i].length);
+                out.writeInt(versionIds[i]);
+                out.writeInt((int) rows.get(i).getInstallationDate().toEpochDay());
+                out.writeInt(statusIds[i]);
+                nameOffset += names[i].length;
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    // Converts between the text and binary formats:
+    //   java BinarySnapshot to-binary software_data.txt software_data.bin
+    //   java BinarySnapshot to-text software_data.bin software_data.txt
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("to-binary") || args[0].equals("to-text"))) {
+            System.err.println("Usage: java BinarySnapshot to-binary|to-text <input> <output>");
+            System.exit(2);
+        }
+        File input = new File(args[1]);
+        File output = new File(args[2]);
+
+        if (args[0].equals("to-binary")) {
+            List<Software> rows = new ArrayList<>();
+            long generation = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.startsWith(SoftwareJournal.GENERATION_PREFIX)) {
+                        generation = Long.parseLong(line.substring(SoftwareJournal.GENERATION_PREFIX.length()).trim());
+                    } else if (!line.isEmpty()) {
+                        try {
+                            rows.add(Software.fromString(line));
+                        } catch (Exception e) {
+                            System.err.println(input + ": can't read \"" + line + "\": " + e.getMessage());
+                            System.exit(1);
+                        }
+                    }
+                }
+            }
+            write(rows, generation, output);
+            System.out.println("Wrote " + rows.size() + " rows to " + output);
+        } else {
+            BinarySnapshot snapshot = open(input);
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))) {
+                writer.write(SoftwareJournal.GENERATION_PREFIX + snapshot.getGeneration());
+                writer.newLine();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    writer.write(snapshot.get(i).toString());
+                    writer.newLine();
+                }
+            }
+            System.out.println("Wrote " + snapshot.size() + " rows to " + output);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// What a rescan found compared with the previous one
+public class ChangeSet {
+    public enum Type { ADDED, UPGRADED, REMOVED }
+
+    public static class Change {
+        private final Type type;
+        private final Software software;
+        private final String previousVersion;
+
+        public Change(Type type, Software software, String previousVersion) {
+            this.type = type;
+            this.software = software;
+            this.previousVersion = previousVersion;
+        }
+
+        public Type getType() { return type; }
+        public Software getSoftware() { return software; }
+        public String getPreviousVersion() { return previousVersion; }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case UPGRADED:
+                    return "Upgraded: " + software.getName() + " " + previousVersion + " -> " + software.getVersion();
+                case REMOVED:
+                    return "Removed: " + software.getName() + " (" + software.getVersion() + ")";
+                default:
+                    return "Added: " + software.getName() + " (" + software.getVersion() + ")";
+            }
+        }
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+
+    public void added(Software software) {
+        changes.add(new Change(Type.ADDED, software, null));
+    }
+
+    public void upgraded(Software software, String previousVersion) {
+        changes.add(new Change(Type.UPGRADED, software, previousVersion));
+    }
+
+    public void removed(Software software) {
+        changes.add(new Change(Type.REMOVED, software, software.getVersion()));
+    }
+
+    public List<Change> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int count(Type type) {
+        int count = 0;
+        for (Change c : changes) {
+            if (c.getType() == type) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return count(Type.ADDED) + " added, " + count(Type.UPGRADED) + " upgraded, " + count(Type.REMOVED) + " removed";
+    }
+}
@@ -0,0 +1,501 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Headless entry point for scripts. Never touches Swing or AWT, so it starts in a
+// fraction of the GUI's time and runs where there is no display.
+//
+//   java Cli scan   [--format csv|jsonl]                   rescans, prints what changed
+//   java Cli export [--format csv|jsonl|columnar]          every record
+//   java Cli import <file.csv|.jsonl|.col>                 adds or updates records by name
+//   java Cli query  [filters] [--format csv|jsonl|columnar]  matching records
+//   java Cli diff   <before> <after> [--format csv|jsonl]  changes between two inventories
+//   java Cli history --as-of yyyy-MM-dd [--format ...]     every record as it was that day
+//   java Cli history <name> [--as-of yyyy-MM-dd] [--format csv|jsonl]  one product's changes
+//   java Cli expiry [--watch] [--format csv|jsonl]         expires what is due, prints alerts
+//   java Cli expiry <name> <yyyy-MM-dd|none>               sets or clears a deadline
+//
+// Query filters: --prefix, --contains, --product, --status Installed,Trial,
+// --from/--to yyyy-MM-dd, --min-version, --below-version,
+// --sort name|version|date|status, --desc, --limit.
+// --data <file> works on another data file instead of software_data.txt (or -Dtracker.jdbc).
+// diff takes data files or exports in any ExportFormat. history reads <data file>.history;
+// --as-of includes the whole day, in local time. expiry marks records whose deadline has
+// passed Expired and lists them, with those due within -Dtracker.expiry.notice days;
+// --watch keeps running and prints each alert as it comes, until killed.
+//
+// Records go to stdout in the ExportFormat given; messages go to stderr.
+// Exit codes: 0 done, 1 diff found changes or query/history/expiry matched nothing (as diff and grep),
+// 2 bad usage, 3 failed (unreadable input, any scope of a scan unreadable, or any other error).
+// A partly failed scan still applies and prints what it could read.
+public class Cli {
+    static final int OK = 0;
+    static final int DIFFERENT = 1;
+    static final int USAGE = 2;
+    static final int FAILED = 3;
+
+    private static final String[] CHANGE_COLUMNS = { "change", "name", "version", "previous_version", "installed", "status" };
+    private static final String[] HISTORY_COLUMNS = { "time", "change", "name", "version", "installed", "status" };
+    private static final String[] EXPIRY_COLUMNS = { "event", "name", "version", "status", "expires" };
+
+    // Bad arguments or input, reported with the given exit code
+    static final class CliException extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int exitCode;
+
+        CliException(int exitCode, String message) {
+            super(message);
+            this.exitCode = exitCode;
+        }
+    }
+
+    public static void main(String[] args) {
+        // Scripts read stdout; keep stderr to warnings unless asked
+        if (System.getProperty("tracker.log") == null) Log.setLevel(Log.Level.WARN);
+        int code;
+        try {
+            code = run(args, System.out);
+        } catch (CliException e) {
+            System.err.println(e.getMessage());
+            code = e.exitCode;
+        } catch (IOException | InterruptedException | TimeoutException | RuntimeException e) {
+            // Anything unexpected is a failure too, never 1, which scripts read as "different"
+            System.err.println("Failed: " + describe(e));
+            if (e instanceof RuntimeException) Log.error("cli.failed", e);
+            code = FAILED;
+        }
+        Log.flush();
+        System.exit(code);
+    }
+
+    static int run(String[] args, PrintStream stdout)
+            throws IOException, InterruptedException, TimeoutException, CliException {
+        if (args.length == 0) throw usage("missing command");
+        String command = args[0];
+        Map<String, String> options = new HashMap<>();
+        List<String> operands = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--desc") || arg.equals("--watch")) {
+                options.put(arg, "");
+            } else if (arg.startsWith("--")) {
+                if (i + 1 == args.length) throw usage(arg + " needs a value");
+                options.put(arg, args[++i]);
+            } else {
+                operands.add(arg);
+            }
+        }
+        ExportFormat format;
+        try {
+            format = ExportFormat.forName(options.getOrDefault("--format", "csv"));
+        } catch (IllegalArgumentException e) {
+            throw usage(e.getMessage());
+        }
+        // Writers close their stream when done; stdout has to stay open for the exit message
+        OutputStream out = new FilterOutputStream(stdout) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                stdout.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                stdout.flush();
+            }
+        };
+
+        switch (command) {
+            case "scan":
+                expectOperands(operands, 0);
+                return scan(options, changeFormat(format), out);
+            case "export":
+                expectOperands(operands, 0);
+                return export(options, format, out);
+            case "import":
+                expectOperands(operands, 1);
+                return importFile(options, new File(operands.get(0)));
+            case "query":
+                expectOperands(operands, 0);
+                return query(options, format, out);
+            case "diff":
+                expectOperands(operands, 2);
+                ExportFormat changes = changeFormat(format);
+                return diff(readInventory(new File(operands.get(0))), readInventory(new File(operands.get(1))), changes, out);
+            case "history":
+                if (operands.size() > 1) throw usage("expected at most one product name, got " + operands.size());
+                if (operands.isEmpty()) return historyAsOf(options, format, out);
+                return timeline(options, operands.get(0), changeFormat(format), out);
+            case "expiry":
+                if (operands.size() == 2) return setExpiry(options, operands.get(0), operands.get(1));
+                if (!operands.isEmpty()) throw usage("expected a product name and a date, or nothing");
+                if (options.containsKey("--watch")) return watchExpiry(options, changeFormat(format), out);
+                return expiry(options, changeFormat(format), out);
+            default:
+                throw usage("unknown command: " + command);
+        }
+    }
+
+    // Changes have more columns than records; they come as CSV or JSONL only
+    private static ExportFormat changeFormat(ExportFormat format) throws CliException {
+        if (format == ExportFormat.COLUMNAR) throw usage("changes are written as csv or jsonl");
+        return format;
+    }
+
+    private static int scan(Map<String, String> options, ExportFormat format, OutputStream out)
+            throws IOException, InterruptedException, TimeoutException {
+        SoftwareManager manager = openManager(options);
+        try {
+            ScanPipeline pipeline = manager.newScanPipeline();
+            ChangeSet changes = pipeline.run(SoftwareManager.SCAN_TIMEOUT_MINUTES, TimeUnit.MINUTES,
+                (done, total, seen, added) -> { });
+            writeChanges(changes, format, out);
+            System.err.println(changes);
+            Set<String> failed = pipeline.getFailedScopes();
+            if (failed.isEmpty()) return OK;
+            System.err.println("Could not read " + failed.size() + " scope(s): " + String.join(", ", failed));
+            return FAILED;
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static int export(Map<String, String> options, ExportFormat format, OutputStream out) throws IOException {
+        SoftwareManager manager = openManager(options);
+        try {
+            writeRecords(manager.getAllSoftware(), format, out);
+            return OK;
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static int importFile(Map<String, String> options, File file) throws IOException, CliException {
+        ExportFormat format = ExportFormat.forFile(file);
+        if (format == null) throw usage("expected a .csv, .jsonl or .col file: " + file);
+        if (!file.isFile()) throw new CliException(FAILED, "No such file: " + file);
+        SoftwareManager manager = openManager(options);
+        try {
+            int added = manager.importFrom(file, format);
+            System.err.println("Imported " + file + ": " + added + " added");
+            return OK;
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static int query(Map<String, String> options, ExportFormat format, OutputStream out)
+            throws IOException, CliException {
+        SoftwareQuery query = parseQuery(options);
+        SoftwareManager manager = openManager(options);
+        try {
+            // One pass over the records; an index only pays off over many queries
+            List<Software> rows = query.filter(manager.getAllSoftware());
+            writeRecords(rows, format, out);
+            return rows.isEmpty() ? DIFFERENT : OK;
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static int historyAsOf(Map<String, String> options, ExportFormat format, OutputStream out)
+            throws IOException, CliException {
+        Instant asOf = endOfDay(options.get("--as-of"));
+        if (asOf == null) throw usage("history needs a product name or --as-of");
+        SoftwareManager manager = openManager(options);
+        try {
+            List<Software> rows = manager.getHistory().inventoryAsOf(asOf);
+            writeRecords(rows, format, out);
+            return rows.isEmpty() ? DIFFERENT : OK;
+        } finally {
+            manager.close();
+        }
+    }
+
+    // One line per recorded state: added (first seen, or back after a removal), updated or removed
+    private static int timeline(Map<String, String> options, String name, ExportFormat format, OutputStream out)
+            throws IOException, CliException {
+        Instant asOf = endOfDay(options.get("--as-of"));
+        SoftwareManager manager = openManager(options);
+        List<SoftwareHistory.Event> events;
+        try {
+            events = manager.getHistory().timeline(name);
+        } finally {
+            manager.close();
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        boolean csv = format == ExportFormat.CSV;
+        if (csv) CsvExport.writeLine(writer, HISTORY_COLUMNS);
+        String[] fields = new String[HISTORY_COLUMNS.length];
+        boolean present = false;
+        int written = 0;
+        for (SoftwareHistory.Event event : events) {
+            if (asOf != null && event.getTime().isAfter(asOf)) break;
+            Software s = event.getSoftware();
+            fields[0] = event.getTime().toString();
+            fields[1] = event.isRemoved() ? "removed" : present ? "updated" : "added";
+            fields[2] = s.getName();
+            fields[3] = s.getVersion();
+            fields[4] = s.getInstallationDate().toString();
+            fields[5] = event.isRemoved() ? null : s.getStatus().getLabel();
+            if (csv) CsvExport.writeLine(writer, fields); else JsonLinesExport.writeObject(writer, HISTORY_COLUMNS, fields);
+            present = !event.isRemoved();
+            written++;
+        }
+        writer.flush();
+        return written == 0 ? DIFFERENT : OK;
+    }
+
+    private static int expiry(Map<String, String> options, ExportFormat format, OutputStream out)
+            throws IOException {
+        SoftwareManager manager = openManager(options);
+        try {
+            List<ExpiryScheduler.Alert> alerts = manager.getExpiryScheduler().runDue();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            if (format == ExportFormat.CSV) CsvExport.writeLine(writer, EXPIRY_COLUMNS);
+            writeAlerts(alerts, format, writer);
+            writer.flush();
+            return alerts.isEmpty() ? DIFFERENT : OK;
+        } finally {
+            manager.close();
+        }
+    }
+
+    // Prints alerts from the scheduler's thread as they come; never returns normally
+    private static int watchExpiry(Map<String, String> options, ExportFormat format, OutputStream out)
+            throws IOException, InterruptedException {
+        SoftwareManager manager = openManager(options);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            if (format == ExportFormat.CSV) CsvExport.writeLine(writer, EXPIRY_COLUMNS);
+            writer.flush();
+            ExpiryScheduler scheduler = manager.getExpiryScheduler();
+            scheduler.addListener(new ExpiryScheduler.Listener() {
+                @Override
+                public void expiring(List<ExpiryScheduler.Alert> alerts) {
+                    print(alerts);
+                }
+
+                @Override
+                public void expired(List<ExpiryScheduler.Alert> alerts) {
+                    print(alerts);
+                }
+
+                private void print(List<ExpiryScheduler.Alert> alerts) {
+                    synchronized (writer) {
+                        try {
+                            writeAlerts(alerts, format, writer);
+                            writer.flush();
+                        } catch (IOException e) {
+                            Log.error("cli.writeFailed", e);
+                        }
+                    }
+                }
+            });
+            System.err.println("Watching " + scheduler.size() + " deadline(s); Ctrl+C to stop");
+            scheduler.start();
+            Object forever = new Object();
+            synchronized (forever) {
+                while (true) forever.wait();
+            }
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static int setExpiry(Map<String, String> options, String name, String date)
+            throws IOException, CliException {
+        LocalDate day = date.equalsIgnoreCase("none") ? null : parseDate(date);
+        SoftwareManager manager = openManager(options);
+        try {
+            Software s = manager.findByName(name);
+            if (s == null) throw new CliException(FAILED, "No such software: " + name);
+            manager.setExpiry(s.getName(), day);
+            System.err.println(s.getName() + (day == null ? ": no expiry" : ": expires " + day));
+            return OK;
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static void writeAlerts(List<ExpiryScheduler.Alert> alerts, ExportFormat format, Writer writer)
+            throws IOException {
+        String[] fields = new String[EXPIRY_COLUMNS.length];
+        for (ExpiryScheduler.Alert alert : alerts) {
+            Software s = alert.getSoftware();
+            fields[0] = alert.isExpired() ? "expired" : "expiring";
+            fields[1] = s.getName();
+            fields[2] = s.getVersion();
+            fields[3] = s.getStatus().getLabel();
+            fields[4] = alert.getDeadline().toString();
+            if (format == ExportFormat.CSV) CsvExport.writeLine(writer, fields);
+            else JsonLinesExport.writeObject(writer, EXPIRY_COLUMNS, fields);
+        }
+    }
+
+    // The first instant after the given day, less a millisecond
+    private static Instant endOfDay(String date) throws CliException {
+        LocalDate day = parseDate(date);
+        if (day == null) return null;
+        return day.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusMillis(1);
+    }
+
+    // Matched by normalized name: new names are ADDED, a changed version is UPGRADED
+    // (downgrades too), and names that are gone or now "Not Installed" are REMOVED
+    static ChangeSet compare(List<Software> before, List<Software> after) {
+        Map<String, Software> old = new LinkedHashMap<>();
+        for (Software s : before) old.putIfAbsent(SoftwareManager.normalizeName(s.getName()), s);
+        ChangeSet changes = new ChangeSet();
+        for (Software s : after) {
+            Software previous = old.remove(SoftwareManager.normalizeName(s.getName()));
+            boolean installed = s.getStatus() != Status.NOT_INSTALLED;
+            boolean wasInstalled = previous != null && previous.getStatus() != Status.NOT_INSTALLED;
+            if (!wasInstalled) {
+                if (installed) changes.added(s);
+            } else if (!installed) {
+                changes.removed(previous);
+            } else if (!previous.getVersion().equals(s.getVersion())) {
+                changes.upgraded(s, previous.getVersion());
+            }
+        }
+        for (Software s : old.values()) {
+            if (s.getStatus() != Status.NOT_INSTALLED) changes.removed(s);
+        }
+        return changes;
+    }
+
+    private static int diff(List<Software> before, List<Software> after, ExportFormat format, OutputStream out)
+            throws IOException {
+        ChangeSet changes = compare(before, after);
+        writeChanges(changes, format, out);
+        return changes.isEmpty() ? OK : DIFFERENT;
+    }
+
+    private static SoftwareManager openManager(Map<String, String> options) {
+        String data = options.get("--data");
+        return data == null ? new SoftwareManager() : new SoftwareManager(new File(data));
+    }
+
+    private static SoftwareQuery parseQuery(Map<String, String> options) throws CliException {
+        SoftwareQuery q = SoftwareQuery.all()
+            .nameStartsWith(options.get("--prefix"))
+            .nameContains(options.get("--contains"))
+            .product(options.get("--product"))
+            .versionAtLeast(options.get("--min-version"))
+            .versionBelow(options.get("--below-version"))
+            .installedBetween(parseDate(options.get("--from")), parseDate(options.get("--to")));
+        String statuses = options.get("--status");
+        if (statuses != null) {
+            List<Status> allowed = new ArrayList<>();
+            for (String label : statuses.split(",")) {
+                try {
+                    allowed.add(Status.fromLabel(label.trim()));
+                } catch (IllegalArgumentException e) {
+                    throw usage(e.getMessage());
+                }
+            }
+            q.status(allowed.toArray(new Status[0]));
+        }
+        String sort = options.get("--sort");
+        if (sort != null) {
+            try {
+                q.sortBy(SoftwareQuery.Sort.valueOf(sort.toUpperCase()), options.containsKey("--desc"));
+            } catch (IllegalArgumentException e) {
+                throw usage("unknown sort: " + sort);
+            }
+        }
+        String limit = options.get("--limit");
+        if (limit != null) {
+            try {
+                q.limit(Integer.parseInt(limit));
+            } catch (IllegalArgumentException e) {
+                throw usage("bad limit: " + limit);
+            }
+        }
+        return q;
+    }
+
+    private static LocalDate parseDate(String text) throws CliException {
+        if (text == null) return null;
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            throw usage("bad date: " + text);
+        }
+    }
+
+    private static void expectOperands(List<String> operands, int count) throws CliException {
+        if (operands.size() != count) throw usage("expected " + count + " file argument(s), got " + operands.size());
+    }
+
+    // The message, with the kind of error when that is all it says (EOFException, or a
+    // NegativeArraySizeException from a corrupt file)
+    static String describe(Throwable e) {
+        if (e instanceof UncheckedIOException && e.getCause() != null) return describe(e.getCause());
+        String message = e.getMessage();
+        if (message == null || message.isBlank()) {
+            return e instanceof EOFException ? "unexpected end of file" : e.getClass().getSimpleName();
+        }
+        return e instanceof RuntimeException ? e.getClass().getSimpleName() + ": " + message : message;
+    }
+
+    private static CliException usage(String problem) {
+        return new CliException(USAGE, problem + "\nUsage: java Cli scan|export|import|query|diff|history|expiry [options]"
+            + " (see the comment at the top of Cli.java)");
+    }
+
+    private static void writeRecords(List<Software> rows, ExportFormat format, OutputStream out) throws IOException {
+        try (SoftwareWriter writer = format.openWriter(out)) {
+            for (Software s : rows) writer.write(s);
+        }
+    }
+
+    private static void writeChanges(ChangeSet changes, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        boolean csv = format == ExportFormat.CSV;
+        if (csv) CsvExport.writeLine(writer, CHANGE_COLUMNS);
+        String[] fields = new String[CHANGE_COLUMNS.length];
+        for (ChangeSet.Change change : changes.getChanges()) {
+            Software s = change.getSoftware();
+            fields[0] = change.getType().name().toLowerCase();
+            fields[1] = s.getName();
+            fields[2] = s.getVersion();
+            fields[3] = change.getPreviousVersion();
+            fields[4] = s.getInstallationDate().toString();
+            fields[5] = s.getStatus().getLabel();
+            if (csv) CsvExport.writeLine(writer, fields); else JsonLinesExport.writeObject(writer, CHANGE_COLUMNS, fields);
+        }
+        writer.flush();
+    }
+
+    // An export in any ExportFormat, or else a data file
+    static List<Software> readInventory(File file) throws IOException, CliException {
+        ExportFormat format = ExportFormat.forFile(file);
+        // Until its first compaction a data file may be only a journal
+        if (!file.isFile() && (format != null || !new File(file.getPath() + ".journal").isFile())) {
+            throw new CliException(FAILED, "No such file: " + file);
+        }
+        if (format != null) {
+            List<Software> rows = new ArrayList<>();
+            try (SoftwareReader reader = format.openReader(new FileInputStream(file))) {
+                Software s;
+                while ((s = reader.read()) != null) rows.add(s);
+            } catch (IOException | RuntimeException e) {
+                throw new CliException(FAILED, file + ": " + describe(e));
+            }
+            return rows;
+        }
+        // Read only: loading would create a journal next to someone else's file or compact it
+        return new TextSoftwareRepository(file).read();
+    }
+}
\ No newline at end of file
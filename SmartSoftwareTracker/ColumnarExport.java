@@ -0,0 +1,214 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary export, in blocks of up to BLOCK_ROWS records so that neither
+// side ever holds more than one block:
+//
+//   header:  magic "SSTC", format version
+//   block:   row count (0 ends the file), then each column in turn:
+//     name, version, status:  dictionary (count, then length-prefixed UTF-8 strings)
+//                             and one dictionary id per row
+//     installed:              epoch day minus the previous row's, zigzag encoded
+//
+// Counts, lengths, ids and deltas are varints. Repeated versions and statuses cost
+// a byte or two per row, and rows sorted or grouped by date cost about one byte.
+public final class ColumnarExport {
+    private static final int MAGIC = 0x53535443; // "SSTC"
+    private static final int FORMAT_VERSION = 1;
+    static final int BLOCK_ROWS = 65536;
+
+    private ColumnarExport() {
+    }
+
+    static final class Writer implements SoftwareWriter {
+        private final DataOutputStream out;
+        private final Software[] block = new Software[BLOCK_ROWS];
+        private int size;
+        private boolean closed;
+
+        Writer(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(FORMAT_VERSION);
+        }
+
+        @Override
+        public void write(Software s) throws IOException {
+            block[size++] = s;
+            if (size == BLOCK_ROWS) writeBlock();
+        }
+
+        private void writeBlock() throws IOException {
+            writeVarint(out, size);
+            writeDictionaryColumn(0);
+            writeDictionaryColumn(1);
+            writeDictionaryColumn(3);
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                int day = block[i].getEpochDay();
+                int delta = day - previous;
+                writeVarint(out, (delta << 1) ^ (delta >> 31));
+                previous = day;
+            }
+            Arrays.fill(block, 0, size, null);
+            size = 0;
+        }
+
+        // Column 0 name, 1 version, 3 status, as in ExportFormat.COLUMNS
+        private void writeDictionaryColumn(int column) throws IOException {
+            Map<String, Integer> ids = new HashMap<>();
+            List<String> dictionary = new ArrayList<>();
+            int[] rowIds = new int[size];
+            for (int i = 0; i < size; i++) {
+                String value = column == 0 ? block[i].getName()
+                    : column == 1 ? block[i].getVersion() : block[i].getStatus().getLabel();
+                Integer id = ids.get(value);
+                if (id == null) {
+                    id = dictionary.size();
+                    ids.put(value, id);
+                    dictionary.add(value);
+                }
+                rowIds[i] = id;
+            }
+            writeVarint(out, dictionary.size());
+            for (String value : dictionary) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length);
+                out.write(bytes);
+            }
+            for (int id : rowIds) writeVarint(out, id);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (size > 0) writeBlock();
+                writeVarint(out, 0);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    static final class Reader implements SoftwareReader {
+        private final DataInputStream in;
+        private String[] names;
+        private String[] versions;
+        private Status[] statuses;
+        private int[] nameIds = new int[0];
+        private int[] versionIds = new int[0];
+        private int[] statusIds = new int[0];
+        private int[] days = new int[0];
+        private int size;
+        private int next;
+        private boolean ended;
+        // A file's available() is what is left of it, so a length can be checked
+        // against it before a buffer that size is allocated
+        private final boolean sized;
+
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            sized = in instanceof FileInputStream;
+            if (this.in.readInt() != MAGIC) throw new IOException("Not a columnar export");
+            int version = this.in.readInt();
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported columnar export version " + version);
+        }
+
+        @Override
+        public Software read() throws IOException {
+            if (next == size && !readBlock()) return null;
+            int i = next++;
+            return new Software(names[nameIds[i]], versions[versionIds[i]], days[i], statuses[statusIds[i]]);
+        }
+
+        private boolean readBlock() throws IOException {
+            if (ended) return false;
+            int rows = readVarint(in);
+            if (rows == 0) {
+                ended = true;
+                return false;
+            }
+            if (rows < 0 || rows > BLOCK_ROWS) throw new IOException("Block of " + rows + " rows");
+            if (nameIds.length < rows) {
+                nameIds = new int[rows];
+                versionIds = new int[rows];
+                statusIds = new int[rows];
+                days = new int[rows];
+            }
+            names = readDictionary(nameIds, rows);
+            versions = readDictionary(versionIds, rows);
+            String[] labels = readDictionary(statusIds, rows);
+            statuses = new Status[labels.length];
+            try {
+                for (int i = 0; i < labels.length; i++) statuses[i] = Status.fromLabel(labels[i]);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            int day = 0;
+            for (int i = 0; i < rows; i++) {
+                int zigzag = readVarint(in);
+                day += (zigzag >>> 1) ^ -(zigzag & 1);
+                days[i] = day;
+            }
+            size = rows;
+            next = 0;
+            return true;
+        }
+
+        private String[] readDictionary(int[] ids, int rows) throws IOException {
+            // Every entry is used by some row
+            int count = readVarint(in);
+            if (count < 0 || count > rows) throw new IOException("Dictionary of " + count + " entries for " + rows + " rows");
+            String[] dictionary = new String[count];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < dictionary.length; i++) {
+                int length = readVarint(in);
+                if (length < 0) throw new IOException("String of " + length + " bytes");
+                if (bytes.length < length) {
+                    if (sized && length > in.available()) {
+                        throw new IOException("String of " + length + " bytes with " + in.available() + " left");
+                    }
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                in.readFully(bytes, 0, length);
+                dictionary[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < rows; i++) {
+                int id = readVarint(in);
+                if (id < 0 || id >= dictionary.length) throw new IOException("Dictionary id " + id + " out of range");
+                ids[i] = id;
+            }
+            return dictionary;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
\ No newline at end of file
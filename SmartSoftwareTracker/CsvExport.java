@@ -0,0 +1,103 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// RFC 4180 CSV: a header line, then one record per line, CRLF line ends. Fields are
+// quoted only when they hold a comma, quote or line break. The reader finds the
+// columns by header name, so their order and any extra columns don't matter.
+public final class CsvExport {
+
+    private CsvExport() {
+    }
+
+    static final class Writer implements SoftwareWriter {
+        private final java.io.Writer out;
+        private final String[] fields = new String[ExportFormat.COLUMNS.length];
+        private final StringBuilder date = new StringBuilder(10);
+
+        Writer(OutputStream out) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            writeLine(this.out, ExportFormat.COLUMNS);
+        }
+
+        @Override
+        public void write(Software s) throws IOException {
+            fields[0] = s.getName();
+            fields[1] = s.getVersion();
+            fields[2] = ExportFormat.formatDate(s.getEpochDay(), date);
+            fields[3] = s.getStatus().getLabel();
+            writeLine(out, fields);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    static final class Reader implements SoftwareReader {
+        private final CsvReader csv;
+        private final List<String> fields = new ArrayList<>();
+        // Position of name, version, installed and status in each record, -1 if absent
+        private final int[] columns = new int[ExportFormat.COLUMNS.length];
+        private int record = 1;
+
+        Reader(InputStream in) throws IOException {
+            csv = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            Arrays.fill(columns, -1);
+            if (!csv.readRecord(fields)) return;
+            for (int i = 0; i < fields.size(); i++) {
+                String header = fields.get(i).trim().toLowerCase(Locale.ROOT);
+                for (int c = 0; c < columns.length; c++) {
+                    if (header.equals(ExportFormat.COLUMNS[c]) && columns[c] < 0) columns[c] = i;
+                }
+            }
+            if (columns[0] < 0 || columns[1] < 0) throw new IOException("CSV header needs name and version columns");
+        }
+
+        @Override
+        public Software read() throws IOException {
+            if (columns[0] < 0 || !csv.readRecord(fields)) return null;
+            record++;
+            try {
+                return ExportFormat.toSoftware(field(0), field(1), field(2), field(3));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("record " + record + ": " + e.getMessage(), e);
+            }
+        }
+
+        private String field(int column) {
+            int i = columns[column];
+            return i >= 0 && i < fields.size() ? fields.get(i) : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            csv.close();
+        }
+    }
+
+    // One record; null fields are written empty
+    static void writeLine(java.io.Writer out, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) out.write(',');
+            String field = fields[i] == null ? "" : fields[i];
+            boolean quote = false;
+            for (int j = 0; j < field.length() && !quote; j++) {
+                char c = field.charAt(j);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (quote) {
+                out.write('"');
+                out.write(field.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.write("\r\n");
+    }
+}
\ No newline at end of file
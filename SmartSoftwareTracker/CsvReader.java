@@ -0,0 +1,81 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+// Single-pass RFC 4180 tokenizer. Handles quoted fields with embedded commas,
+// doubled quotes and line breaks, and reads straight from the underlying stream.
+public class CsvReader implements Closeable {
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+    private final StringBuilder field = new StringBuilder();
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    // Reads the next record into fields (cleared first); blank lines are skipped.
+    // Returns false at end of input.
+    public boolean readRecord(List<String> fields) throws IOException {
+        fields.clear();
+        field.setLength(0);
+        boolean inQuotes = false;
+        boolean started = false;
+
+        while (true) {
+            if (pos >= limit && !fill()) {
+                if (!started) return false;
+                fields.add(field.toString());
+                return true;
+            }
+            char c = buffer[pos++];
+
+            if (inQuotes) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        pos++;
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                started = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                started = true;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && peek() == '\n') pos++;
+                if (!started) continue; // Blank line
+                fields.add(field.toString());
+                return true;
+            } else {
+                field.append(c);
+                started = true;
+            }
+        }
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill()) return -1;
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        pos = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
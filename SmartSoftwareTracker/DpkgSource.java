@@ -0,0 +1,117 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Debian/Ubuntu packages, read straight from /var/lib/dpkg/status instead of
+// running dpkg-query. The file is a list of stanzas separated by blank lines:
+//
+//   Package: git
+//   Status: install ok installed
+//   Architecture: amd64
+//   Version: 1:2.43.0-1ubuntu7
+//   Description: fast, scalable, distributed revision control system
+//    (indented continuation lines)
+//
+// Only stanzas whose Status ends in "installed" are reported. The version's epoch
+// ("1:") is dropped so it compares like other sources' versions. dpkg doesn't record
+// an install date, so the modification time of the package's info/<name>.list is used.
+public class DpkgSource implements SoftwareSource {
+    private final Path statusFile;
+
+    public DpkgSource() {
+        this(SoftwareSources.root().resolve("var/lib/dpkg/status"));
+    }
+
+    public DpkgSource(Path statusFile) {
+        this.statusFile = statusFile;
+    }
+
+    @Override
+    public String getName() {
+        return "dpkg";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Files.isRegularFile(statusFile);
+    }
+
+    @Override
+    public List<String> getScopes() {
+        return List.of("dpkg:" + statusFile);
+    }
+
+    @Override
+    public String changeToken(String scope) {
+        return SoftwareSources.fileToken(statusFile);
+    }
+
+    @Override
+    public void scan(String scope, Consumer<RegistryEntry> sink) throws IOException {
+        Path infoDirectory = statusFile.resolveSibling("info");
+        if (!Files.isDirectory(infoDirectory)) infoDirectory = null;
+        try (BufferedReader reader = Files.newBufferedReader(statusFile, StandardCharsets.UTF_8)) {
+            String pkg = null;
+            String status = null;
+            String version = null;
+            String architecture = null;
+            String maintainer = null;
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null || line.isEmpty()) {
+                    if (pkg != null && status != null && status.endsWith(" installed")) {
+                        RegistryEntry entry = new RegistryEntry(scope + "\\" + pkg + (architecture != null ? ":" + architecture : ""));
+                        entry.putValue("DisplayName", pkg);
+                        if (version != null) entry.putValue("DisplayVersion", withoutEpoch(version));
+                        if (maintainer != null) entry.putValue("Publisher", maintainer);
+                        String installDate = infoDirectory != null ? installDate(infoDirectory, pkg, architecture) : null;
+                        if (installDate != null) entry.putValue("InstallDate", installDate);
+                        sink.accept(entry);
+                    }
+                    pkg = status = version = architecture = maintainer = null;
+                } else if (line.charAt(0) != ' ' && line.charAt(0) != '\t') {
+                    int colon = line.indexOf(':');
+                    if (colon <= 0) continue;
+                    String value = line.substring(colon + 1).trim();
+                    if (line.startsWith("Package:")) pkg = value;
+                    else if (line.startsWith("Status:")) status = value;
+                    else if (line.startsWith("Version:")) version = value;
+                    else if (line.startsWith("Architecture:")) architecture = value;
+                    else if (line.startsWith("Maintainer:")) maintainer = value;
+                }
+            } while (line != null);
+        }
+    }
+
+    private static String withoutEpoch(String version) {
+        int colon = version.indexOf(':');
+        for (int i = 0; i < colon; i++) {
+            if (!Character.isDigit(version.charAt(i))) return version;
+        }
+        return colon > 0 ? version.substring(colon + 1) : version;
+    }
+
+    // yyyyMMdd of the package's file list; multi-arch packages name it <name>:<arch>.list
+    private static String installDate(Path infoDirectory, String pkg, String architecture) {
+        Path list = infoDirectory.resolve(pkg + ".list");
+        if (architecture != null && !Files.exists(list)) list = infoDirectory.resolve(pkg + ":" + architecture + ".list");
+        try {
+            return formatDate(Files.getLastModifiedTime(list));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static String formatDate(FileTime time) {
+        LocalDate date = LocalDate.ofInstant(time.toInstant(), ZoneId.systemDefault());
+        return String.format("%04d%02d%02d", date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+}
\ No newline at end of file
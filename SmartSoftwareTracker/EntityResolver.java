@@ -0,0 +1,649 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Finds names that are the same product spelled differently, such as
+//   "Microsoft Visual C++ 2015-2022 Redistributable (x64) - 14.40.33810"
+//   "Microsoft Visual C++ 2015-2022 Redistributable x64 - 14.40"
+// and junk names such as "REG_SZ". Names are compared on their product key (see
+// VersionIndex.productKey: normalized, without versions or architecture tags) as
+// sets of character trigrams. Comparing every pair is quadratic, so each name gets
+// a MinHash signature of SIGNATURE values, cut into BANDS bands of ROWS; only names
+// that agree on a whole band land in the same bucket and get compared. Two names
+// with trigram similarity s share a bucket with probability 1 - (1 - s^ROWS)^BANDS:
+// 0.98 at s = 0.8, 0.88 at 0.7, under 0.001 for unrelated names.
+//
+// Two candidates are merged when the Rules allow it:
+//   threshold           trigram Jaccard similarity needed (default 0.8)
+//   ignoreArchitecture  merge x64 with x86 or arm64 (default: they stay apart)
+//   ignoreNumbers       merge "2013" with "2015" (default: the numbers left in the
+//                       product key must agree, or one side's contain the other's)
+//   ignoreVersions      merge "Python 3.11.4" with "Python 3.12.1" (default: versions
+//                       in both names must agree as far as the shorter goes, so
+//                       "14.40" matches "14.40.33810" and "14.x", and side-by-side
+//                       installs of two releases stay two records)
+//   window              in a crowded bucket, a name is compared with this many
+//                       before it (default 32), which bounds the work per name
+//
+// One instance is an index for matching names one at a time, as a scan merges them;
+// cluster() groups a whole list at once. Instances are not thread-safe.
+public class EntityResolver {
+    private static final int ROWS = 4;
+    private static final int BANDS = 8;
+    private static final int SIGNATURE = ROWS * BANDS;
+    // Bucket keys hold the band hash above the name id
+    private static final int ID_BITS = 24;
+    static final int MAX_NAMES = 1 << ID_BITS;
+    // Names added since the sorted buckets were built go in a hash table; the buckets
+    // are rebuilt once there are as many of those as sorted ones, and at least this many
+    private static final int MIN_RECENT = 4096;
+    private static final int FEATURE_CACHE_SIZE = 8192;
+
+    private static final long[] MULTIPLIERS = new long[SIGNATURE];
+    private static final long[] OFFSETS = new long[SIGNATURE];
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < SIGNATURE; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            MULTIPLIERS[i] = seed | 1;
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            OFFSETS[i] = seed;
+        }
+    }
+
+    private static final Set<String> REGISTRY_TYPES = Set.of(
+        "reg_sz", "reg_expand_sz", "reg_multi_sz", "reg_dword", "reg_qword", "reg_binary", "reg_none",
+        "(default)", "(value not set)"
+    );
+    private static final Map<String, String> ARCHITECTURES = Map.ofEntries(
+        Map.entry("x64", "64"), Map.entry("amd64", "64"), Map.entry("64-bit", "64"), Map.entry("win64", "64"),
+        Map.entry("x86", "32"), Map.entry("i386", "32"), Map.entry("32-bit", "32"), Map.entry("win32", "32"),
+        Map.entry("arm64", "arm64"), Map.entry("aarch64", "arm64")
+    );
+
+    public static final class Rules {
+        private double threshold = 0.8;
+        private boolean ignoreArchitecture;
+        private boolean ignoreNumbers;
+        private boolean ignoreVersions;
+        private int window = 32;
+
+        public static Rules defaults() {
+            return new Rules();
+        }
+
+        // -Dtracker.resolve.threshold=0.9, -Dtracker.resolve.ignore=architecture,numbers,versions
+        public static Rules fromSystemProperties() {
+            Rules rules = new Rules();
+            String threshold = System.getProperty("tracker.resolve.threshold");
+            if (threshold != null) rules.threshold(Double.parseDouble(threshold));
+            String ignore = System.getProperty("tracker.resolve.ignore", "");
+            rules.ignoreArchitecture = ignore.contains("architecture");
+            rules.ignoreNumbers = ignore.contains("numbers");
+            rules.ignoreVersions = ignore.contains("versions");
+            return rules;
+        }
+
+        public Rules threshold(double threshold) {
+            if (threshold <= 0 || threshold > 1) throw new IllegalArgumentException("threshold must be in (0, 1]: " + threshold);
+            this.threshold = threshold;
+            return this;
+        }
+
+        public Rules ignoreArchitecture(boolean ignore) {
+            this.ignoreArchitecture = ignore;
+            return this;
+        }
+
+        public Rules ignoreNumbers(boolean ignore) {
+            this.ignoreNumbers = ignore;
+            return this;
+        }
+
+        public Rules ignoreVersions(boolean ignore) {
+            this.ignoreVersions = ignore;
+            return this;
+        }
+
+        public Rules window(int window) {
+            if (window < 1) throw new IllegalArgumentException("window < 1: " + window);
+            this.window = window;
+            return this;
+        }
+    }
+
+    // What the rules look at, computed once per name and comparison round
+    private static final class Features {
+        final String key;
+        // Distinct trigram hashes, sorted
+        final int[] trigrams;
+        final String architecture;
+        // Numbers left in the product key, sorted; years, editions, major releases
+        final long[] numbers;
+        // The first version in the name, split at the dots; null if there is none
+        final String[] version;
+        final long filter;
+
+        Features(String name) {
+            String normalized = SoftwareManager.normalizeName(name);
+            key = VersionIndex.productKey(name);
+            trigrams = trigrams(key);
+            String arch = null;
+            String[] firstVersion = null;
+            for (String token : normalized.split(" ")) {
+                token = stripParentheses(token);
+                String found = ARCHITECTURES.get(token);
+                if (found != null) arch = found;
+                if (firstVersion == null && isVersion(token)) {
+                    firstVersion = (token.startsWith("v") ? token.substring(1) : token).split("\\.");
+                }
+            }
+            architecture = arch;
+            numbers = numbers(key);
+            version = firstVersion;
+            filter = filter(architecture, numbers);
+        }
+    }
+
+    private final Rules rules;
+    private final List<String> names = new ArrayList<>();
+    // Per name, architecture and numbers in a long (see filter), to skip most
+    // candidates the rules rule out without working out their features
+    private long[] filters = new long[64];
+    // Per band, sorted bucket keys of names[0, sortedCount)
+    private long[][] buckets = new long[BANDS][0];
+    // Per band, where the keys with each value of their top directoryBits bits start,
+    // so a lookup searches a few keys instead of all of them
+    private int[][] directory = new int[BANDS][3];
+    private int directoryBits = 1;
+    private int sortedCount;
+    // Band hashes of the names added after those, BANDS per name; slot r * BANDS + b
+    // is band b of name sortedCount + r
+    private long[] recent = new long[BANDS * 64];
+    // Open addressing from band and hash to the last slot with it; recentNext chains
+    // each slot to the one before it with the same band and hash, or -1
+    private long[] recentKeys = new long[1024];
+    private int[] recentHeads = new int[1024];
+    private int[] recentNext = new int[BANDS * 64];
+    private int recentEntries;
+    // Names with their band hashes in recent
+    private int recentHashed;
+    // Features of recently compared names; crowded buckets offer the same first few
+    // members to every match
+    private final Map<Integer, Features> featureCache = new HashMap<>();
+
+    public EntityResolver(Rules rules) {
+        this.rules = rules;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    // No more names can be added: add() and addAll() would throw
+    public boolean isFull() {
+        return names.size() == MAX_NAMES;
+    }
+
+    public void add(String name) {
+        if (isJunk(name)) return;
+        if (names.size() == MAX_NAMES) throw new IllegalStateException("More than " + MAX_NAMES + " names");
+        if (recentHashed >= Math.max(MIN_RECENT, sortedCount)) rebuild();
+        int recentCount = recentHashed;
+        if (recent.length < (recentCount + 1) * BANDS) {
+            recent = Arrays.copyOf(recent, recent.length * 2);
+            recentNext = Arrays.copyOf(recentNext, recent.length);
+        }
+        String key = VersionIndex.productKey(name);
+        bandHashes(signature(trigrams(key)), recent, recentCount * BANDS);
+        for (int b = 0; b < BANDS; b++) putRecent(recentCount * BANDS + b);
+        if (filters.length == names.size()) filters = Arrays.copyOf(filters, filters.length * 2);
+        filters[names.size()] = filter(name, key);
+        names.add(name);
+        recentHashed++;
+    }
+
+    private static long recentKey(long bandHash, int band) {
+        // Band hashes have 63 - ID_BITS bits, so this stays positive and never 0
+        return bandHash * BANDS + band + 1;
+    }
+
+    private int recentIndex(long key) {
+        int mask = recentKeys.length - 1;
+        int i = (int) mix(key) & mask;
+        while (recentKeys[i] != 0 && recentKeys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void putRecent(int slot) {
+        if (recentEntries * 2 >= recentKeys.length) {
+            long[] keys = recentKeys;
+            int[] heads = recentHeads;
+            recentKeys = new long[keys.length * 2];
+            recentHeads = new int[keys.length * 2];
+            for (int j = 0; j < keys.length; j++) {
+                if (keys[j] == 0) continue;
+                int i = recentIndex(keys[j]);
+                recentKeys[i] = keys[j];
+                recentHeads[i] = heads[j];
+            }
+        }
+        long key = recentKey(recent[slot], slot % BANDS);
+        int i = recentIndex(key);
+        if (recentKeys[i] == 0) {
+            recentKeys[i] = key;
+            recentNext[slot] = -1;
+            recentEntries++;
+        } else {
+            recentNext[slot] = recentHeads[i];
+        }
+        recentHeads[i] = slot;
+    }
+
+    public void addAll(List<String> all) {
+        for (String name : all) {
+            if (isJunk(name)) continue;
+            if (names.size() == MAX_NAMES) throw new IllegalStateException("More than " + MAX_NAMES + " names");
+            names.add(name);
+        }
+        rebuild();
+    }
+
+    // Sorts every name into the band buckets
+    private void rebuild() {
+        long[] hashes = new long[BANDS];
+        long[][] sorted = new long[BANDS][names.size()];
+        int hashed = sortedCount + recentHashed;
+        if (filters.length < names.size()) filters = Arrays.copyOf(filters, names.size());
+        for (int i = sortedCount; i < names.size(); i++) {
+            if (i < hashed) {
+                System.arraycopy(recent, (i - sortedCount) * BANDS, hashes, 0, BANDS);
+            } else {
+                String key = VersionIndex.productKey(names.get(i));
+                bandHashes(signature(trigrams(key)), hashes, 0);
+                filters[i] = filter(names.get(i), key);
+            }
+            for (int b = 0; b < BANDS; b++) sorted[b][i] = bucketKey(hashes[b], i);
+        }
+        for (int b = 0; b < BANDS; b++) {
+            // Keys of the already sorted names are carried over
+            for (long key : buckets[b]) sorted[b][(int) (key & (MAX_NAMES - 1))] = key;
+            Arrays.sort(sorted[b]);
+        }
+        buckets = sorted;
+        sortedCount = names.size();
+        directoryBits = Math.max(1, 31 - Integer.numberOfLeadingZeros(Math.max(1, sortedCount)) - 2);
+        for (int b = 0; b < BANDS; b++) {
+            int[] starts = new int[(1 << directoryBits) + 1];
+            int k = 0;
+            for (int p = 0; p < starts.length; p++) {
+                while (k < sorted[b].length && sorted[b][k] >>> 63 - directoryBits < p) k++;
+                starts[p] = k;
+            }
+            directory[b] = starts;
+        }
+        recentHashed = 0;
+        if (recentKeys.length > 1024 * 64) {
+            recentKeys = new long[1024];
+            recentHeads = new int[1024];
+        } else {
+            Arrays.fill(recentKeys, 0);
+        }
+        recentEntries = 0;
+    }
+
+    // The known name most similar to name that the rules allow to merge with it, or
+    // null if there is none; the name itself if it was added before
+    public String match(String name) {
+        if (isJunk(name) || names.isEmpty()) return null;
+        Features query = new Features(name);
+        long[] hashes = new long[BANDS];
+        bandHashes(signature(query.trigrams), hashes, 0);
+
+        int best = -1;
+        double bestSimilarity = 0;
+        int[] seen = new int[2 * BANDS * rules.window];
+        int seenCount = 0;
+        for (int b = 0; b < BANDS; b++) {
+            long[] keys = buckets[b];
+            long first = hashes[b] << ID_BITS;
+            int prefix = (int) (first >>> 63 - directoryBits);
+            int i = lowerBound(keys, directory[b][prefix], directory[b][prefix + 1], first);
+            for (int n = 0; n < rules.window && i < keys.length && keys[i] >>> ID_BITS == hashes[b]; n++, i++) {
+                int id = (int) (keys[i] & (MAX_NAMES - 1));
+                if (!mayMerge(query.filter, filters[id], rules) || contains(seen, seenCount, id)) continue;
+                seen[seenCount++] = id;
+                double s = similarity(query, features(id));
+                if (s > bestSimilarity) {
+                    bestSimilarity = s;
+                    best = id;
+                }
+            }
+        }
+        for (int b = 0; b < BANDS && recentEntries > 0; b++) {
+            int i = recentIndex(recentKey(hashes[b], b));
+            if (recentKeys[i] == 0) continue;
+            for (int n = 0, slot = recentHeads[i]; n < rules.window && slot >= 0; n++, slot = recentNext[slot]) {
+                int id = sortedCount + slot / BANDS;
+                if (!mayMerge(query.filter, filters[id], rules) || contains(seen, seenCount, id)) continue;
+                seen[seenCount++] = id;
+                double s = similarity(query, features(id));
+                if (s > bestSimilarity) {
+                    bestSimilarity = s;
+                    best = id;
+                }
+            }
+        }
+        if (best >= 0) Metrics.RESOLVE_MATCHES.increment();
+        return best < 0 ? null : names.get(best);
+    }
+
+    private Features features(int id) {
+        Features f = featureCache.get(id);
+        if (f == null) {
+            if (featureCache.size() == FEATURE_CACHE_SIZE) featureCache.clear();
+            f = new Features(names.get(id));
+            featureCache.put(id, f);
+        }
+        return f;
+    }
+
+    // Groups names that are the same product: result[i] is the index of the first
+    // name in i's group (i itself if it has no earlier duplicate), or -1 for junk
+    public static int[] cluster(List<String> names, Rules rules) {
+        int n = names.size();
+        if (n > MAX_NAMES) throw new IllegalArgumentException("More than " + MAX_NAMES + " names");
+        int[] parent = new int[n];
+        try (Metrics.Span span = Metrics.RESOLVE.start()) {
+            span.setCount(n);
+            long[][] keys = new long[BANDS][];
+            for (int b = 0; b < BANDS; b++) keys[b] = new long[n];
+            long[] hashes = new long[BANDS];
+            int count = 0;
+            long comparisons = 0;
+            for (int i = 0; i < n; i++) {
+                if (isJunk(names.get(i))) {
+                    parent[i] = -1;
+                    continue;
+                }
+                parent[i] = i;
+                bandHashes(signature(trigrams(VersionIndex.productKey(names.get(i)))), hashes, 0);
+                for (int b = 0; b < BANDS; b++) keys[b][count] = bucketKey(hashes[b], i);
+                count++;
+            }
+
+            // Features are only worked out, once, for names that share a bucket
+            Features[] features = new Features[n];
+            for (int b = 0; b < BANDS; b++) {
+                long[] band = keys[b];
+                Arrays.sort(band, 0, count);
+                for (int k = 1; k < count; k++) {
+                    if (band[k] >>> ID_BITS != band[k - 1] >>> ID_BITS) continue;
+                    for (int j = k - 1; j <= k; j++) {
+                        int id = (int) (band[j] & (MAX_NAMES - 1));
+                        if (features[id] == null) features[id] = new Features(names.get(id));
+                    }
+                }
+            }
+
+            // Within each bucket, members are in name order; each is compared with the
+            // window before it
+            int[] ring = new int[rules.window];
+            for (int b = 0; b < BANDS; b++) {
+                long[] band = keys[b];
+                keys[b] = null;
+                int start = 0;
+                while (start < count) {
+                    long bucket = band[start] >>> ID_BITS;
+                    int end = start + 1;
+                    while (end < count && band[end] >>> ID_BITS == bucket) end++;
+                    if (end - start > 1) {
+                        for (int k = start; k < end; k++) {
+                            int id = (int) (band[k] & (MAX_NAMES - 1));
+                            int previous = Math.min(k - start, rules.window);
+                            for (int p = 1; p <= previous; p++) {
+                                int other = ring[(k - start - p) % rules.window];
+                                if (find(parent, other) == find(parent, id)) continue;
+                                comparisons++;
+                                if (similarity(features[id], features[other], rules) > 0) union(parent, other, id);
+                            }
+                            ring[(k - start) % rules.window] = id;
+                        }
+                    }
+                    start = end;
+                }
+            }
+            Metrics.RESOLVE_COMPARISONS.add(comparisons);
+            for (int i = 0; i < n; i++) {
+                if (parent[i] >= 0) parent[i] = find(parent, i);
+            }
+        }
+        return parent;
+    }
+
+    // Roots are always the smallest index in the group
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra < rb) parent[rb] = ra; else if (rb < ra) parent[ra] = rb;
+    }
+
+    // Trigram Jaccard similarity if the rules allow a merge and it reaches the
+    // threshold, else 0
+    private double similarity(Features a, Features b) {
+        return similarity(a, b, rules);
+    }
+
+    private static double similarity(Features a, Features b, Rules rules) {
+        if (!rules.ignoreArchitecture && a.architecture != null && b.architecture != null
+                && !a.architecture.equals(b.architecture)) {
+            return 0;
+        }
+        if (!rules.ignoreNumbers && !numbersAgree(a.numbers, b.numbers)) return 0;
+        if (!rules.ignoreVersions && !versionsAgree(a.version, b.version)) return 0;
+        if (a.key.equals(b.key)) return 1;
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.trigrams.length && j < b.trigrams.length) {
+            if (a.trigrams[i] == b.trigrams[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a.trigrams[i] < b.trigrams[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        double s = (double) shared / (a.trigrams.length + b.trigrams.length - shared);
+        return s >= rules.threshold ? s : 0;
+    }
+
+    // Equal, or one side's numbers all appear on the other ("2015" and "2015-2022"),
+    // as long as both have some
+    private static boolean numbersAgree(long[] a, long[] b) {
+        if (Arrays.equals(a, b)) return true;
+        if (a.length == 0 || b.length == 0) return false;
+        long[] small = a.length <= b.length ? a : b;
+        long[] large = small == a ? b : a;
+        for (long number : small) {
+            if (Arrays.binarySearch(large, number) < 0) return false;
+        }
+        return true;
+    }
+
+    // Architecture code in the top 3 bits, one of the low 61 bits set per number
+    private static long filter(String architecture, long[] numbers) {
+        long bits = architecture == null ? 0 : architecture.equals("64") ? 1 : architecture.equals("32") ? 2 : 3;
+        bits <<= 61;
+        for (long number : numbers) bits |= 1L << ((mix(number) >>> 1) % 61);
+        return bits;
+    }
+
+    private static long filter(String name, String key) {
+        String architecture = null;
+        for (String token : SoftwareManager.normalizeName(name).split(" ")) {
+            String found = ARCHITECTURES.get(stripParentheses(token));
+            if (found != null) architecture = found;
+        }
+        return filter(architecture, numbers(key));
+    }
+
+    // False only if similarity() would return 0 for names with these filters
+    private static boolean mayMerge(long a, long b, Rules rules) {
+        if (!rules.ignoreArchitecture) {
+            long archA = a >>> 61;
+            long archB = b >>> 61;
+            if (archA != 0 && archB != 0 && archA != archB) return false;
+        }
+        if (!rules.ignoreNumbers) {
+            long numbersA = a & (1L << 61) - 1;
+            long numbersB = b & (1L << 61) - 1;
+            if ((numbersA == 0) != (numbersB == 0)) return false;
+            long both = numbersA & numbersB;
+            if (both != numbersA && both != numbersB) return false;
+        }
+        return true;
+    }
+
+    // Component by component up to the shorter one; "x" and "*" match anything
+    private static boolean versionsAgree(String[] a, String[] b) {
+        if (a == null || b == null) return true;
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i].equals(b[i]) || a[i].equals("x") || a[i].equals("*") || b[i].equals("x") || b[i].equals("*")) continue;
+            return false;
+        }
+        return true;
+    }
+
+    // As VersionIndex drops them from product keys: "14.40.33810", "v2.1"
+    private static boolean isVersion(String token) {
+        int start = token.startsWith("v") ? 1 : 0;
+        return token.length() > start + 2 && Character.isDigit(token.charAt(start)) && token.indexOf('.') > 0;
+    }
+
+    // Registry type names, "(Default)", GUIDs and names without a letter are what a
+    // misparsed or half-written uninstall key shows instead of a product name
+    public static boolean isJunk(String name) {
+        if (name == null) return true;
+        String trimmed = name.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("{")) return true;
+        if (REGISTRY_TYPES.contains(trimmed.toLowerCase(Locale.ROOT))) return true;
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (Character.isLetter(trimmed.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static String stripParentheses(String token) {
+        int start = token.startsWith("(") ? 1 : 0;
+        int end = token.endsWith(")") ? token.length() - 1 : token.length();
+        return start < end ? token.substring(start, end) : token;
+    }
+
+    private static long[] numbers(String key) {
+        long[] numbers = new long[4];
+        int count = 0;
+        long value = -1;
+        for (int i = 0; i <= key.length(); i++) {
+            char c = i < key.length() ? key.charAt(i) : ' ';
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > Integer.MAX_VALUE) value = Integer.MAX_VALUE;
+            } else if (value >= 0) {
+                if (count == numbers.length) numbers = Arrays.copyOf(numbers, count * 2);
+                numbers[count++] = value;
+                value = -1;
+            }
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    // Hashes of the distinct trigrams of " key ", sorted
+    private static int[] trigrams(String key) {
+        String padded = " " + key + " ";
+        int count = Math.max(1, padded.length() - 2);
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            long trigram = i + 3 <= padded.length()
+                ? (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2)
+                : padded.hashCode();
+            hashes[i] = (int) mix(trigram);
+        }
+        Arrays.sort(hashes);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) hashes[distinct++] = hashes[i];
+        }
+        return distinct == count ? hashes : Arrays.copyOf(hashes, distinct);
+    }
+
+    // MinHash: per hash function, the smallest value over the trigrams. The functions
+    // are multiply-add over one mixed trigram hash, so each trigram is mixed once.
+    private static int[] signature(int[] trigrams) {
+        int[] signature = new int[SIGNATURE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int trigram : trigrams) {
+            long h = mix(trigram);
+            for (int k = 0; k < SIGNATURE; k++) {
+                int v = (int) ((h * MULTIPLIERS[k] + OFFSETS[k]) >>> 33);
+                if (v < signature[k]) signature[k] = v;
+            }
+        }
+        return signature;
+    }
+
+    // One hash per band of ROWS signature values, 63 - ID_BITS bits so bucket keys are positive
+    private static void bandHashes(int[] signature, long[] out, int offset) {
+        for (int b = 0; b < BANDS; b++) {
+            long h = b;
+            for (int r = 0; r < ROWS; r++) h = mix(h * 31 + signature[b * ROWS + r]);
+            out[offset + b] = h >>> ID_BITS + 1;
+        }
+    }
+
+    private static long bucketKey(long bandHash, int id) {
+        return bandHash << ID_BITS | id;
+    }
+
+    private static int lowerBound(long[] keys, int from, int to, long key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    private static boolean contains(int[] ids, int count, int id) {
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) return true;
+        }
+        return false;
+    }
+
+    // Murmur3 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53a87d9e33bL;
+        return h ^ h >>> 33;
+    }
+}
\ No newline at end of file
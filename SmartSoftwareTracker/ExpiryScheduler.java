@@ -0,0 +1,399 @@
+import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Expiry deadlines of products, and the timers that act on them. Each deadline has two
+// timers in a TimerWheel: one a notice period before it (-Dtracker.expiry.notice, days,
+// default 7) that raises an "expiring" alert, and one at the deadline that has
+// SoftwareManager mark the record Expired. Whatever falls due together is handled as
+// one batch: one status update and save, one call per listener. Deadlines are kept by
+// normalized name in <data file>.expiry, an append-only log of (name, deadline) with
+// clearing records; a deadline is cleared once it has expired the record.
+//
+// Timers only fire when advance() runs: start() runs it on a daemon thread that sleeps
+// until the wheel's next due slot, and runDue() once, on the caller's thread.
+public class ExpiryScheduler implements Closeable {
+    private static final byte[] MAGIC = { 'S', 'S', 'T', 'X' };
+    private static final int FORMAT_VERSION = 1;
+    private static final long CLEARED = Long.MIN_VALUE;
+    private static final long TICK_MILLIS = 1000;
+    // A batch that could not be saved is tried again this much later
+    private static final long RETRY_MILLIS = 60_000;
+    // Timer payloads are id * 2 + kind
+    private static final int NOTICE = 0;
+    private static final int EXPIRY = 1;
+
+    public interface Listener {
+        // Records whose deadline is within the notice period; once per deadline and start
+        void expiring(List<Alert> alerts);
+        // Records just marked Expired
+        void expired(List<Alert> alerts);
+    }
+
+    public static final class Alert {
+        private final Software software;
+        private final Instant deadline;
+        private final boolean expired;
+
+        Alert(Software software, Instant deadline, boolean expired) {
+            this.software = software;
+            this.deadline = deadline;
+            this.expired = expired;
+        }
+
+        public Software getSoftware() { return software; }
+        public Instant getDeadline() { return deadline; }
+        // Marked Expired, rather than expiring soon
+        public boolean isExpired() { return expired; }
+    }
+
+    private final SoftwareManager manager;
+    private final File file;
+    private final long noticeMillis;
+    private final TimerWheel wheel = new TimerWheel(TICK_MILLIS, System.currentTimeMillis());
+    // Normalized name -> id; per id the name as given, its deadline and its two timers
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[64];
+    private long[] deadlines = new long[64];
+    private int[] noticeTimers = new int[64];
+    private int[] expiryTimers = new int[64];
+    private int idCount;
+    // Ids of cleared deadlines, handed out again before new ones, so the arrays stay
+    // as large as the most deadlines held at once rather than every one ever set
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private DataOutputStream out;
+    private Thread thread;
+    private boolean closed;
+
+    private ExpiryScheduler(SoftwareManager manager, File file, long noticeMillis) {
+        this.manager = manager;
+        this.file = file;
+        this.noticeMillis = noticeMillis;
+    }
+
+    // Reads the deadlines in file and schedules them; ones already passed fire on the
+    // first advance. A log with mostly cleared or replaced records is rewritten.
+    public static ExpiryScheduler open(SoftwareManager manager, File file) throws IOException {
+        long noticeDays = Long.getLong("tracker.expiry.notice", 7);
+        ExpiryScheduler scheduler = new ExpiryScheduler(manager, file, Duration.ofDays(noticeDays).toMillis());
+        try (Metrics.Span span = Metrics.EXPIRY_LOAD.start()) {
+            long records = scheduler.load();
+            span.setCount(scheduler.size());
+            if (records > 2L * scheduler.size() + 1024) scheduler.compact();
+        }
+        scheduler.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+        if (file.length() == 0) {
+            scheduler.out.write(MAGIC);
+            scheduler.out.writeInt(FORMAT_VERSION);
+            scheduler.out.flush();
+        }
+        return scheduler;
+    }
+
+    // Records read; a torn last record, as after a crash mid-write, is dropped
+    private long load() throws IOException {
+        if (!file.isFile() || file.length() == 0) return 0;
+        long records = 0;
+        long valid;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not an expiry log: " + file);
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) throw new IOException("Unknown expiry log version " + version + ": " + file);
+            valid = MAGIC.length + 4;
+            while (true) {
+                String name;
+                long deadline;
+                try {
+                    name = in.readUTF();
+                    deadline = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                records++;
+                valid += 2 + utfLength(name) + 8;
+                if (deadline == CLEARED) clearTimers(name); else setTimers(name, deadline);
+            }
+        }
+        if (valid < file.length()) {
+            Log.warn("expiry.truncated", "file", file, "bytes", file.length() - valid);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+        return records;
+    }
+
+    // Bytes writeUTF takes for s, less the length prefix
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            length += c >= 1 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            compacted.write(MAGIC);
+            compacted.writeInt(FORMAT_VERSION);
+            for (int id : ids.values()) {
+                compacted.writeUTF(names[id]);
+                compacted.writeLong(deadlines[id]);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) throw new IOException("Could not replace " + file);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    // The deadline for this name, or null
+    public synchronized Instant getDeadline(String name) {
+        Integer id = ids.get(SoftwareManager.normalizeName(name));
+        return id == null ? null : Instant.ofEpochMilli(deadlines[id]);
+    }
+
+    // Sets or, with null, clears the deadline for this name
+    public void setDeadline(String name, Instant deadline) throws IOException {
+        Map<String, Instant> one = new HashMap<>();
+        one.put(name, deadline);
+        setDeadlines(one);
+    }
+
+    // Sets many deadlines with one write; null values clear
+    public synchronized void setDeadlines(Map<String, Instant> deadlinesByName) throws IOException {
+        if (closed) throw new IOException("Expiry scheduler is closed");
+        for (Map.Entry<String, Instant> e : deadlinesByName.entrySet()) {
+            String name = e.getKey();
+            if (e.getValue() != null) {
+                long deadline = e.getValue().toEpochMilli();
+                setTimers(name, deadline);
+                write(name, deadline);
+            } else if (clearTimers(name)) {
+                write(name, CLEARED);
+            }
+        }
+        out.flush();
+        // The worker may be asleep until a later time
+        notifyAll();
+    }
+
+    private void write(String name, long deadline) throws IOException {
+        out.writeUTF(name);
+        out.writeLong(deadline);
+    }
+
+    private void setTimers(String name, long deadline) {
+        String key = SoftwareManager.normalizeName(name);
+        Integer existing = ids.get(key);
+        int id;
+        if (existing != null) {
+            id = existing;
+            if (noticeTimers[id] >= 0) wheel.cancel(noticeTimers[id]);
+            if (expiryTimers[id] >= 0) wheel.cancel(expiryTimers[id]);
+        } else if (freeCount > 0) {
+            id = freeIds[--freeCount];
+            ids.put(key, id);
+        } else {
+            id = idCount++;
+            if (id == names.length) {
+                names = Arrays.copyOf(names, id * 2);
+                deadlines = Arrays.copyOf(deadlines, id * 2);
+                noticeTimers = Arrays.copyOf(noticeTimers, id * 2);
+                expiryTimers = Arrays.copyOf(expiryTimers, id * 2);
+            }
+            ids.put(key, id);
+        }
+        names[id] = name;
+        deadlines[id] = deadline;
+        noticeTimers[id] = wheel.schedule(deadline - noticeMillis, id * 2 + NOTICE);
+        expiryTimers[id] = wheel.schedule(deadline, id * 2 + EXPIRY);
+    }
+
+    private boolean clearTimers(String name) {
+        Integer id = ids.remove(SoftwareManager.normalizeName(name));
+        if (id == null) return false;
+        // Handles are reused once fired, so only pending ones are cancelled
+        if (noticeTimers[id] >= 0) wheel.cancel(noticeTimers[id]);
+        if (expiryTimers[id] >= 0) wheel.cancel(expiryTimers[id]);
+        names[id] = null;
+        if (freeCount == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = id;
+        return true;
+    }
+
+    // Handles everything due by now on this thread, and returns the alerts raised
+    public List<Alert> runDue() throws IOException {
+        return runDue(System.currentTimeMillis());
+    }
+
+    List<Alert> runDue(long now) throws IOException {
+        List<String> expiringNames = new ArrayList<>();
+        List<Long> expiringDeadlines = new ArrayList<>();
+        List<String> expiredNames = new ArrayList<>();
+        List<Integer> expiredIds = new ArrayList<>();
+        // By normalized name
+        Map<String, Long> expiredDeadlines = new HashMap<>();
+        synchronized (this) {
+            if (closed) return List.of();
+            wheel.advance(now, payload -> {
+                int id = payload >> 1;
+                if ((payload & 1) == NOTICE) {
+                    noticeTimers[id] = -1;
+                    expiringNames.add(names[id]);
+                    expiringDeadlines.add(deadlines[id]);
+                } else {
+                    expiryTimers[id] = -1;
+                    expiredNames.add(names[id]);
+                    expiredIds.add(id);
+                    expiredDeadlines.put(SoftwareManager.normalizeName(names[id]), deadlines[id]);
+                }
+            });
+        }
+        if (expiringNames.isEmpty() && expiredNames.isEmpty()) return List.of();
+
+        List<Alert> expiring = new ArrayList<>();
+        List<Alert> expired = new ArrayList<>();
+        try (Metrics.Span span = Metrics.EXPIRY_BATCH.start()) {
+            for (int i = 0; i < expiringNames.size(); i++) {
+                // Both due at once: only the expiry is news
+                if (expiredDeadlines.containsKey(SoftwareManager.normalizeName(expiringNames.get(i)))) continue;
+                Software s = manager.findByName(expiringNames.get(i));
+                // Already expired or uninstalled records have nothing left to expire
+                if (s == null || !canExpire(s.getStatus())) continue;
+                expiring.add(new Alert(s, Instant.ofEpochMilli(expiringDeadlines.get(i)), false));
+            }
+            List<Software> changed;
+            try {
+                changed = manager.expire(expiredNames);
+            } catch (IOException | RuntimeException e) {
+                retry(expiredIds, expiredDeadlines, now + RETRY_MILLIS);
+                throw e;
+            }
+            // A deadline is only done once its record is saved as Expired; if the process
+            // dies before this, the next start fires it again and finds nothing to change
+            finish(expiredIds, expiredDeadlines);
+            for (Software s : changed) {
+                long deadline = expiredDeadlines.getOrDefault(SoftwareManager.normalizeName(s.getName()), now);
+                expired.add(new Alert(s, Instant.ofEpochMilli(deadline), true));
+            }
+            span.setCount(expiring.size() + expired.size());
+        }
+        Metrics.EXPIRY_ALERTS.add(expiring.size() + expired.size());
+        if (!expired.isEmpty()) Log.info("expiry.expired", "count", expired.size());
+        for (Listener l : listeners) {
+            if (!expiring.isEmpty()) l.expiring(expiring);
+            if (!expired.isEmpty()) l.expired(expired);
+        }
+        List<Alert> alerts = new ArrayList<>(expiring);
+        alerts.addAll(expired);
+        return alerts;
+    }
+
+    // Whether id still holds the deadline that fired, not cleared or set again since
+    private boolean unchanged(int id, Map<String, Long> fired) {
+        String name = names[id];
+        if (name == null || expiryTimers[id] != -1) return false;
+        Long deadline = fired.get(SoftwareManager.normalizeName(name));
+        return deadline != null && deadline == deadlines[id];
+    }
+
+    private synchronized void finish(List<Integer> ids, Map<String, Long> fired) throws IOException {
+        if (closed) return;
+        boolean written = false;
+        for (int id : ids) {
+            if (!unchanged(id, fired)) continue;
+            String name = names[id];
+            clearTimers(name);
+            write(name, CLEARED);
+            written = true;
+        }
+        if (written) out.flush();
+    }
+
+    private synchronized void retry(List<Integer> ids, Map<String, Long> fired, long at) {
+        if (closed) return;
+        for (int id : ids) {
+            if (unchanged(id, fired)) expiryTimers[id] = wheel.schedule(at, id * 2 + EXPIRY);
+        }
+        notifyAll();
+    }
+
+    // Trial and Installed records become Expired at their deadline
+    static boolean canExpire(Status status) {
+        return status == Status.TRIAL || status == Status.INSTALLED;
+    }
+
+    // Runs advance() on a daemon thread until close()
+    public synchronized void start() {
+        if (thread != null || closed) return;
+        thread = new Thread(this::work, "expiry-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void work() {
+        while (true) {
+            synchronized (this) {
+                while (!closed) {
+                    long wait = wheel.nextWakeMillis() - System.currentTimeMillis();
+                    if (wait <= 0) break;
+                    try {
+                        wait(Math.min(wait, Long.MAX_VALUE / 2));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+            }
+            try {
+                runDue();
+            } catch (IOException | RuntimeException e) {
+                Log.error("expiry.failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread worker;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            worker = thread;
+            notifyAll();
+            out.close();
+        }
+        if (worker != null && worker != Thread.currentThread()) {
+            try {
+                worker.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Locale;
+
+// File formats for export and import. All of them stream, so files of any size go
+// through in constant memory:
+//   CSV       RFC 4180 with a header line: name,version,installed,status
+//   JSONL     one JSON object per line, with the same keys
+//   COLUMNAR  blocks of dictionary-encoded columns; see ColumnarExport
+// Dates are yyyy-MM-dd. On import, installed defaults to today and status to Installed.
+public enum ExportFormat {
+    CSV("csv"),
+    JSONL("jsonl"),
+    COLUMNAR("col");
+
+    static final String[] COLUMNS = { "name", "version", "installed", "status" };
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // The writer owns the stream and closes it
+    public SoftwareWriter openWriter(OutputStream out) throws IOException {
+        switch (this) {
+            case CSV: return new CsvExport.Writer(out);
+            case JSONL: return new JsonLinesExport.Writer(out);
+            default: return new ColumnarExport.Writer(out);
+        }
+    }
+
+    public SoftwareReader openReader(InputStream in) throws IOException {
+        switch (this) {
+            case CSV: return new CsvExport.Reader(in);
+            case JSONL: return new JsonLinesExport.Reader(in);
+            default: return new ColumnarExport.Reader(in);
+        }
+    }
+
+    // By file extension, or null if it isn't one of ours
+    public static ExportFormat forFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (name.endsWith("." + format.extension)) return format;
+        }
+        return null;
+    }
+
+    // By name or extension, as given on a command line
+    public static ExportFormat forName(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) return format;
+        }
+        throw new IllegalArgumentException("Unknown format: " + name);
+    }
+
+    // A record from text fields, as CSV and JSONL hold them
+    static Software toSoftware(String name, String version, String installed, String status) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("missing name");
+        if (version == null) throw new IllegalArgumentException("missing version");
+        int day;
+        if (installed == null || installed.isBlank()) {
+            day = (int) LocalDate.now().toEpochDay();
+        } else {
+            String date = installed.trim();
+            try {
+                day = SoftwareCodec.parseDate(date, 0, date.length());
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("bad date: " + installed);
+            }
+        }
+        return new Software(name, version, day,
+            status == null || status.isBlank() ? Status.INSTALLED : Status.fromLabel(status));
+    }
+
+    static String formatDate(int epochDay, StringBuilder buffer) {
+        buffer.setLength(0);
+        SoftwareCodec.appendDate(epochDay, buffer);
+        return buffer.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Reads captured "reg query /s" output from a directory, one file per hive.
+// HKLM\Software\...\Uninstall is looked up as HKLM_Software_..._Uninstall.txt
+public class FileScanSource implements ScanSource {
+    private final Path directory;
+
+    public FileScanSource(Path directory) {
+        this.directory = directory;
+    }
+
+    public static String fileNameFor(String hive) {
+        return hive.replace('\\', '_') + ".txt";
+    }
+
+    @Override
+    public BufferedReader open(String hive) throws IOException {
+        return Files.newBufferedReader(directory.resolve(fileNameFor(hive)), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String changeToken(String hive) {
+        return SoftwareSources.fileToken(directory.resolve(fileNameFor(hive)));
+    }
+}
@@ -0,0 +1,100 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+// System-wide Flatpak apps, read from /var/lib/flatpak/app rather than by running
+// "flatpak list". The layout is app/<id>/<arch>/<branch>/active/, with "current"
+// linking to the arch/branch in use. The version comes from the newest <release>
+// in the app's metainfo file; apps without one report their branch.
+public class FlatpakSource implements SoftwareSource {
+    private final Path directory;
+
+    public FlatpakSource() {
+        this(SoftwareSources.root().resolve("var/lib/flatpak/app"));
+    }
+
+    public FlatpakSource(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String getName() {
+        return "flatpak";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Files.isDirectory(directory);
+    }
+
+    @Override
+    public List<String> getScopes() {
+        return List.of("flatpak:" + directory);
+    }
+
+    // An update deploys a new commit and relinks <arch>/<branch>/active
+    @Override
+    public String changeToken(String scope) {
+        return SoftwareSources.treeToken(directory, 3);
+    }
+
+    @Override
+    public void scan(String scope, Consumer<RegistryEntry> sink) throws IOException {
+        try (DirectoryStream<Path> apps = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path app : apps) {
+                Path branch = currentBranch(app);
+                if (branch == null) continue;
+                Path active = branch.resolve("active");
+                if (!Files.isDirectory(active)) continue;
+
+                String id = app.getFileName().toString();
+                String version = releaseVersion(active.resolve("files/share/metainfo/" + id + ".metainfo.xml"));
+                if (version == null) version = releaseVersion(active.resolve("files/share/appdata/" + id + ".appdata.xml"));
+
+                RegistryEntry entry = new RegistryEntry(scope + "\\" + id);
+                entry.putValue("DisplayName", id);
+                entry.putValue("DisplayVersion", version != null ? version : branch.getFileName().toString());
+                entry.putValue("Branch", branch.getParent().getFileName() + "/" + branch.getFileName());
+                entry.putValue("InstallDate", DpkgSource.formatDate(Files.getLastModifiedTime(active)));
+                sink.accept(entry);
+            }
+        }
+    }
+
+    // The "current" link, or the first arch/branch found where links aren't kept
+    private static Path currentBranch(Path app) throws IOException {
+        Path current = app.resolve("current");
+        if (Files.isDirectory(current)) return current.toRealPath();
+        try (DirectoryStream<Path> arches = Files.newDirectoryStream(app, Files::isDirectory)) {
+            for (Path arch : arches) {
+                try (DirectoryStream<Path> branches = Files.newDirectoryStream(arch, Files::isDirectory)) {
+                    for (Path branch : branches) return branch;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Releases are listed newest first, so the first version="..." attribute is the one
+    private static String releaseVersion(Path metainfo) throws IOException {
+        if (!Files.isRegularFile(metainfo)) return null;
+        try (BufferedReader reader = Files.newBufferedReader(metainfo, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int release = line.indexOf("<release ");
+                if (release < 0) continue;
+                int attribute = line.indexOf("version=\"", release);
+                if (attribute < 0) continue;
+                int start = attribute + 9;
+                int end = line.indexOf('"', start);
+                if (end > start) return line.substring(start, end);
+            }
+        }
+        return null;
+    }
+}
\ No newline at end of file
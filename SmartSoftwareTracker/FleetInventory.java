@@ -0,0 +1,433 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Inventory of many workstations, loaded from a directory of per-host exports (each
+// an export in an ExportFormat, or a tracker data file, text or binary, with its journal;
+// named after its host). Records are kept in
+// shards by product key; within a product they are stored column-wise (host id,
+// name, version, status, day), so a fleet of millions of records holds no per-record
+// objects and a fleet-wide question touches one product's arrays:
+//
+//   java FleetInventory fleet/                          summary, most common products
+//   java FleetInventory fleet/ Git "VLC media player"   version spread of those products
+//
+// Ingest is a fork/join task over the files; each leaf parses its hosts on its own
+// and then takes each shard lock once per host to add them.
+public class FleetInventory {
+    private static final int SHARDS = 64;
+    // Host files per fork/join leaf
+    private static final int FILES_PER_TASK = 8;
+
+    private final Shard[] shards = new Shard[SHARDS];
+    private final Map<String, Integer> hostIds = new ConcurrentHashMap<>();
+    private final List<String> hostNames = new ArrayList<>();
+    private final Map<String, String> failedHosts = new ConcurrentHashMap<>();
+    // Held while a host's records are replaced, so two replacements can't both remove
+    // the old records and then both add theirs
+    private final Map<String, Object> hostLocks = new ConcurrentHashMap<>();
+    private final AtomicLong records = new AtomicLong();
+    // Display name -> its shared copy and product key; the same few thousand names
+    // recur on every host
+    private final Map<String, String[]> names = new ConcurrentHashMap<>();
+
+    private static final class Shard {
+        final Map<String, Product> products = new HashMap<>();
+    }
+
+    // One product's records across the fleet. A host's records are added together,
+    // so they are always adjacent.
+    private static final class Product {
+        int size;
+        int[] hosts = new int[8];
+        String[] names = new String[8];
+        Version[] versions = new Version[8];
+        Status[] statuses = new Status[8];
+        int[] days = new int[8];
+
+        void add(int host, String name, Software s) {
+            if (size == hosts.length) {
+                int capacity = size * 2;
+                hosts = Arrays.copyOf(hosts, capacity);
+                names = Arrays.copyOf(names, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+                days = Arrays.copyOf(days, capacity);
+            }
+            hosts[size] = host;
+            names[size] = name;
+            versions[size] = s.getParsedVersion();
+            statuses[size] = s.getStatus();
+            days[size] = s.getEpochDay();
+            size++;
+        }
+
+        // Drops the host's records; returns how many there were
+        int remove(int host) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (hosts[i] == host) continue;
+                hosts[kept] = hosts[i];
+                names[kept] = names[i];
+                versions[kept] = versions[i];
+                statuses[kept] = statuses[i];
+                days[kept] = days[i];
+                kept++;
+            }
+            int removed = size - kept;
+            Arrays.fill(names, kept, size, null);
+            Arrays.fill(versions, kept, size, null);
+            size = kept;
+            return removed;
+        }
+
+        Software get(int i) {
+            return new Software(names[i], versions[i].toString(), days[i], statuses[i]);
+        }
+
+        boolean installed(int i) {
+            return statuses[i] != Status.NOT_INSTALLED;
+        }
+    }
+
+    public FleetInventory() {
+        for (int i = 0; i < SHARDS; i++) shards[i] = new Shard();
+    }
+
+    private static int shardOf(String productKey) {
+        int h = productKey.hashCode();
+        return (h ^ (h >>> 16)) & (SHARDS - 1);
+    }
+
+    // Loads every host file in directory as one host, skipping journals and other
+    // files; returns the number of hosts read
+    public int ingest(File directory) {
+        File[] listed = directory.listFiles(File::isFile);
+        if (listed == null) throw new IllegalArgumentException("Not a directory: " + directory);
+        List<File> files = new ArrayList<>();
+        for (File file : listed) {
+            String path = file.getPath();
+            if (path.endsWith(".journal")) {
+                // Until its first compaction a data file may be only a journal
+                File data = new File(path.substring(0, path.length() - ".journal".length()));
+                if (!data.isFile() && isHostFile(data)) files.add(data);
+            } else if (isHostFile(file)) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return ingest(files);
+    }
+
+    // An export, or a data file: .txt or .bin
+    static boolean isHostFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return ExportFormat.forFile(file) != null || name.endsWith(".txt") || name.endsWith(".bin");
+    }
+
+    // Returns the number of hosts read, failed ones not counted. Files named after the
+    // same host (host-1.txt and host-1.bin) are not read: which one is current can't be
+    // told, so the host is reported as failed instead.
+    public int ingest(List<File> files) {
+        Map<String, List<File>> byHost = new LinkedHashMap<>();
+        for (File file : files) byHost.computeIfAbsent(hostName(file), k -> new ArrayList<>()).add(file);
+        List<File> unique = new ArrayList<>(byHost.size());
+        for (Map.Entry<String, List<File>> e : byHost.entrySet()) {
+            List<File> same = e.getValue();
+            if (same.size() == 1) {
+                unique.add(same.get(0));
+                continue;
+            }
+            List<String> fileNames = new ArrayList<>();
+            for (File file : same) fileNames.add(file.getName());
+            failedHosts.put(e.getKey(), "Several files for one host: " + String.join(", ", fileNames));
+        }
+        AtomicInteger failed = new AtomicInteger();
+        ForkJoinPool.commonPool().invoke(new IngestTask(unique, 0, unique.size(), failed));
+        return unique.size() - failed.get();
+    }
+
+    private class IngestTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final AtomicInteger failed;
+
+        IngestTask(List<File> files, int from, int to, AtomicInteger failed) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new IngestTask(files, from, mid, failed), new IngestTask(files, mid, to, failed));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                File file = files.get(i);
+                String host = hostName(file);
+                try {
+                    addHost(host, readHost(file));
+                    failedHosts.remove(host);
+                } catch (IOException | RuntimeException e) {
+                    failedHosts.put(host, String.valueOf(e.getMessage()));
+                    failed.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // host-0042.txt -> host-0042
+    static String hostName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    // An export by its extension; anything else is a data file, read with its journal
+    // and without writing to either
+    static List<Software> readHost(File file) throws IOException {
+        ExportFormat format = ExportFormat.forFile(file);
+        if (format == null) return new TextSoftwareRepository(file).read();
+        List<Software> rows = new ArrayList<>();
+        try (SoftwareReader reader = format.openReader(new FileInputStream(file))) {
+            Software s;
+            while ((s = reader.read()) != null) rows.add(s);
+        }
+        return rows;
+    }
+
+    private synchronized int hostId(String host) {
+        Integer id = hostIds.get(host);
+        if (id == null) {
+            id = hostNames.size();
+            hostNames.add(host);
+            hostIds.put(host, id);
+        }
+        return id;
+    }
+
+    private synchronized String hostName(int id) {
+        return hostNames.get(id);
+    }
+
+    // {shared name, product key}
+    private String[] nameInfo(String name) {
+        return names.computeIfAbsent(name, n -> new String[]{ n, VersionIndex.productKey(n) });
+    }
+
+    // Replaces whatever was known about the host
+    public void addHost(String host, List<Software> rows) {
+        // Group by shard first, so each shard is locked once for the whole host
+        Map<Integer, List<Software>> byShard = new HashMap<>();
+        for (Software s : rows) {
+            byShard.computeIfAbsent(shardOf(nameInfo(s.getName())[1]), k -> new ArrayList<>()).add(s);
+        }
+        synchronized (hostLock(host)) {
+            boolean known = hostIds.containsKey(host);
+            int id = hostId(host);
+            if (known) removeRecords(id);
+            for (Map.Entry<Integer, List<Software>> e : byShard.entrySet()) {
+                Shard shard = shards[e.getKey()];
+                synchronized (shard) {
+                    for (Software s : e.getValue()) {
+                        String[] info = nameInfo(s.getName());
+                        shard.products.computeIfAbsent(info[1], k -> new Product()).add(id, info[0], s);
+                    }
+                }
+            }
+            records.addAndGet(rows.size());
+        }
+    }
+
+    public void removeHost(String host) {
+        synchronized (hostLock(host)) {
+            Integer id = hostIds.get(host);
+            if (id != null) removeRecords(id);
+        }
+        // The id stays reserved, so a host that comes back gets the same one
+    }
+
+    private Object hostLock(String host) {
+        return hostLocks.computeIfAbsent(host, k -> new Object());
+    }
+
+    private void removeRecords(int host) {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.products.values().removeIf(p -> {
+                    records.addAndGet(-p.remove(host));
+                    return p.size == 0;
+                });
+            }
+        }
+    }
+
+    // Hosts with at least one record
+    public int getHostCount() {
+        BitSet seen = new BitSet();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Product p : shard.products.values()) {
+                    for (int i = 0; i < p.size; i++) seen.set(p.hosts[i]);
+                }
+            }
+        }
+        return seen.cardinality();
+    }
+
+    public long getRecordCount() { return records.get(); }
+
+    // Host -> error, for files that could not be read
+    public Map<String, String> getFailedHosts() {
+        return Collections.unmodifiableMap(failedHosts);
+    }
+
+    // Everything recorded for one host
+    public List<Software> getHostSoftware(String host) {
+        Integer id = hostIds.get(host);
+        List<Software> result = new ArrayList<>();
+        if (id == null) return result;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Product p : shard.products.values()) {
+                    for (int i = 0; i < p.size; i++) {
+                        if (p.hosts[i] == id) result.add(p.get(i));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // Hosts with at least one installed record of the product
+    public int hostCount(String product) {
+        String key = VersionIndex.productKey(product);
+        Shard shard = shards[shardOf(key)];
+        synchronized (shard) {
+            Product p = shard.products.get(key);
+            return p == null ? 0 : installedHosts(p).cardinality();
+        }
+    }
+
+    private static BitSet installedHosts(Product p) {
+        BitSet hosts = new BitSet();
+        for (int i = 0; i < p.size; i++) {
+            if (p.installed(i)) hosts.set(p.hosts[i]);
+        }
+        return hosts;
+    }
+
+    // Product key -> hosts with it installed, most widespread first
+    public Map<String, Integer> productHostCounts() {
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Map.Entry<String, Product> e : shard.products.entrySet()) {
+                    int count = installedHosts(e.getValue()).cardinality();
+                    if (count > 0) counts.add(Map.entry(e.getKey(), count));
+                }
+            }
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : counts) result.put(e.getKey(), e.getValue());
+        return result;
+    }
+
+    // Installed version -> number of hosts on it, oldest first. A host with two
+    // editions on different versions counts under both.
+    public TreeMap<Version, Integer> versionSpread(String product) {
+        String key = VersionIndex.productKey(product);
+        Shard shard = shards[shardOf(key)];
+        TreeMap<Version, Integer> spread = new TreeMap<>();
+        synchronized (shard) {
+            Product p = shard.products.get(key);
+            if (p == null) return spread;
+            for (int i = 0; i < p.size; i++) {
+                if (!p.installed(i) || seenEarlierOnHost(p, i)) continue;
+                spread.merge(p.versions[i], 1, Integer::sum);
+            }
+        }
+        return spread;
+    }
+
+    // True if an earlier record of the same host has the same version
+    private static boolean seenEarlierOnHost(Product p, int i) {
+        for (int j = i - 1; j >= 0 && p.hosts[j] == p.hosts[i]; j--) {
+            if (p.installed(j) && p.versions[j].compareTo(p.versions[i]) == 0) return true;
+        }
+        return false;
+    }
+
+    // Hosts running the product below the given version, e.g. Git older than 2.45
+    public List<String> hostsBelow(String product, String version) {
+        String key = VersionIndex.productKey(product);
+        Version limit = Version.of(version);
+        Shard shard = shards[shardOf(key)];
+        BitSet below = new BitSet();
+        synchronized (shard) {
+            Product p = shard.products.get(key);
+            if (p == null) return new ArrayList<>();
+            for (int i = 0; i < p.size; i++) {
+                if (p.installed(i) && p.versions[i].compareTo(limit) < 0) below.set(p.hosts[i]);
+            }
+        }
+        List<String> result = new ArrayList<>(below.cardinality());
+        for (int id = below.nextSetBit(0); id >= 0; id = below.nextSetBit(id + 1)) result.add(hostName(id));
+        Collections.sort(result);
+        return result;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java FleetInventory <directory of host exports> [product...]");
+            System.exit(2);
+        }
+        FleetInventory fleet = new FleetInventory();
+        long start = System.nanoTime();
+        fleet.ingest(new File(args[0]));
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%d hosts, %d records in %d ms on %d threads%n",
+            fleet.getHostCount(), fleet.getRecordCount(), ms, ForkJoinPool.getCommonPoolParallelism());
+        for (Map.Entry<String, String> e : fleet.getFailedHosts().entrySet()) {
+            System.out.println("  failed " + e.getKey() + ": " + e.getValue());
+        }
+
+        if (args.length == 1) {
+            System.out.println("Most common products:");
+            int shown = 0;
+            for (Map.Entry<String, Integer> e : fleet.productHostCounts().entrySet()) {
+                if (shown++ == 20) break;
+                System.out.printf("  %6d  %s%n", e.getValue(), e.getKey());
+            }
+        }
+        for (int i = 1; i < args.length; i++) {
+            System.out.println(args[i] + " on " + fleet.hostCount(args[i]) + " hosts:");
+            for (Map.Entry<Version, Integer> e : fleet.versionSpread(args[i]).entrySet()) {
+                System.out.printf("  %6d  %s%n", e.getValue(), e.getKey());
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Rescans the uninstall hives and reports only what changed since the last scan.
+// reg.exe doesn't expose key last-write times, so each key is fingerprinted by a
+// hash of its values; keys whose fingerprint matches the saved state are skipped.
+public class IncrementalScanner {
+    private final RegistryScanner scanner;
+
+    public IncrementalScanner(ScanSource source) {
+        this(new RegistryScanner(source));
+    }
+
+    public IncrementalScanner(RegistryScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    // Scans, returns the changes against state and updates state to match
+    public ChangeSet scan(ScanState state) throws InterruptedException {
+        Set<String> failedHives = new HashSet<>();
+        List<RegistryEntry> entries = scanner.scan(failedHives);
+        return diff(state, entries, failedHives);
+    }
+
+    static ChangeSet diff(ScanState state, List<RegistryEntry> entries, Set<String> failedHives) {
+        ChangeSet changes = new ChangeSet();
+        Set<String> seenKeys = new HashSet<>();
+        List<ScanState.Entry> gone = new ArrayList<>();
+
+        for (RegistryEntry entry : entries) {
+            if (!entry.isApplication()) continue;
+            String key = entry.getKeyPath();
+            seenKeys.add(key);
+
+            long fingerprint = entry.fingerprint();
+            ScanState.Entry previous = state.get(key);
+            if (previous != null && previous.getFingerprint() == fingerprint) {
+                continue; // Unchanged
+            }
+
+            Software software = entry.toSoftware();
+            if (previous == null) {
+                changes.added(software);
+            } else if (!SoftwareManager.normalizeName(previous.getName()).equals(SoftwareManager.normalizeName(software.getName()))) {
+                // Same key now holds a different product
+                gone.add(previous);
+                changes.added(software);
+            } else if (!previous.getVersion().equals(software.getVersion())) {
+                changes.upgraded(software, previous.getVersion());
+            }
+            state.put(key, new ScanState.Entry(fingerprint, software.getName(), software.getVersion()));
+        }
+
+        // Keys that disappeared, unless their hive couldn't be read this time
+        for (String key : new ArrayList<>(state.keyPaths())) {
+            if (!seenKeys.contains(key) && !inFailedHive(key, failedHives)) {
+                gone.add(state.get(key));
+                state.remove(key);
+            }
+        }
+
+        if (gone.isEmpty()) return changes;
+
+        // A product still listed under another key (e.g. both 32 and 64-bit hives), or
+        // under another spelling merged into the same record, isn't removed
+        Set<String> presentNames = new HashSet<>();
+        for (RegistryEntry entry : entries) {
+            if (entry.isApplication()) presentNames.add(SoftwareManager.normalizeName(state.recordFor(entry.getDisplayName())));
+        }
+        for (ScanState.Entry previous : gone) {
+            if (presentNames.add(SoftwareManager.normalizeName(state.recordFor(previous.getName())))) {
+                changes.removed(new Software(previous.getName(), previous.getVersion(), LocalDate.now(), Status.NOT_INSTALLED));
+            }
+        }
+        return changes;
+    }
+
+    private static boolean inFailedHive(String keyPath, Set<String> failedHives) {
+        String path = keyPath.toUpperCase(Locale.ROOT);
+        for (String hive : failedHives) {
+            if (path.startsWith(RegistryScanner.fullPath(hive).toUpperCase(Locale.ROOT) + "\\")) return true;
+        }
+        return false;
+    }
+
+    // Replays captured registry snapshots in order and prints what each rescan reports:
+    //   java IncrementalScanner fixtures/registry fixtures/registry-rescan
+    public static void main(String[] args) throws InterruptedException {
+        ScanState state = new ScanState();
+        for (String directory : args) {
+            ChangeSet changes = new IncrementalScanner(new FileScanSource(Paths.get(directory))).scan(state);
+            System.out.println(directory + ": " + changes);
+            for (ChangeSet.Change change : changes.getChanges()) {
+                System.out.println("  " + change);
+            }
+        }
+    }
+}
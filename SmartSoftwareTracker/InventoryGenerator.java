@@ -0,0 +1,110 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Synthetic inventories for benchmarks and load testing. Names are built from
+// vendor/product/edition parts so they repeat and collide the way real uninstall
+// lists do; versions and statuses come from small pools.
+//
+//   java InventoryGenerator 100000 software_data.txt
+//   java InventoryGenerator 1000000 software_data.bin binary
+//   java InventoryGenerator fleet 5000 300 fleet/      one export per host, for FleetInventory
+public class InventoryGenerator {
+    private static final String[] VENDORS = {
+        "Microsoft", "Adobe", "Google", "Mozilla", "Oracle", "JetBrains", "ASUS", "Intel",
+        "NVIDIA", "Realtek", "VideoLAN", "Python", "Git", "Proton", "McAfee", "Dell"
+    };
+    private static final String[] PRODUCTS = {
+        "Visual C++ Redistributable", "Reader", "Chrome", "Firefox", "Java Runtime", "PyCharm",
+        "Armoury Crate", "Graphics Driver", "Audio Driver", "Media Player", "Standard Library",
+        "Update Helper", "VPN", "Security Center", "Support Assist", ".NET Host"
+    };
+    private static final String[] EDITIONS = { "", " (x64)", " (x86)", " - en-us", " (64-bit)", " Service" };
+    private static final Status[] STATUSES = {
+        Status.INSTALLED, Status.INSTALLED, Status.INSTALLED, Status.TRIAL, Status.EXPIRED, Status.NOT_INSTALLED
+    };
+    private static final LocalDate BASE_DATE = LocalDate.of(2026, 2, 26);
+
+    public static List<Software> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Software> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = VENDORS[random.nextInt(VENDORS.length)] + " "
+                + PRODUCTS[random.nextInt(PRODUCTS.length)]
+                + EDITIONS[random.nextInt(EDITIONS.length)]
+                + " " + i; // Keeps names unique
+            String version = random.nextInt(30) + "." + random.nextInt(10) + "." + random.nextInt(200);
+            list.add(new Software(name, version, BASE_DATE.minusDays(random.nextInt(3650)),
+                STATUSES[random.nextInt(STATUSES.length)]));
+        }
+        return list;
+    }
+
+    // One workstation: entries distinct products from the shared catalogue, each on
+    // one of a few releases, so products repeat across hosts with a version spread
+    public static List<Software> generateHost(int entries, Random random) {
+        int catalogue = VENDORS.length * PRODUCTS.length * EDITIONS.length;
+        Set<Integer> picked = new HashSet<>();
+        List<Software> list = new ArrayList<>(entries);
+        while (list.size() < Math.min(entries, catalogue)) {
+            int product = random.nextInt(catalogue);
+            if (!picked.add(product)) continue;
+            String name = VENDORS[product % VENDORS.length] + " "
+                + PRODUCTS[product / VENDORS.length % PRODUCTS.length]
+                + EDITIONS[product / (VENDORS.length * PRODUCTS.length)];
+            String version = (product % 30) + "." + random.nextInt(4) + "." + random.nextInt(3) * 10;
+            list.add(new Software(name, version, BASE_DATE.minusDays(random.nextInt(3650)),
+                STATUSES[random.nextInt(STATUSES.length)]));
+        }
+        return list;
+    }
+
+    // Writes host-00000.txt ... into directory
+    public static void writeFleet(File directory, int hosts, int entries, long seed) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+        Random random = new Random(seed);
+        for (int h = 0; h < hosts; h++) {
+            writeText(generateHost(entries, random), new File(directory, String.format("host-%05d.txt", h)));
+        }
+    }
+
+    public static void writeText(List<Software> rows, File file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            StringBuilder line = new StringBuilder(128);
+            for (Software s : rows) {
+                line.setLength(0);
+                writer.append(SoftwareCodec.encode(s, line));
+                writer.newLine();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 4 && args[0].equals("fleet")) {
+            writeFleet(new File(args[3]), Integer.parseInt(args[1]), Integer.parseInt(args[2]), 42);
+            System.out.println("Wrote " + args[1] + " hosts to " + args[3]);
+            return;
+        }
+        if (args.length < 2) {
+            System.err.println("Usage: java InventoryGenerator <count> <file> [text|binary]");
+            System.err.println("       java InventoryGenerator fleet <hosts> <entries per host> <directory>");
+            System.exit(2);
+        }
+        List<Software> rows = generate(Integer.parseInt(args[0]), 42);
+        File file = new File(args[1]);
+        if (args.length > 2 && args[2].equals("binary")) {
+            BinarySnapshot.write(rows, 0, file);
+        } else {
+            writeText(rows, file);
+        }
+        System.out.println("Wrote " + rows.size() + " rows to " + file);
+    }
+}
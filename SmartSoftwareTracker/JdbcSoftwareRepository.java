@@ -0,0 +1,483 @@
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Records in one table of an embedded SQL database, e.g. H2 (jdbc:h2:./software_data)
+// or SQLite (jdbc:sqlite:software_data.db); the driver jar goes on the class path. The
+// build has both as test dependencies, and JdbcSoftwareRepositoryTest runs against each.
+// One connection stays open with its insert, update and delete statements prepared.
+// Edits are added to JDBC batches, which are executed and committed together after
+// BATCH_SIZE rows or BATCH_DELAY_MS, whichever comes first, like the journal's group syncs.
+//
+// Rows are keyed by an id handed out in insertion order, so reading ORDER BY id gives the
+// manager's list back. The ids of the current rows are kept in an array parallel to that
+// list, to turn the manager's positions into keys; ids are never reused.
+//
+// A failed write rolls back everything since the last commit, after which those ids no
+// longer match the table. From then on edits are not sent and sync() throws, until the
+// next checkpoint() rewrites the table from the manager's records in one transaction.
+public class JdbcSoftwareRepository implements SoftwareRepository {
+    private static final int BATCH_SIZE = 1000;
+    private static final long BATCH_DELAY_MS = 20;
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS software ("
+            + "id BIGINT PRIMARY KEY, "
+            + "name VARCHAR(1024) NOT NULL, "
+            + "name_key VARCHAR(1024) NOT NULL, "
+            + "version VARCHAR(256) NOT NULL, "
+            + "installed_day INTEGER NOT NULL, "
+            + "status VARCHAR(16) NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS software_name ON software (name_key)",
+        "CREATE INDEX IF NOT EXISTS software_status ON software (status)"
+    };
+    private static final String COLUMNS = "name, version, installed_day, status";
+
+    private static final ScheduledExecutorService COMMITTER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "jdbc-commit");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String url;
+    private final Connection connection;
+    private final PreparedStatement insert;
+    private final PreparedStatement update;
+    private final PreparedStatement delete;
+    private int pendingInserts;
+    private int pendingUpdates;
+    private int pendingDeletes;
+    private long[] ids = new long[1024];
+    private int size;
+    private long nextId = 1;
+    private ScheduledFuture<?> scheduledCommit;
+    private boolean closed;
+    // The write that failed since the table last matched the manager's records, or null
+    private SQLException failure;
+
+    public JdbcSoftwareRepository(String url) throws IOException {
+        this.url = url;
+        try {
+            connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA) statement.execute(sql);
+            }
+            connection.setAutoCommit(false);
+            insert = connection.prepareStatement(
+                "INSERT INTO software (id, name, name_key, version, installed_day, status) VALUES (?, ?, ?, ?, ?, ?)");
+            update = connection.prepareStatement(
+                "UPDATE software SET name = ?, name_key = ?, version = ?, installed_day = ?, status = ? WHERE id = ?");
+            delete = connection.prepareStatement("DELETE FROM software WHERE id = ?");
+        } catch (SQLException e) {
+            throw new IOException("Cannot open " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public synchronized List<Software> load() throws IOException {
+        List<Software> rows = new ArrayList<>();
+        size = 0;
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(BATCH_SIZE);
+            try (ResultSet rs = statement.executeQuery("SELECT id, " + COLUMNS + " FROM software ORDER BY id")) {
+                while (rs.next()) {
+                    long id = rs.getLong(1);
+                    try {
+                        rows.add(read(rs, 2));
+                    } catch (IllegalArgumentException e) {
+                        Log.warn("data.badRow", "url", url, "id", id);
+                        continue;
+                    }
+                    appendId(id);
+                    nextId = Math.max(nextId, id + 1);
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Cannot read " + url + ": " + e.getMessage(), e);
+        }
+        return rows;
+    }
+
+    @Override
+    public synchronized void add(Software s) {
+        if (failure != null) return;
+        try {
+            bindInsert(s);
+            batched();
+        } catch (SQLException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void addAll(List<Software> batch) {
+        if (failure != null) return;
+        try {
+            for (Software s : batch) {
+                bindInsert(s);
+                if (pendingInserts >= BATCH_SIZE) executeBatches();
+            }
+            batched();
+        } catch (SQLException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void replace(int index, Software s) {
+        if (failure != null) return;
+        try {
+            bind(update, 1, s);
+            update.setLong(6, idAt(index));
+            update.addBatch();
+            pendingUpdates++;
+            batched();
+        } catch (SQLException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void remove(int index) {
+        if (failure != null) return;
+        try {
+            delete.setLong(1, idAt(index));
+            delete.addBatch();
+            pendingDeletes++;
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            batched();
+        } catch (SQLException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void sync() throws IOException {
+        if (scheduledCommit != null) {
+            scheduledCommit.cancel(false);
+            scheduledCommit = null;
+        }
+        if (failure != null) {
+            throw new IOException("Cannot write " + url + ": " + failure.getMessage()
+                + " (edits since are saved at the next checkpoint)", failure);
+        }
+        try {
+            executeBatches();
+            connection.commit();
+        } catch (SQLException e) {
+            failed(e);
+            throw new IOException("Cannot write " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    // After a failed write, puts the manager's records back in place of the table
+    @Override
+    public synchronized void checkpoint(List<Software> rows, boolean force) throws IOException {
+        if (failure != null) {
+            rewrite(rows);
+        } else if (force) {
+            sync();
+        }
+    }
+
+    private void rewrite(List<Software> rows) throws IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM software");
+            size = 0;
+            for (Software s : rows) {
+                bindInsert(s);
+                if (pendingInserts >= BATCH_SIZE) executeBatches();
+            }
+            executeBatches();
+            connection.commit();
+            failure = null;
+            Log.info("data.rewritten", "url", url, "rows", rows.size());
+        } catch (SQLException e) {
+            failed(e);
+            throw new IOException("Cannot rewrite " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Drops the open transaction and the batches queued for it
+    private void failed(SQLException e) {
+        failure = e;
+        pendingInserts = 0;
+        pendingUpdates = 0;
+        pendingDeletes = 0;
+        try {
+            insert.clearBatch();
+            update.clearBatch();
+            delete.clearBatch();
+            connection.rollback();
+        } catch (SQLException rollback) {
+            e.addSuppressed(rollback);
+        }
+        Log.error("data.writeFailed", e, "url", url);
+    }
+
+    // Matching rows in query order, from offset on; pages for views too big to hold in
+    // memory. Name, status, date and the NAME, DATE and STATUS sorts run in the
+    // database; product and version conditions, and the VERSION sort, are applied here
+    // to every row the database returns.
+    public synchronized List<Software> page(SoftwareQuery q, int offset, int limit) throws IOException {
+        boolean local = needsLocalFilter(q);
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM software");
+        where(q, sql, params);
+        if (!local) {
+            sql.append(" ORDER BY ").append(orderBy(q));
+            int count = Math.min(limit, q.limit - Math.min(q.limit, offset));
+            sql.append(" LIMIT ? OFFSET ?");
+            params.add(Math.max(0, count));
+            params.add(offset);
+        }
+        List<Software> rows = new ArrayList<>();
+        try (Metrics.Span span = Metrics.LOAD.start("page")) {
+            sync();
+            try (PreparedStatement select = connection.prepareStatement(sql.toString())) {
+                bindAll(select, params);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        Software s = read(rs, 1);
+                        if (!local || q.matches(s)) rows.add(s);
+                    }
+                }
+            }
+            connection.commit();
+            span.setCount(rows.size());
+        } catch (SQLException e) {
+            throw new IOException("Cannot query " + url + ": " + e.getMessage(), e);
+        }
+        if (!local) return rows;
+
+        if (q.sort != null) {
+            Comparator<Software> order = q.sort.comparator();
+            rows.sort(q.descending ? order.reversed() : order);
+        }
+        int end = Math.min(rows.size(), Math.min(q.limit, offset + limit));
+        return offset >= end ? new ArrayList<>() : new ArrayList<>(rows.subList(offset, end));
+    }
+
+    // Number of matching rows, up to the query's limit
+    public synchronized int count(SoftwareQuery q) throws IOException {
+        if (needsLocalFilter(q)) {
+            return page(q.copy().sortBy(null, false), 0, Integer.MAX_VALUE).size();
+        }
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM software");
+        where(q, sql, params);
+        try {
+            sync();
+            try (PreparedStatement select = connection.prepareStatement(sql.toString())) {
+                bindAll(select, params);
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    long count = rs.getLong(1);
+                    connection.commit();
+                    return (int) Math.min(count, q.limit);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Cannot query " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            sync();
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                Log.error("data.closeFailed", e, "url", url);
+            }
+        }
+    }
+
+    private void bindInsert(Software s) throws SQLException {
+        long id = nextId++;
+        insert.setLong(1, id);
+        bind(insert, 2, s);
+        insert.addBatch();
+        pendingInserts++;
+        appendId(id);
+    }
+
+    // name, name_key, version, installed_day, status from the given parameter on
+    private static void bind(PreparedStatement statement, int first, Software s) throws SQLException {
+        statement.setString(first, s.getName());
+        statement.setString(first + 1, nameKey(s.getName()));
+        statement.setString(first + 2, s.getVersion());
+        statement.setInt(first + 3, s.getEpochDay());
+        statement.setString(first + 4, s.getStatus().getLabel());
+    }
+
+    private static Software read(ResultSet rs, int first) throws SQLException {
+        return new Software(rs.getString(first), rs.getString(first + 1), rs.getInt(first + 2),
+            Status.fromLabel(rs.getString(first + 3)));
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private void appendId(long id) {
+        if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+        ids[size++] = id;
+    }
+
+    private long idAt(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return ids[index];
+    }
+
+    // Commits a full batch now, otherwise makes sure one is scheduled
+    private void batched() throws SQLException {
+        if (pendingInserts + pendingUpdates + pendingDeletes >= BATCH_SIZE) {
+            executeBatches();
+            connection.commit();
+        } else if (scheduledCommit == null) {
+            scheduledCommit = COMMITTER.schedule(this::commitQuietly, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Inserts first: an update or delete in the same batch may name a row added in it.
+    // Ids are never reused, so the reverse never happens.
+    private void executeBatches() throws SQLException {
+        if (pendingInserts > 0) insert.executeBatch();
+        if (pendingUpdates > 0) update.executeBatch();
+        if (pendingDeletes > 0) delete.executeBatch();
+        pendingInserts = 0;
+        pendingUpdates = 0;
+        pendingDeletes = 0;
+    }
+
+    private synchronized void commitQuietly() {
+        scheduledCommit = null;
+        if (closed || failure != null) return;
+        try {
+            sync();
+        } catch (IOException e) {
+            Log.error("data.writeFailed", e, "url", url);
+        }
+    }
+
+    private static boolean needsLocalFilter(SoftwareQuery q) {
+        return q.product != null || q.minVersion != null || q.maxVersion != null || q.sort == SoftwareQuery.Sort.VERSION;
+    }
+
+    private static void where(SoftwareQuery q, StringBuilder sql, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (q.namePrefix != null) {
+            conditions.add("name_key LIKE ? ESCAPE '\\'");
+            params.add(escapeLike(nameKey(q.namePrefix)) + "%");
+        }
+        if (q.nameContains != null) {
+            conditions.add("name_key LIKE ? ESCAPE '\\'");
+            params.add("%" + escapeLike(nameKey(q.nameContains)) + "%");
+        }
+        if (q.statuses != null) {
+            StringBuilder in = new StringBuilder("status IN (");
+            for (Status status : q.statuses) {
+                if (in.charAt(in.length() - 1) != '(') in.append(", ");
+                in.append('?');
+                params.add(status.getLabel());
+            }
+            conditions.add(in.append(')').toString());
+        }
+        if (q.fromDay != Integer.MIN_VALUE) {
+            conditions.add("installed_day >= ?");
+            params.add(q.fromDay);
+        }
+        if (q.toDay != Integer.MAX_VALUE) {
+            conditions.add("installed_day <= ?");
+            params.add(q.toDay);
+        }
+        if (!conditions.isEmpty()) sql.append(" WHERE ").append(String.join(" AND ", conditions));
+    }
+
+    // Ties keep insertion order, as the index's stable sort does
+    private static String orderBy(SoftwareQuery q) {
+        if (q.sort == null) return "id";
+        String direction = q.descending ? " DESC" : "";
+        switch (q.sort) {
+            case NAME: return "name_key" + direction + ", id";
+            case DATE: return "installed_day" + direction + ", id";
+            default: {
+                // Status sorts by declaration order, not by label
+                StringBuilder rank = new StringBuilder("CASE status");
+                for (Status status : Status.values()) {
+                    rank.append(" WHEN '").append(status.getLabel()).append("' THEN ").append(status.ordinal());
+                }
+                return rank.append(" END").append(direction).append(", id").toString();
+            }
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static void bindAll(PreparedStatement statement, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object p = params.get(i);
+            if (p instanceof Integer) statement.setInt(i + 1, (Integer) p); else statement.setString(i + 1, (String) p);
+        }
+    }
+
+    // Imports a text or binary data file into a database:
+    //   java -cp .:h2.jar JdbcSoftwareRepository software_data.txt jdbc:h2:./software_data
+    // Refuses a database that already has records unless --replace is given.
+    public static void main(String[] args) throws Exception {
+        boolean replace = args.length == 3 && args[0].equals("--replace");
+        if (args.length != (replace ? 3 : 2)) {
+            System.err.println("Usage: java JdbcSoftwareRepository [--replace] <data file> <jdbc url>");
+            System.exit(2);
+        }
+        File source = new File(args[args.length - 2]);
+        if (!source.isFile()) {
+            System.err.println("No such file: " + source);
+            System.exit(2);
+        }
+        List<Software> rows = new TextSoftwareRepository(source).read();
+
+        try (JdbcSoftwareRepository target = new JdbcSoftwareRepository(args[args.length - 1])) {
+            List<Software> existing = target.load();
+            if (!existing.isEmpty()) {
+                if (!replace) {
+                    System.err.println(target.getUrl() + " already has " + existing.size() + " records; use --replace");
+                    System.exit(1);
+                }
+                for (int i = existing.size() - 1; i >= 0; i--) target.remove(i);
+            }
+            long start = System.nanoTime();
+            target.addAll(rows);
+            target.sync();
+            System.out.printf("Imported %d records into %s in %d ms%n", rows.size(), target.getUrl(),
+                (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
\ No newline at end of file
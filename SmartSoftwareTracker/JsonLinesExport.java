@@ -0,0 +1,190 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// JSON Lines: one flat object per line, {"name":..,"version":..,"installed":..,"status":..}.
+// The reader takes any flat object; unknown keys are ignored and values that aren't
+// strings are kept as their text.
+public final class JsonLinesExport {
+
+    private JsonLinesExport() {
+    }
+
+    static final class Writer implements SoftwareWriter {
+        private final java.io.Writer out;
+        private final String[] fields = new String[ExportFormat.COLUMNS.length];
+        private final StringBuilder date = new StringBuilder(10);
+
+        Writer(OutputStream out) {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        @Override
+        public void write(Software s) throws IOException {
+            fields[0] = s.getName();
+            fields[1] = s.getVersion();
+            fields[2] = ExportFormat.formatDate(s.getEpochDay(), date);
+            fields[3] = s.getStatus().getLabel();
+            writeObject(out, ExportFormat.COLUMNS, fields);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    static final class Reader implements SoftwareReader {
+        private final BufferedReader in;
+        private final Map<String, String> values = new HashMap<>();
+        private int lineNumber;
+
+        Reader(InputStream in) {
+            this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        @Override
+        public Software read() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+                if (line == null) return null;
+                lineNumber++;
+            } while (line.isBlank());
+            try {
+                values.clear();
+                parseObject(line, values);
+                return ExportFormat.toSoftware(values.get("name"), values.get("version"),
+                    values.get("installed"), values.get("status"));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // One object and a newline; null fields are left out
+    static void writeObject(java.io.Writer out, String[] names, String[] fields) throws IOException {
+        out.write('{');
+        boolean first = true;
+        for (int i = 0; i < names.length; i++) {
+            if (fields[i] == null) continue;
+            if (!first) out.write(',');
+            first = false;
+            writeString(out, names[i]);
+            out.write(':');
+            writeString(out, fields[i]);
+        }
+        out.write("}\n");
+    }
+
+    private static void writeString(java.io.Writer out, String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) continue;
+            out.write(s, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default: out.write(String.format("\\u%04x", (int) c));
+            }
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+
+    // Reads one flat object into values; throws IllegalArgumentException if malformed
+    static void parseObject(String line, Map<String, String> values) {
+        int[] pos = { 0 };
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') return;
+        while (true) {
+            String key = parseString(line, pos);
+            expect(line, pos, ':');
+            String value;
+            if (peek(line, pos) == '"') {
+                value = parseString(line, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) pos[0]++;
+                value = line.substring(start, pos[0]);
+                if (value.isEmpty()) throw new IllegalArgumentException("expected a value at " + start);
+                if (value.equals("null")) value = null;
+            }
+            values.put(key, value);
+            if (peek(line, pos) == ',') {
+                pos[0]++;
+                continue;
+            }
+            expect(line, pos, '}');
+            return;
+        }
+    }
+
+    private static String parseString(String line, int[] pos) {
+        expect(line, pos, '"');
+        int i = pos[0];
+        // Most values have no escapes and come back as one substring
+        int quote = line.indexOf('"', i);
+        int backslash = line.indexOf('\\', i);
+        if (quote >= 0 && (backslash < 0 || backslash > quote)) {
+            pos[0] = quote + 1;
+            return line.substring(i, quote);
+        }
+        StringBuilder sb = new StringBuilder();
+        while (i < line.length()) {
+            char c = line.charAt(i++);
+            if (c == '"') {
+                pos[0] = i;
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i == line.length()) break;
+            char e = line.charAt(i++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (i + 4 > line.length()) throw new IllegalArgumentException("bad escape at " + i);
+                    try {
+                        sb.append((char) Integer.parseInt(line.substring(i, i + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("bad escape at " + i);
+                    }
+                    i += 4;
+                    break;
+                default: sb.append(e);
+            }
+        }
+        throw new IllegalArgumentException("unterminated string");
+    }
+
+    private static char peek(String line, int[] pos) {
+        int i = pos[0];
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) i++;
+        pos[0] = i;
+        return i < line.length() ? line.charAt(i) : 0;
+    }
+
+    private static void expect(String line, int[] pos, char c) {
+        if (peek(line, pos) != c) throw new IllegalArgumentException("expected '" + c + "' at " + pos[0]);
+        pos[0]++;
+    }
+}
\ No newline at end of file
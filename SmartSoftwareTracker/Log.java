@@ -0,0 +1,186 @@
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Leveled, structured logging that stays off the calling thread. A call only checks
+// the level and queues the record; a daemon thread formats and writes it to stderr:
+//
+//   2026-10-18T14:03:12.481 INFO  scan.complete added=3 upgraded=1 total=412
+//
+// Each record is an event name plus key/value pairs. The level is set with
+// -Dtracker.log=error|warn|info|debug (default info). When the queue is full, info
+// and debug records are dropped and counted rather than blocking a scan.
+public final class Log {
+    public enum Level { ERROR, WARN, INFO, DEBUG }
+
+    private static final int QUEUE_CAPACITY = 4096;
+
+    // Built on the first record written; the formatter classes are slow to load for
+    // short command-line runs that never log
+    private static final class Time {
+        static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+    }
+
+    private static final class Record {
+        final long time;
+        final Level level;
+        final String event;
+        final Object[] fields;
+        final Throwable error;
+
+        Record(Level level, String event, Object[] fields, Throwable error) {
+            this.time = System.currentTimeMillis();
+            this.level = level;
+            this.event = event;
+            this.fields = fields;
+            this.error = error;
+        }
+    }
+
+    private static volatile Level threshold = parseLevel(System.getProperty("tracker.log", "info"));
+    private static final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final PrintStream out = System.err;
+
+    static {
+        Thread writer = new Thread(Log::drainForever, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // Whatever is still queued when the JVM exits gets written by the hook
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    public static Level getLevel() {
+        return threshold;
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() <= threshold.ordinal();
+    }
+
+    public static void error(String event, Throwable error, Object... fields) {
+        log(Level.ERROR, event, fields, error);
+    }
+
+    public static void warn(String event, Object... fields) {
+        log(Level.WARN, event, fields, null);
+    }
+
+    public static void info(String event, Object... fields) {
+        log(Level.INFO, event, fields, null);
+    }
+
+    public static void debug(String event, Object... fields) {
+        log(Level.DEBUG, event, fields, null);
+    }
+
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    private static void log(Level level, String event, Object[] fields, Throwable error) {
+        if (!isEnabled(level)) return;
+        Record record = new Record(level, event, fields, error);
+        if (level.compareTo(Level.WARN) <= 0) {
+            try {
+                queue.put(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write(record);
+            }
+        } else if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static void drainForever() {
+        while (true) {
+            try {
+                write(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Writes out everything queued so far on the calling thread
+    public static void flush() {
+        Record record;
+        while ((record = queue.poll()) != null) {
+            write(record);
+        }
+        out.flush();
+    }
+
+    private static void write(Record record) {
+        StringBuilder line = new StringBuilder(96);
+        Time.FORMAT.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.time), ZoneId.systemDefault()), line);
+        line.append(' ').append(record.level);
+        for (int pad = record.level.name().length(); pad < 5; pad++) line.append(' ');
+        line.append(' ').append(record.event);
+        Object[] fields = record.fields;
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            line.append(' ').append(fields[i]).append('=');
+            appendValue(line, String.valueOf(fields[i + 1]));
+        }
+        if (record.error != null) {
+            line.append(" error=");
+            appendValue(line, String.valueOf(record.error));
+        }
+        long lost = dropped.getAndSet(0);
+        synchronized (out) {
+            if (lost > 0) out.println("log.dropped records=" + lost);
+            out.println(line);
+            if (record.error != null) {
+                StringWriter trace = new StringWriter();
+                record.error.printStackTrace(new PrintWriter(trace));
+                out.print(trace);
+            }
+        }
+    }
+
+    // Quoted when it has spaces, quotes or '=' in it, so lines stay splittable
+    private static void appendValue(StringBuilder line, String value) {
+        boolean quote = value.isEmpty();
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ' ' || c == '"' || c == '=' || c < ' ';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') line.append('\\').append(c);
+            else if (c == '\n') line.append("\\n");
+            else if (c == '\r') line.append("\\r");
+            else line.append(c);
+        }
+        line.append('"');
+    }
+}
\ No newline at end of file
@@ -1,16 +1,27 @@
-import javax.swing.*;
-
-public class Main {
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            
-            MainFrame frame = new MainFrame();
-            frame.setVisible(true);
-        });
-    }
+import javax.swing.*;
+import java.io.UncheckedIOException;
+
+public class Main {
+    public static void main(String[] args) {
+        // Readable from jconsole/VisualVM while the app runs
+        Metrics.registerMBean();
+        SwingUtilities.invokeLater(() -> {
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception e) {
+                Log.warn("ui.lookAndFeel", "reason", e);
+            }
+            
+            MainFrame frame;
+            try {
+                frame = new MainFrame();
+            } catch (UncheckedIOException e) {
+                // The store asked for (-Dtracker.jdbc) can't be opened
+                JOptionPane.showMessageDialog(null, e.getMessage(), "Cannot open data", JOptionPane.ERROR_MESSAGE);
+                System.exit(1);
+                return;
+            }
+            frame.setVisible(true);
+        });
+    }
 }
\ No newline at end of file
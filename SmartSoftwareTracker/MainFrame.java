@@ -1,162 +1,383 @@
-import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import java.awt.*;
-import java.time.LocalDate;
-
-public class MainFrame extends JFrame {
-    private SoftwareManager manager;
-    private JTable table;
-    private DefaultTableModel tableModel;
-
-    public MainFrame() {
-        manager = new SoftwareManager();
-        setTitle("Smart Software Installation Tracker");
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setSize(600, 400);
-        setLocationRelativeTo(null);
-
-        createMenuBar();
-        createTable();
-        createButtonPanel();
-        refreshTable();
-    }
-
-    private void createMenuBar() {
-        JMenuBar menuBar = new JMenuBar();
-        JMenu fileMenu = new JMenu("File");
-        JMenuItem exitItem = new JMenuItem("Exit");
-        exitItem.addActionListener(e -> System.exit(0));
-        fileMenu.add(exitItem);
-        menuBar.add(fileMenu);
-        setJMenuBar(menuBar);
-    }
-
-    private void createTable() {
-        String[] columns = {"Name", "Version", "Installation Date", "Status"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-        
-        table = new JTable(tableModel);
-        JScrollPane scrollPane = new JScrollPane(table);
-        add(scrollPane, BorderLayout.CENTER);
-    }
-
-    private void createButtonPanel() {
-        JPanel buttonPanel = new JPanel(new FlowLayout());
-        
-        JButton addButton = new JButton("Add");
-        JButton editButton = new JButton("Edit");
-        JButton deleteButton = new JButton("Delete");
-        JButton refreshButton = new JButton("Refresh");
-        JButton scanButton = new JButton("Scan System");  // New button
-
-        addButton.addActionListener(e -> addSoftware());
-        editButton.addActionListener(e -> editSoftware());
-        deleteButton.addActionListener(e -> deleteSoftware());
-        refreshButton.addActionListener(e -> refreshTable());
-        
-        // Add action for scan button
-        scanButton.addActionListener(e -> {
-            int confirm = JOptionPane.showConfirmDialog(this,
-                "This will scan your system for installed software. Continue?",
-                "Confirm System Scan",
-                JOptionPane.YES_NO_OPTION);
-                
-            if (confirm == JOptionPane.YES_OPTION) {
-                // Run scan in background thread to prevent UI freezing
-                new Thread(() -> {
-                    scanButton.setEnabled(false);
-                    scanButton.setText("Scanning...");
-                    manager.scanSystemForSoftware();
-                    SwingUtilities.invokeLater(() -> {
-                        refreshTable();
-                        scanButton.setEnabled(true);
-                        scanButton.setText("Scan System");
-                        JOptionPane.showMessageDialog(this, 
-                            "System scan complete! Total software: " + manager.getDetectedSoftwareCount());
-                    });
-                }).start();
-            }
-        });
-
-        buttonPanel.add(addButton);
-        buttonPanel.add(editButton);
-        buttonPanel.add(deleteButton);
-        buttonPanel.add(refreshButton);
-        buttonPanel.add(scanButton);  // Add the new button
-        
-        add(buttonPanel, BorderLayout.SOUTH);
-    }
-
-    private void addSoftware() {
-        AddEditDialog dialog = new AddEditDialog(this, "Add Software", null);
-        dialog.setVisible(true);
-        
-        if (dialog.isConfirmed()) {
-            manager.addSoftware(
-                dialog.getName(),
-                dialog.getVersion(),
-                dialog.getDate(),
-                dialog.getStatus()
-            );
-            refreshTable();
-        }
-    }
-
-    private void editSoftware() {
-        int selectedRow = table.getSelectedRow();
-        if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a software to edit!");
-            return;
-        }
-
-        Software software = manager.getAllSoftware().get(selectedRow);
-        AddEditDialog dialog = new AddEditDialog(this, "Edit Software", software);
-        dialog.setVisible(true);
-
-        if (dialog.isConfirmed()) {
-            manager.updateSoftware(
-                selectedRow,
-                dialog.getName(),
-                dialog.getVersion(),
-                dialog.getDate(),
-                dialog.getStatus()
-            );
-            refreshTable();
-        }
-    }
-
-    private void deleteSoftware() {
-        int selectedRow = table.getSelectedRow();
-        if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a software to delete!");
-            return;
-        }
-
-        int confirm = JOptionPane.showConfirmDialog(this,
-            "Are you sure you want to delete this software?",
-            "Confirm Delete",
-            JOptionPane.YES_NO_OPTION);
-
-        if (confirm == JOptionPane.YES_OPTION) {
-            manager.removeSoftware(selectedRow);
-            refreshTable();
-        }
-    }
-
-    private void refreshTable() {
-        tableModel.setRowCount(0);
-        for (Software s : manager.getAllSoftware()) {
-            tableModel.addRow(new Object[]{
-                s.getName(),
-                s.getVersion(),
-                s.getInstallationDate(),
-                s.getStatus()
-            });
-        }
-    }
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class MainFrame extends JFrame {
+    private SoftwareManager manager;
+    private JTable table;
+    private SoftwareTableModel tableModel;
+    private JLabel statusLabel;
+    private JTextField searchField;
+    private JComboBox<Object> statusFilter;
+    // Scan in progress, or null
+    private ScanPipeline scanPipeline;
+    private static final long SCAN_TIMEOUT_MINUTES = 5;
+
+    public MainFrame() {
+        manager = new SoftwareManager();
+        setTitle("Smart Software Installation Tracker");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setSize(600, 400);
+        setLocationRelativeTo(null);
+
+        createMenuBar();
+        createTable();
+        createSearchPanel();
+        createButtonPanel();
+        refreshTable();
+        startExpiry();
+        manager.openHistoryInBackground();
+    }
+
+    // Marks records Expired at their deadline while the window is open, and says so
+    private void startExpiry() {
+        try {
+            ExpiryScheduler scheduler = manager.getExpiryScheduler();
+            scheduler.addListener(new ExpiryScheduler.Listener() {
+                @Override
+                public void expiring(List<ExpiryScheduler.Alert> alerts) {
+                    show(alerts.size() == 1
+                        ? alerts.get(0).getSoftware().getName() + " expires " + expiryDate(alerts.get(0))
+                        : alerts.size() + " expire within " + Long.getLong("tracker.expiry.notice", 7) + " days");
+                }
+
+                @Override
+                public void expired(List<ExpiryScheduler.Alert> alerts) {
+                    show(alerts.size() == 1
+                        ? alerts.get(0).getSoftware().getName() + " expired"
+                        : alerts.size() + " expired");
+                }
+
+                private void show(String message) {
+                    SwingUtilities.invokeLater(() -> statusLabel.setText(message));
+                }
+            });
+            scheduler.start();
+        } catch (IOException e) {
+            Log.error("expiry.openFailed", e);
+        }
+    }
+
+    private static LocalDate expiryDate(ExpiryScheduler.Alert alert) {
+        return LocalDate.ofInstant(alert.getDeadline(), ZoneId.systemDefault());
+    }
+
+    private void createMenuBar() {
+        JMenuBar menuBar = new JMenuBar();
+        JMenu fileMenu = new JMenu("File");
+        JMenuItem importItem = new JMenuItem("Import...");
+        JMenuItem exportItem = new JMenuItem("Export...");
+        JMenuItem exitItem = new JMenuItem("Exit");
+        importItem.addActionListener(e -> importFile());
+        exportItem.addActionListener(e -> exportFile());
+        exitItem.addActionListener(e -> System.exit(0));
+        fileMenu.add(importItem);
+        fileMenu.add(exportItem);
+        fileMenu.addSeparator();
+        fileMenu.add(exitItem);
+        menuBar.add(fileMenu);
+        setJMenuBar(menuBar);
+    }
+
+    private void createTable() {
+        tableModel = new SoftwareTableModel(manager);
+
+        table = new JTable(tableModel);
+        // Click a column header to sort by it, again to reverse
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.columnAtPoint(e.getPoint());
+                if (column >= 0) tableModel.sortBy(column);
+            }
+        });
+        JScrollPane scrollPane = new JScrollPane(table);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    // Filters the table as you type: name substring plus an optional status
+    private void createSearchPanel() {
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchField = new JTextField(20);
+        statusFilter = new JComboBox<>();
+        statusFilter.addItem("All statuses");
+        for (Status status : Status.values()) statusFilter.addItem(status);
+
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { applySearch(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { applySearch(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { applySearch(); }
+        });
+        statusFilter.addActionListener(e -> applySearch());
+
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(searchField);
+        searchPanel.add(statusFilter);
+        add(searchPanel, BorderLayout.NORTH);
+    }
+
+    private void applySearch() {
+        String text = searchField.getText().trim();
+        Object status = statusFilter.getSelectedItem();
+        if (text.isEmpty() && !(status instanceof Status)) {
+            tableModel.setQuery(null);
+            return;
+        }
+        SoftwareQuery query = SoftwareQuery.all().nameContains(text);
+        if (status instanceof Status) query.status((Status) status);
+        tableModel.setQuery(query);
+    }
+
+    private void createButtonPanel() {
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        
+        JButton addButton = new JButton("Add");
+        JButton editButton = new JButton("Edit");
+        JButton deleteButton = new JButton("Delete");
+        JButton refreshButton = new JButton("Refresh");
+        JButton scanButton = new JButton("Scan System");  // New button
+
+        addButton.addActionListener(e -> addSoftware());
+        editButton.addActionListener(e -> editSoftware());
+        deleteButton.addActionListener(e -> deleteSoftware());
+        refreshButton.addActionListener(e -> refreshTable());
+        
+        // Add action for scan button; while scanning it cancels the scan
+        scanButton.addActionListener(e -> {
+            if (scanPipeline != null) {
+                scanPipeline.cancel();
+                return;
+            }
+
+            int confirm = JOptionPane.showConfirmDialog(this,
+                "This will scan your system for installed software. Continue?",
+                "Confirm System Scan",
+                JOptionPane.YES_NO_OPTION);
+                
+            if (confirm == JOptionPane.YES_OPTION) {
+                startScan(scanButton);
+            }
+        });
+
+        statusLabel = new JLabel(" ");
+
+        buttonPanel.add(addButton);
+        buttonPanel.add(editButton);
+        buttonPanel.add(deleteButton);
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(scanButton);  // Add the new button
+        buttonPanel.add(statusLabel);
+        
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    // Runs the scan pipeline on a SwingWorker; rows appear in the table as they are found
+    private void startScan(JButton scanButton) {
+        ScanPipeline pipeline = manager.newScanPipeline();
+        scanPipeline = pipeline;
+        scanButton.setText("Cancel Scan");
+        statusLabel.setText("Scanning...");
+
+        new SwingWorker<ChangeSet, String>() {
+            @Override
+            protected ChangeSet doInBackground() throws Exception {
+                return pipeline.run(SCAN_TIMEOUT_MINUTES, TimeUnit.MINUTES, (scopesDone, scopesTotal, seen, added) ->
+                    publish("Scanning... " + scopesDone + "/" + scopesTotal + " sources, " + added + " new"));
+            }
+
+            @Override
+            protected void process(List<String> chunks) {
+                statusLabel.setText(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                scanPipeline = null;
+                scanButton.setText("Scan System");
+                statusLabel.setText(" ");
+                try {
+                    ChangeSet changes = get();
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                        "System scan complete! " + changes + ". Total software: " + manager.getDetectedSoftwareCount());
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof CancellationException) {
+                        statusLabel.setText("Scan cancelled");
+                    } else if (cause instanceof TimeoutException) {
+                        JOptionPane.showMessageDialog(MainFrame.this, cause.getMessage());
+                    } else {
+                        JOptionPane.showMessageDialog(MainFrame.this, "Scan failed: " + cause.getMessage());
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    // One filter per ExportFormat; the chosen filter decides the format
+    private JFileChooser newExportChooser() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setAcceptAllFileFilterUsed(false);
+        for (ExportFormat format : ExportFormat.values()) {
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter(
+                format.name() + " (*." + format.getExtension() + ")", format.getExtension()));
+        }
+        chooser.setFileFilter(chooser.getChoosableFileFilters()[0]);
+        return chooser;
+    }
+
+    private static ExportFormat chosenFormat(JFileChooser chooser) {
+        String extension = ((FileNameExtensionFilter) chooser.getFileFilter()).getExtensions()[0];
+        return ExportFormat.forName(extension);
+    }
+
+    private void exportFile() {
+        JFileChooser chooser = newExportChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        ExportFormat format = chosenFormat(chooser);
+        File chosen = chooser.getSelectedFile();
+        File file = ExportFormat.forFile(chosen) == format ? chosen
+            : new File(chosen.getPath() + "." + format.getExtension());
+        runFileTask("Exporting...", () -> "Exported " + manager.exportTo(file, format) + " records to " + file.getName());
+    }
+
+    private void importFile() {
+        JFileChooser chooser = newExportChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        ExportFormat format = ExportFormat.forFile(file);
+        ExportFormat chosen = format != null ? format : chosenFormat(chooser);
+        runFileTask("Importing...", () -> "Imported " + file.getName() + ": "
+            + manager.importFrom(file, chosen) + " records added");
+    }
+
+    // Runs an import or export off the event thread and shows its result
+    private void runFileTask(String progress, Callable<String> task) {
+        statusLabel.setText(progress);
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() throws Exception {
+                return task.call();
+            }
+
+            @Override
+            protected void done() {
+                statusLabel.setText(" ");
+                try {
+                    JOptionPane.showMessageDialog(MainFrame.this, get());
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(MainFrame.this, "Failed: " + ex.getCause().getMessage());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    private void addSoftware() {
+        AddEditDialog dialog = new AddEditDialog(this, "Add Software", null);
+        dialog.setVisible(true);
+        
+        if (dialog.isConfirmed()) {
+            manager.addSoftware(
+                dialog.getName(),
+                dialog.getVersion(),
+                dialog.getDate(),
+                dialog.getStatus()
+            );
+            saveExpiry(dialog.getName(), dialog.getExpiry());
+        }
+    }
+
+    private void editSoftware() {
+        int selectedRow = table.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a software to edit!");
+            return;
+        }
+
+        Software software = tableModel.getSoftware(selectedRow);
+        AddEditDialog dialog = new AddEditDialog(this, "Edit Software", software, loadExpiry(software.getName()));
+        dialog.setVisible(true);
+
+        if (!dialog.isConfirmed()) {
+            return;
+        }
+        // The table may show an older snapshot, and a scan may have run while the dialog
+        // was open; update the record itself, or the one that replaced it under its name
+        if (!manager.updateRecord(
+                software,
+                dialog.getName(),
+                dialog.getVersion(),
+                dialog.getDate(),
+                dialog.getStatus())
+            && !manager.updateByName(
+                software.getName(),
+                dialog.getName(),
+                dialog.getVersion(),
+                dialog.getDate(),
+                dialog.getStatus())) {
+            JOptionPane.showMessageDialog(this, "\"" + software.getName()
+                + "\" was removed while you were editing it; your changes were not saved.");
+            return;
+        }
+        // A rename drops the old name's deadline along with the old record
+        saveExpiry(dialog.getName(), dialog.getExpiry());
+    }
+
+    private LocalDate loadExpiry(String name) {
+        try {
+            return manager.getExpiry(name);
+        } catch (IOException e) {
+            Log.error("expiry.readFailed", e);
+            return null;
+        }
+    }
+
+    private void saveExpiry(String name, LocalDate expiry) {
+        try {
+            manager.setExpiry(name, expiry);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not save the expiry date: " + e.getMessage());
+        }
+    }
+
+    private void deleteSoftware() {
+        int selectedRow = table.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a software to delete!");
+            return;
+        }
+
+        int confirm = JOptionPane.showConfirmDialog(this,
+            "Are you sure you want to delete this software?",
+            "Confirm Delete",
+            JOptionPane.YES_NO_OPTION);
+
+        if (confirm == JOptionPane.YES_OPTION) {
+            manager.removeRecord(tableModel.getSoftware(selectedRow));
+        }
+    }
+
+    private void refreshTable() {
+        tableModel.refresh();
+    }
 }
\ No newline at end of file
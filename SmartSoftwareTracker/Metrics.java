@@ -0,0 +1,307 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide counters and latency timers for the hot paths. Recording is a few
+// atomic adds, so it stays on in normal runs. Timers keep a histogram with one
+// bucket per power of two nanoseconds, which is enough for p50/p99 to within 2x.
+//
+// Everything is readable over JMX as SmartSoftwareTracker:type=Metrics (attributes
+// like "scan.parse.p99Ms"), once registerMBean() has run, and timers started with
+// start() also emit a PhaseEvent to JFR while a recording is running.
+public final class Metrics {
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    // Scan phases
+    public static final Timer SPAWN = timer("scan.spawn");
+    public static final Timer READ = timer("scan.read");
+    public static final Timer PARSE = timer("scan.parse");
+    public static final Timer SCOPE = timer("scan.scope");
+    public static final Timer DEDUP = timer("scan.dedup");
+    public static final Timer MERGE = timer("scan.merge");
+    public static final Timer DIFF = timer("scan.diff");
+    public static final Timer RESOLVE = timer("scan.resolve");
+    // One command in a pooled shell session, from sending it to reading its sentinel
+    public static final Timer SHELL_COMMAND = timer("shell.command");
+    // Storage and UI
+    public static final Timer LOAD = timer("data.load");
+    public static final Timer SAVE = timer("data.save");
+    public static final Timer HISTORY_LOAD = timer("history.load");
+    public static final Timer EXPIRY_LOAD = timer("expiry.load");
+    public static final Timer EXPIRY_BATCH = timer("expiry.batch");
+    public static final Timer TABLE_REFRESH = timer("table.refresh");
+
+    public static final Counter ENTRIES_SEEN = counter("scan.entries.seen");
+    public static final Counter ENTRIES_SKIPPED = counter("scan.entries.skipped");
+    public static final Counter ENTRIES_ADDED = counter("scan.entries.added");
+    public static final Counter PROCESSES_SPAWNED = counter("scan.processes");
+    public static final Counter CACHE_HITS = counter("scan.cache.hits");
+    public static final Counter CACHE_MISSES = counter("scan.cache.misses");
+    // Name pairs compared by EntityResolver, and scanned names merged into another
+    public static final Counter RESOLVE_COMPARISONS = counter("scan.resolve.comparisons");
+    public static final Counter RESOLVE_MATCHES = counter("scan.resolve.matches");
+    // Commands run on an already started shell, each a process start saved
+    public static final Counter SHELL_SPAWNS_AVOIDED = counter("shell.spawnsAvoided");
+    public static final Counter SHELL_RESTARTS = counter("shell.restarts");
+    public static final Counter HISTORY_EVENTS = counter("history.events");
+    public static final Counter EXPIRY_ALERTS = counter("expiry.alerts");
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    public static final class Counter {
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+        public void increment() { value.increment(); }
+        public void add(long n) { value.add(n); }
+        public long get() { return value.sum(); }
+    }
+
+    public static final class Timer {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        // Bucket i holds durations in [2^(i-1), 2^i) ns
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            count.increment();
+            totalNanos.add(nanos);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        // Records the time since start, a System.nanoTime() value
+        public void recordSince(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        // For try-with-resources around a phase; also emits a JFR event when recording
+        public Span start() {
+            return new Span(this, null);
+        }
+
+        public Span start(String detail) {
+            return new Span(this, detail);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getTotalNanos() { return totalNanos.sum(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+
+        // Upper bound of the bucket holding the q-th quantile, 0 when nothing was recorded
+        public long percentileNanos(double q) {
+            long total = 0;
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(i == 0 ? 0 : 1L << Math.min(i, 62), getMaxNanos());
+            }
+            return getMaxNanos();
+        }
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final Timer timer;
+        private final Object event;
+        private final long start;
+        private long count;
+
+        private Span(Timer timer, String detail) {
+            this.timer = timer;
+            this.event = JFR_AVAILABLE ? Jfr.begin(timer.name, detail) : null;
+            this.start = System.nanoTime();
+        }
+
+        // Items handled in the phase, reported with the JFR event
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        @Override
+        public void close() {
+            timer.recordSince(start);
+            if (event != null) Jfr.commit(event, count);
+        }
+    }
+
+    // Kept apart so nothing loads jdk.jfr classes on runtimes without the module
+    private static final class Jfr {
+        static Object begin(String phase, String detail) {
+            // Registering the event class costs hundreds of milliseconds; leave it
+            // until a recording has started (at launch or later through jcmd)
+            if (!jdk.jfr.FlightRecorder.isInitialized()) return null;
+            PhaseEvent event = new PhaseEvent();
+            if (!event.isEnabled()) return null;
+            event.phase = phase;
+            event.detail = detail;
+            event.begin();
+            return event;
+        }
+
+        static void commit(Object event, long count) {
+            PhaseEvent e = (PhaseEvent) event;
+            e.count = count;
+            e.commit();
+        }
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static List<Counter> getCounters() {
+        return new ArrayList<>(counters.values());
+    }
+
+    public static List<Timer> getTimers() {
+        return new ArrayList<>(timers.values());
+    }
+
+    // One line per metric, for logs and the command line
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Counter c : counters.values()) {
+            sb.append(String.format("%-24s %12d%n", c.getName(), c.get()));
+        }
+        for (Timer t : timers.values()) {
+            if (t.getCount() == 0) continue;
+            sb.append(String.format("%-24s %12d calls %10.3f ms total  p50 %.3f  p99 %.3f  max %.3f ms%n",
+                t.getName(), t.getCount(), t.getTotalNanos() / 1e6,
+                t.percentileNanos(0.5) / 1e6, t.percentileNanos(0.99) / 1e6, t.getMaxNanos() / 1e6));
+        }
+        return sb.toString();
+    }
+
+    // Registers the JMX bean once; later calls do nothing
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("SmartSoftwareTracker:type=Metrics");
+            if (!server.isRegistered(name)) server.registerMBean(new Bean(), name);
+        } catch (JMException e) {
+            Log.warn("metrics.jmx.unavailable", "reason", e.getMessage());
+        }
+    }
+
+    // Read-only attributes: every counter by name, and count/totalMs/maxMs/p50Ms/p99Ms per timer
+    private static final class Bean implements DynamicMBean {
+        private static final String[] TIMER_FIELDS = { "count", "totalMs", "maxMs", "p50Ms", "p99Ms" };
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Counter counter = counters.get(attribute);
+            if (counter != null) return counter.get();
+            int dot = attribute.lastIndexOf('.');
+            Timer timer = dot > 0 ? timers.get(attribute.substring(0, dot)) : null;
+            if (timer == null) throw new AttributeNotFoundException(attribute);
+            switch (attribute.substring(dot + 1)) {
+                case "count": return timer.getCount();
+                case "totalMs": return timer.getTotalNanos() / 1e6;
+                case "maxMs": return timer.getMaxNanos() / 1e6;
+                case "p50Ms": return timer.percentileNanos(0.5) / 1e6;
+                case "p99Ms": return timer.percentileNanos(0.99) / 1e6;
+                default: throw new AttributeNotFoundException(attribute);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Left out, as the interface allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        // Built on every call, since metrics can be added after registration
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : counters.keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, "long", "Counter", true, false, false));
+            }
+            for (String name : timers.keySet()) {
+                for (String field : TIMER_FIELDS) {
+                    String type = field.equals("count") ? "long" : "double";
+                    attributes.add(new MBeanAttributeInfo(name + "." + field, type, "Timer " + field, true, false, false));
+                }
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Smart Software Tracker metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event for one timed phase (see Metrics.Timer.start). Only committed while a
+// recording is running, e.g. java -XX:StartFlightRecording=filename=scan.jfr Main
+@Name("tracker.Phase")
+@Label("Tracker Phase")
+@Category("Smart Software Tracker")
+@Description("A timed phase of a scan, load, save or table refresh")
+@StackTrace(false)
+class PhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Detail")
+    String detail;
+
+    @Label("Count")
+    long count;
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+// Reads a whole hive with a single "reg query /s" process. -Dtracker.reg=<path> runs
+// another program the same way, such as fixtures/shell/reg.sh on Linux.
+//
+// reg stops at the first key it can't read and exits with 1, so output read to the end
+// is only a whole hive if the exit status is 0; otherwise close() throws, and the scan
+// counts the hive as failed instead of everything after that key as uninstalled.
+public class RegScanSource implements ScanSource {
+    private static final long EXIT_TIMEOUT_SECONDS = 10;
+
+    private final String command = System.getProperty("tracker.reg", "reg");
+
+    @Override
+    public BufferedReader open(String hive) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command, "query", hive, "/s");
+        Process process;
+        try (Metrics.Span span = Metrics.SPAWN.start(hive)) {
+            span.setCount(1);
+            process = processBuilder.start();
+        }
+        Metrics.PROCESSES_SPAWNED.increment();
+        process.getOutputStream().close();
+
+        boolean[] ended = { false };
+        InputStream output = new FilterInputStream(process.getInputStream()) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b < 0) ended[0] = true;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n < 0) ended[0] = true;
+                return n;
+            }
+        };
+        return new BufferedReader(new InputStreamReader(output)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                    // Closed early (cancelled, or the reader failed): nothing to check
+                    if (ended[0]) checkExit(process, hive);
+                } finally {
+                    process.destroy();
+                }
+            }
+        };
+    }
+
+    // reg writes one short line to stderr when it fails, so it is read after stdout
+    private static void checkExit(Process process, String hive) throws IOException {
+        String error;
+        try (InputStream in = process.getErrorStream()) {
+            error = new String(in.readAllBytes(), Charset.defaultCharset()).trim();
+        }
+        int exit;
+        try {
+            if (!process.waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("reg query " + hive + " did not exit after its output ended");
+            }
+            exit = process.exitValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for reg query " + hive, e);
+        }
+        if (exit != 0) {
+            throw new IOException("reg query " + hive + " failed with exit code " + exit
+                + (error.isEmpty() ? "" : ": " + error));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// String values of a single uninstall subkey, as read from "reg query /s"
+public class RegistryEntry {
+    private final String keyPath;
+    private final Map<String, String> values = new LinkedHashMap<>();
+    // Cached entries are diffed on every rescan; 0 until computed
+    private long fingerprint;
+
+    public RegistryEntry(String keyPath) {
+        this.keyPath = keyPath;
+    }
+
+    public String getKeyPath() { return keyPath; }
+    public Map<String, String> getValues() { return values; }
+
+    public void putValue(String name, String value) {
+        values.put(name, value);
+        fingerprint = 0;
+    }
+
+    public String getValue(String name) {
+        return values.get(name);
+    }
+
+    // Entries without a display name, or with a GUID-like one, are components rather than applications;
+    // names like "REG_SZ" left by misparsed keys are junk (see EntityResolver.isJunk)
+    public boolean isApplication() {
+        String displayName = getDisplayName();
+        return !EntityResolver.isJunk(displayName) && !displayName.contains("{");
+    }
+
+    // FNV-1a hash of all values; changes whenever any value of the key changes
+    public long fingerprint() {
+        if (fingerprint != 0) return fingerprint;
+        long hash = 0xcbf29ce484222325L;
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            hash = mix(hash, e.getKey());
+            hash = mix(hash, e.getValue());
+        }
+        fingerprint = hash;
+        return hash;
+    }
+
+    private static long mix(long hash, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Separator, so ("ab", "c") and ("a", "bc") hash differently
+        hash ^= 0x1f;
+        return hash * 0x100000001b3L;
+    }
+
+    public String getDisplayName() {
+        return values.get("DisplayName");
+    }
+
+    public String getVersion() {
+        String version = values.get("DisplayVersion");
+        if (version == null) version = values.get("Version");
+        return version != null ? version : "Unknown";
+    }
+
+    public LocalDate getInstallDate() {
+        return parseInstallDate(values.get("InstallDate"));
+    }
+
+    // InstallDate is stored as yyyyMMdd; falls back to today like the old scanner did
+    public static LocalDate parseInstallDate(String installDate) {
+        if (installDate != null && installDate.length() == 8) {
+            try {
+                return LocalDate.of(
+                    Integer.parseInt(installDate.substring(0, 4)),
+                    Integer.parseInt(installDate.substring(4, 6)),
+                    Integer.parseInt(installDate.substring(6, 8)));
+            } catch (Exception e) {
+                // Use current date if parsing fails
+            }
+        }
+        return LocalDate.now();
+    }
+
+    public Software toSoftware() {
+        return new Software(getDisplayName(), getVersion(), getInstallDate(), Status.INSTALLED);
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parsed entries of recent scans, per source and scope, so a rescan can skip
+// starting reg processes or re-reading package files that haven't changed.
+// A cached scope is used while it is younger than the TTL and the source's change
+// token (file size and modification time, see SoftwareSource.changeToken) still
+// matches; sources without a token rely on the TTL alone. Least recently used
+// scopes are dropped once the cache holds more than maxEntries entries.
+//
+// Saved next to the data file, one line per scope, key or value:
+//   S <source> <scope> <token> <stored at> <entries>
+//   K <key path>
+//   V <name> <value>
+// with tab-separated fields and tabs, newlines and backslashes escaped.
+public class ScanCache {
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+    public static final int DEFAULT_MAX_ENTRIES = 200_000;
+
+    private static final class Scope {
+        final String token;
+        final long storedAt;
+        final List<RegistryEntry> entries;
+
+        Scope(String token, long storedAt, List<RegistryEntry> entries) {
+            this.token = token;
+            this.storedAt = storedAt;
+            this.entries = entries;
+        }
+    }
+
+    private final File file;
+    private final long ttlMillis;
+    private final int maxEntries;
+    // Access order, so iteration starts at the least recently used scope
+    private final LinkedHashMap<String, Scope> scopes = new LinkedHashMap<>(16, 0.75f, true);
+    private int entryCount;
+    private long hits;
+    private long misses;
+    private boolean dirty;
+
+    public ScanCache(File file, long ttlMillis, int maxEntries) {
+        this.file = file;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    private static String key(String source, String scope) {
+        return source + "\t" + scope;
+    }
+
+    // The cached entries, or null if there are none, they expired or the token changed
+    public synchronized List<RegistryEntry> get(String source, String scope, String token) {
+        String key = key(source, scope);
+        Scope cached = scopes.get(key);
+        if (cached != null && (System.currentTimeMillis() - cached.storedAt >= ttlMillis
+                || (token == null ? cached.token != null : !token.equals(cached.token)))) {
+            remove(key);
+            cached = null;
+        }
+        if (cached == null) {
+            misses++;
+            Metrics.CACHE_MISSES.increment();
+            return null;
+        }
+        hits++;
+        Metrics.CACHE_HITS.increment();
+        return cached.entries;
+    }
+
+    public synchronized void put(String source, String scope, String token, List<RegistryEntry> entries) {
+        String key = key(source, scope);
+        remove(key);
+        scopes.put(key, new Scope(token, System.currentTimeMillis(), List.copyOf(entries)));
+        entryCount += entries.size();
+        dirty = true;
+
+        Iterator<Map.Entry<String, Scope>> eldest = scopes.entrySet().iterator();
+        while (entryCount > maxEntries && eldest.hasNext()) {
+            Map.Entry<String, Scope> e = eldest.next();
+            // Never evict what was just stored, even if it is over the bound on its own
+            if (e.getKey().equals(key)) continue;
+            entryCount -= e.getValue().entries.size();
+            eldest.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Scope removed = scopes.remove(key);
+        if (removed != null) {
+            entryCount -= removed.entries.size();
+            dirty = true;
+        }
+    }
+
+    // Forces the next scan of every source to read it again
+    public synchronized void invalidate() {
+        if (!scopes.isEmpty()) dirty = true;
+        scopes.clear();
+        entryCount = 0;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized int getScopeCount() { return scopes.size(); }
+    public synchronized int getEntryCount() { return entryCount; }
+
+    public static ScanCache load(File file) {
+        return load(file, DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public static ScanCache load(File file, long ttlMillis, int maxEntries) {
+        ScanCache cache = new ScanCache(file, ttlMillis, maxEntries);
+        if (!file.exists()) return cache;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            List<String> fields = new ArrayList<>();
+            String line;
+            String source = null;
+            String scope = null;
+            String token = null;
+            long storedAt = 0;
+            List<RegistryEntry> entries = null;
+            RegistryEntry entry = null;
+            while ((line = reader.readLine()) != null) {
+                split(line, fields);
+                switch (fields.get(0)) {
+                    case "S":
+                        if (entries != null) cache.restore(source, scope, token, storedAt, entries);
+                        source = fields.get(1);
+                        scope = fields.get(2);
+                        token = fields.get(3).isEmpty() ? null : fields.get(3);
+                        storedAt = Long.parseLong(fields.get(4));
+                        entries = new ArrayList<>(Integer.parseInt(fields.get(5)));
+                        entry = null;
+                        break;
+                    case "K":
+                        entry = new RegistryEntry(fields.get(1));
+                        entries.add(entry);
+                        break;
+                    case "V":
+                        entry.putValue(fields.get(1), fields.get(2));
+                        break;
+                    default:
+                        throw new IOException("unexpected line " + line);
+                }
+            }
+            if (entries != null) cache.restore(source, scope, token, storedAt, entries);
+        } catch (IOException | RuntimeException e) {
+            // A missing or damaged cache only costs a full scan
+            Log.warn("scan.cache.unreadable", "file", file, "reason", e.getMessage());
+            return new ScanCache(file, ttlMillis, maxEntries);
+        }
+        cache.dirty = false;
+        return cache;
+    }
+
+    private void restore(String source, String scope, String token, long storedAt, List<RegistryEntry> entries) {
+        if (System.currentTimeMillis() - storedAt >= ttlMillis) return;
+        scopes.put(key(source, scope), new Scope(token, storedAt, entries));
+        entryCount += entries.size();
+    }
+
+    // Rewrites the file if anything changed since it was loaded or last saved
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+        File tmp = new File(file.getPath() + ".tmp");
+        StringBuilder line = new StringBuilder();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Scope> e : scopes.entrySet()) {
+                Scope scope = e.getValue();
+                int tab = e.getKey().indexOf('\t');
+                line.setLength(0);
+                line.append('S');
+                appendField(line, e.getKey().substring(0, tab));
+                appendField(line, e.getKey().substring(tab + 1));
+                appendField(line, scope.token != null ? scope.token : "");
+                line.append('\t').append(scope.storedAt).append('\t').append(scope.entries.size());
+                writer.append(line).append('\n');
+                for (RegistryEntry entry : scope.entries) {
+                    line.setLength(0);
+                    line.append('K');
+                    appendField(line, entry.getKeyPath());
+                    writer.append(line).append('\n');
+                    for (Map.Entry<String, String> value : entry.getValues().entrySet()) {
+                        line.setLength(0);
+                        line.append('V');
+                        appendField(line, value.getKey());
+                        appendField(line, value.getValue());
+                        writer.append(line).append('\n');
+                    }
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+
+    private static void appendField(StringBuilder line, String value) {
+        line.append('\t');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\t': line.append("\\t"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\\': line.append("\\\\"); break;
+                default: line.append(c);
+            }
+        }
+    }
+
+    private static void split(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                field.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+}
\ No newline at end of file
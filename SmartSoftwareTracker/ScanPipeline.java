@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Scan as a pipeline: one producer per scope of every source (each registry hive,
+// the dpkg status file, ...) streams its entries into a bounded queue, and the
+// calling thread merges what arrives into the manager in small batches, so rows
+// show up while the scan is still running. Once every scope is done the results
+// are diffed against the last scan to pick up upgrades and uninstalls.
+// With a ScanCache, scopes whose cached entries are still valid are replayed
+// from the cache instead of being read again.
+public class ScanPipeline {
+    public interface Progress {
+        void update(int scopesDone, int scopesTotal, int entriesSeen, int added);
+    }
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int BATCH_SIZE = 64;
+    private static final long BATCH_DELAY_MS = 100;
+    private static final int MAX_PRODUCERS = 8;
+    // Queued by a producer when its scope is finished
+    private static final RegistryEntry END = new RegistryEntry("");
+
+    private final SoftwareManager manager;
+    private final List<SoftwareSource> sources;
+    private final ScanCache cache;
+    private volatile boolean cancelled;
+    private ExecutorService producers;
+    // Scopes the last run() couldn't read; their entries are neither added nor removed
+    private volatile Set<String> failedScopes = Set.of();
+
+    public ScanPipeline(SoftwareManager manager, ScanSource source) {
+        this(manager, source, RegistryScanner.UNINSTALL_HIVES);
+    }
+
+    public ScanPipeline(SoftwareManager manager, ScanSource source, String[] hives) {
+        this(manager, List.of(new WindowsRegistrySource(source, hives)));
+    }
+
+    public ScanPipeline(SoftwareManager manager, List<SoftwareSource> sources) {
+        this(manager, sources, null);
+    }
+
+    public ScanPipeline(SoftwareManager manager, List<SoftwareSource> sources, ScanCache cache) {
+        this.manager = manager;
+        this.sources = List.copyOf(sources);
+        this.cache = cache;
+    }
+
+    public ChangeSet run(long timeout, TimeUnit unit, Progress progress)
+            throws InterruptedException, TimeoutException, IOException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        BlockingQueue<RegistryEntry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Set<String> failedScopes = ConcurrentHashMap.newKeySet();
+        this.failedScopes = failedScopes;
+        int scopes = 0;
+        for (SoftwareSource source : sources) scopes += source.getScopes().size();
+        // Nothing read would look like everything was uninstalled
+        if (scopes == 0) throw new IOException("No software sources available on this system");
+
+        synchronized (this) {
+            if (cancelled) throw new CancellationException("Scan cancelled");
+            producers = Executors.newFixedThreadPool(Math.max(1, Math.min(scopes, MAX_PRODUCERS)), r -> {
+                Thread t = new Thread(r, "scan-producer");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        try {
+            for (SoftwareSource source : sources) {
+                for (String scope : source.getScopes()) {
+                    producers.execute(() -> produce(source, scope, queue, failedScopes));
+                }
+            }
+
+            List<RegistryEntry> entries = new ArrayList<>();
+            List<Software> batch = new ArrayList<>();
+            int scopesDone = 0;
+            int added = 0;
+            int applications = 0;
+            long lastFlush = System.nanoTime();
+
+            while (scopesDone < scopes) {
+                if (cancelled) throw new CancellationException("Scan cancelled");
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    cancel();
+                    throw new TimeoutException("Scan did not finish in " + timeout + " " + unit.toString().toLowerCase());
+                }
+
+                RegistryEntry entry = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(BATCH_DELAY_MS)), TimeUnit.NANOSECONDS);
+                if (entry == END) {
+                    scopesDone++;
+                } else if (entry != null) {
+                    entries.add(entry);
+                    if (entry.isApplication()) {
+                        batch.add(entry.toSoftware());
+                        applications++;
+                    }
+                }
+
+                boolean due = System.nanoTime() - lastFlush >= TimeUnit.MILLISECONDS.toNanos(BATCH_DELAY_MS);
+                if (batch.size() >= BATCH_SIZE || entry == END || (due && !batch.isEmpty())) {
+                    long mergeStart = System.nanoTime();
+                    added += manager.mergeScanned(batch);
+                    Metrics.MERGE.recordSince(mergeStart);
+                    batch.clear();
+                    lastFlush = System.nanoTime();
+                    progress.update(scopesDone, scopes, entries.size(), added);
+                }
+            }
+
+            Metrics.ENTRIES_SEEN.add(entries.size());
+            Metrics.ENTRIES_SKIPPED.add(entries.size() - applications);
+            Metrics.ENTRIES_ADDED.add(added);
+
+            if (cancelled) throw new CancellationException("Scan cancelled");
+            ChangeSet changes = manager.finishScan(entries, failedScopes);
+            if (cache != null) saveCache();
+            Log.info("scan.complete", "scopes", scopes, "failed", failedScopes.size(), "entries", entries.size(),
+                "added", added, "changes", changes);
+            return changes;
+        } finally {
+            producers.shutdownNow();
+        }
+    }
+
+    private void produce(SoftwareSource source, String scope, BlockingQueue<RegistryEntry> queue, Set<String> failedScopes) {
+        try (Metrics.Span span = Metrics.SCOPE.start(scope)) {
+            String token = cache != null ? source.changeToken(scope) : null;
+            List<RegistryEntry> cached = cache != null ? cache.get(source.getName(), scope, token) : null;
+            if (cached != null) {
+                for (RegistryEntry entry : cached) put(queue, entry);
+                span.setCount(cached.size());
+            } else {
+                List<RegistryEntry> scanned = new ArrayList<>();
+                source.scan(scope, entry -> {
+                    put(queue, entry);
+                    scanned.add(entry);
+                });
+                span.setCount(scanned.size());
+                // The token was taken before reading, so a change during the scan misses next time
+                if (cache != null) cache.put(source.getName(), scope, token, scanned);
+            }
+            Log.debug("scan.scope.done", "source", source.getName(), "scope", scope, "cached", cached != null);
+        } catch (IOException | RuntimeException e) {
+            // Hive may not exist (e.g. no WOW6432Node on 32-bit Windows)
+            failedScopes.add(scope);
+            if (!cancelled) Log.warn("scan.scope.failed", "scope", scope, "reason", e.getMessage());
+        } finally {
+            try {
+                if (!cancelled) queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void put(BlockingQueue<RegistryEntry> queue, RegistryEntry entry) {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            throw new CancellationException("Scan cancelled");
+        }
+    }
+
+    private void saveCache() {
+        try {
+            cache.save();
+        } catch (IOException e) {
+            // Only costs a full scan next time
+            Log.warn("scan.cache.saveFailed", "reason", e.getMessage());
+        }
+        Log.info("scan.cache", "hits", cache.getHits(), "misses", cache.getMisses(), "entries", cache.getEntryCount());
+    }
+
+    // Stops producers, has the sources close their streams (which ends reg processes), and makes run() throw
+    public synchronized void cancel() {
+        cancelled = true;
+        if (producers != null) producers.shutdownNow();
+        for (SoftwareSource source : sources) source.cancel();
+    }
+
+    public Set<String> getFailedScopes() {
+        return Set.copyOf(failedScopes);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,13 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+
+// Supplies the output of a recursive "reg query <hive> /s" for one uninstall hive.
+// The caller closes the returned reader.
+public interface ScanSource {
+    BufferedReader open(String hive) throws IOException;
+
+    // See SoftwareSource.changeToken; reg.exe can't report key last-write times
+    default String changeToken(String hive) {
+        return null;
+    }
+}
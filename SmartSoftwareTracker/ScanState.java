@@ -0,0 +1,110 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Fingerprints of the uninstall keys seen by the last scan, so a rescan can skip
+// keys that haven't changed. One line per key: path, fingerprint, version, name.
+// Scanned names that were merged into a record spelled differently are kept too, one
+// line each with an empty path: scanned name, record name.
+public class ScanState {
+    public static class Entry {
+        private final long fingerprint;
+        private final String name;
+        private final String version;
+
+        public Entry(long fingerprint, String name, String version) {
+            this.fingerprint = fingerprint;
+            this.name = name;
+            this.version = version;
+        }
+
+        public long getFingerprint() { return fingerprint; }
+        public String getName() { return name; }
+        public String getVersion() { return version; }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    // Normalized scanned name -> name of the record it was merged into
+    private final Map<String, String> records = new HashMap<>();
+    // Set by put and remove, so an unchanged state isn't rewritten
+    private boolean modified;
+
+    public Entry get(String keyPath) {
+        return entries.get(keyPath);
+    }
+
+    public void put(String keyPath, Entry entry) {
+        entries.put(keyPath, entry);
+        modified = true;
+    }
+
+    public void remove(String keyPath) {
+        if (entries.remove(keyPath) != null) modified = true;
+    }
+
+    // The name of the record a scanned name was merged into, or the name itself
+    public String recordFor(String scannedName) {
+        return records.getOrDefault(SoftwareManager.normalizeName(scannedName), scannedName);
+    }
+
+    public void setRecord(String scannedName, String recordName) {
+        String key = SoftwareManager.normalizeName(scannedName);
+        if (key.equals(SoftwareManager.normalizeName(recordName))) {
+            if (records.remove(key) != null) modified = true;
+        } else if (!recordName.equals(records.put(key, recordName))) {
+            modified = true;
+        }
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public Set<String> keyPaths() {
+        return entries.keySet();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public static ScanState load(File file) {
+        ScanState state = new ScanState();
+        if (!file.exists()) return state;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 4);
+                if (parts.length == 3 && parts[0].isEmpty()) {
+                    state.records.put(SoftwareManager.normalizeName(parts[1]), parts[2]);
+                } else if (parts.length == 4) {
+                    state.put(parts[0], new Entry(Long.parseUnsignedLong(parts[1], 16), parts[3], parts[2]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // A missing or damaged state only costs a full rescan
+            Log.warn("scan.state.unreadable", "file", file, "reason", e.getMessage());
+            return new ScanState();
+        }
+        state.modified = false;
+        return state;
+    }
+
+    public void save(File file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                writer.write(e.getKey() + "\t" + Long.toHexString(entry.fingerprint) + "\t" + entry.version + "\t" + entry.name);
+                writer.newLine();
+            }
+            for (Map.Entry<String, String> e : records.entrySet()) {
+                writer.write("\t" + e.getKey() + "\t" + e.getValue());
+                writer.newLine();
+            }
+        }
+        modified = false;
+    }
+}
@@ -0,0 +1,293 @@
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Long-lived interpreter processes (PowerShell, sh) that run one command after another,
+// so each command costs a line on stdin instead of an interpreter start. A command is
+// written as one line followed by a line that prints a sentinel and the command's
+// status, e.g. for PowerShell
+//
+//   Get-ItemProperty 'HKLM:\...\Uninstall\*' | ConvertTo-Csv -NoTypeInformation
+//   Write-Output "#done-5f3a-17 $?"
+//
+// and its output is everything read up to the sentinel. A status other than True or 0
+// makes run() throw, with the last line the command wrote to stderr; a failed read must
+// not pass for empty output. Up to maxSessions commands run
+// at once, each on its own process. A session that times out is killed; one found dead
+// is replaced on the next command, and a command that found its session dead before it
+// answered is retried once on a new one.
+public class ShellSessionPool implements Closeable {
+    private static final AtomicLong NONCES = new AtomicLong(System.nanoTime());
+
+    private final List<String> command;
+    private final String sentinelFormat;
+    private final Charset charset;
+    private final int maxSessions;
+    private final Deque<Session> idle = new ArrayDeque<>();
+    private final Set<Session> busy = ConcurrentHashMap.newKeySet();
+    private int open;
+    private boolean closed;
+
+    // command starts the interpreter reading commands from stdin; sentinelFormat is a
+    // command printing its one argument, a space and the status of the command before it,
+    // like "Write-Output \"%s $?\"" or "echo \"%s $?\""
+    public ShellSessionPool(List<String> command, String sentinelFormat, Charset charset, int maxSessions) {
+        if (maxSessions < 1) throw new IllegalArgumentException("maxSessions < 1: " + maxSessions);
+        this.command = List.copyOf(command);
+        this.sentinelFormat = sentinelFormat;
+        this.charset = charset;
+        this.maxSessions = maxSessions;
+    }
+
+    // A plain POSIX shell; for trying the pool out where there is no PowerShell
+    public static ShellSessionPool posix(int maxSessions) {
+        return new ShellSessionPool(List.of("/bin/sh"), "echo \"%s $?\"", Charset.defaultCharset(), maxSessions);
+    }
+
+    // Runs one single-line command and returns its output, one line per line.
+    // Waits for a free session if all maxSessions are busy.
+    public String run(String commandLine, long timeout, TimeUnit unit) throws IOException {
+        if (commandLine.indexOf('\n') >= 0 || commandLine.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Command must be one line");
+        }
+        long timeoutMillis = unit.toMillis(timeout);
+        for (int attempt = 0; ; attempt++) {
+            Session session = borrow();
+            boolean reused = session.commands > 0;
+            try (Metrics.Span span = Metrics.SHELL_COMMAND.start()) {
+                String output = session.run(commandLine, timeoutMillis);
+                span.setCount(1);
+                if (reused) Metrics.SHELL_SPAWNS_AVOIDED.increment();
+                return output;
+            } catch (SessionDiedException e) {
+                // Died before this command got an answer, e.g. killed while idle
+                if (!reused || attempt > 0) throw e;
+                Log.warn("shell.restart", "command", command.get(0), "reason", e.getMessage());
+                Metrics.SHELL_RESTARTS.increment();
+            } finally {
+                release(session);
+            }
+        }
+    }
+
+    // Kills the sessions running a command; their callers get an IOException
+    public void abort() {
+        for (Session session : busy) session.kill();
+    }
+
+    @Override
+    public void close() {
+        List<Session> sessions;
+        synchronized (this) {
+            closed = true;
+            sessions = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (Session session : sessions) session.close();
+        abort();
+    }
+
+    // An idle session, or a new one if fewer than maxSessions are open. The process is
+    // started outside the lock, so sessions for parallel callers start in parallel.
+    private Session borrow() throws IOException {
+        synchronized (this) {
+            while (true) {
+                if (closed) throw new IOException("Shell session pool is closed");
+                Session session = idle.pollFirst();
+                if (session != null) {
+                    if (session.isAlive()) {
+                        busy.add(session);
+                        return session;
+                    }
+                    open--;
+                    Metrics.SHELL_RESTARTS.increment();
+                    continue;
+                }
+                if (open < maxSessions) {
+                    open++;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for a shell session");
+                }
+            }
+        }
+        try {
+            Session session = new Session(command, sentinelFormat, charset);
+            busy.add(session);
+            return session;
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                open--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void release(Session session) {
+        boolean keep;
+        synchronized (this) {
+            busy.remove(session);
+            keep = !closed && session.isAlive();
+            if (keep) idle.addFirst(session); else open--;
+            notifyAll();
+        }
+        if (!keep) session.close();
+    }
+
+    // The process ended while a command was waiting for its answer
+    static final class SessionDiedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        SessionDiedException(String message) {
+            super(message);
+        }
+    }
+
+    // One interpreter process. A daemon thread moves its stdout lines to a queue, so
+    // that a command can wait for them with a deadline; another keeps the last line of
+    // stderr, for the message when a command fails.
+    private static final class Session implements Closeable {
+        // Queued when stdout ends; compared by identity
+        private static final String EOF = new String("EOF");
+
+        private final Process process;
+        private final Writer stdin;
+        private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        private final String sentinelFormat;
+        private final String nonce = Long.toHexString(NONCES.incrementAndGet());
+        private int commands;
+        private volatile boolean broken;
+        private volatile String lastError;
+
+        Session(List<String> command, String sentinelFormat, Charset charset) throws IOException {
+            this.sentinelFormat = sentinelFormat;
+            ProcessBuilder builder = new ProcessBuilder(command);
+            try (Metrics.Span span = Metrics.SPAWN.start(command.get(0))) {
+                span.setCount(1);
+                process = builder.start();
+            }
+            Metrics.PROCESSES_SPAWNED.increment();
+            stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), charset));
+            BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), charset));
+            Thread reader = new Thread(() -> pump(stdout), "shell-session-" + nonce);
+            reader.setDaemon(true);
+            reader.start();
+            BufferedReader stderr = new BufferedReader(new InputStreamReader(process.getErrorStream(), charset));
+            Thread errors = new Thread(() -> pumpErrors(stderr), "shell-session-" + nonce + "-err");
+            errors.setDaemon(true);
+            errors.start();
+        }
+
+        private void pumpErrors(BufferedReader stderr) {
+            try (BufferedReader r = stderr) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (!line.isBlank()) lastError = line.trim();
+                }
+            } catch (IOException e) {
+                // Process gone
+            }
+        }
+
+        private void pump(BufferedReader stdout) {
+            try (BufferedReader r = stdout) {
+                String line;
+                while ((line = r.readLine()) != null) lines.add(line);
+            } catch (IOException e) {
+                // Process gone; same as end of output
+            } finally {
+                lines.add(EOF);
+            }
+        }
+
+        boolean isAlive() {
+            return !broken && process.isAlive();
+        }
+
+        String run(String commandLine, long timeoutMillis) throws IOException {
+            String sentinel = "#done-" + nonce + "-" + (++commands);
+            lastError = null;
+            try {
+                stdin.write(commandLine);
+                stdin.write('\n');
+                stdin.write(String.format(sentinelFormat, sentinel));
+                stdin.write('\n');
+                stdin.flush();
+            } catch (IOException e) {
+                broken = true;
+                throw new SessionDiedException("Shell not accepting commands: " + e.getMessage());
+            }
+
+            StringBuilder output = new StringBuilder();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            try {
+                while (true) {
+                    long left = deadline - System.nanoTime();
+                    String line = left > 0 ? lines.poll(left, TimeUnit.NANOSECONDS) : null;
+                    if (line == null) {
+                        kill();
+                        throw new IOException("Shell command timed out after " + timeoutMillis + " ms: " + commandLine);
+                    }
+                    if (line == EOF) {
+                        broken = true;
+                        if (output.length() == 0) throw new SessionDiedException("Shell exited");
+                        throw new IOException("Shell exited during command: " + commandLine);
+                    }
+                    // Output without a final newline runs into the sentinel line
+                    int end = line.lastIndexOf(sentinel + " ");
+                    if (end >= 0) {
+                        String status = line.substring(end + sentinel.length() + 1).trim();
+                        if (!status.equals("True") && !status.equals("0")) {
+                            String error = lastError;
+                            throw new IOException("Shell command failed with status " + status + ": "
+                                + (error != null ? error : commandLine));
+                        }
+                        output.append(line, 0, end);
+                        return output.toString();
+                    }
+                    output.append(line).append('\n');
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                kill();
+                throw new InterruptedIOException("Interrupted during shell command");
+            }
+        }
+
+        void kill() {
+            broken = true;
+            process.destroyForcibly();
+        }
+
+        // Closing stdin lets the interpreter exit by itself; it is killed if it doesn't
+        @Override
+        public void close() {
+            try {
+                stdin.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+            try {
+                if (!process.waitFor(1, TimeUnit.SECONDS)) process.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Snap packages, read from the mounted snaps under /snap rather than by running
+// "snap list". Each snap has a directory per revision plus a "current" link to the
+// active one, and the revision's meta/snap.yaml holds its name and version.
+// Bases, the core snaps and snapd itself are skipped, like components in the registry.
+public class SnapSource implements SoftwareSource {
+    private static final Set<String> SYSTEM_TYPES = Set.of("base", "core", "os", "snapd", "kernel", "gadget");
+
+    private final Path directory;
+
+    public SnapSource() {
+        this(SoftwareSources.root().resolve("snap"));
+    }
+
+    public SnapSource(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String getName() {
+        return "snap";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Files.isDirectory(directory);
+    }
+
+    @Override
+    public List<String> getScopes() {
+        return List.of("snap:" + directory);
+    }
+
+    // Installing or refreshing a snap adds a revision directory under /snap/<name>
+    @Override
+    public String changeToken(String scope) {
+        return SoftwareSources.treeToken(directory, 1);
+    }
+
+    @Override
+    public void scan(String scope, Consumer<RegistryEntry> sink) throws IOException {
+        try (DirectoryStream<Path> snaps = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path snap : snaps) {
+                Path revision = currentRevision(snap);
+                if (revision == null) continue;
+                Path yaml = revision.resolve("meta/snap.yaml");
+                if (!Files.isRegularFile(yaml)) continue;
+
+                RegistryEntry entry = new RegistryEntry(scope + "\\" + snap.getFileName());
+                String type = readYaml(yaml, entry);
+                if (entry.getDisplayName() == null || SYSTEM_TYPES.contains(type)) continue;
+                entry.putValue("Revision", revision.getFileName().toString());
+                entry.putValue("InstallDate", DpkgSource.formatDate(Files.getLastModifiedTime(revision)));
+                sink.accept(entry);
+            }
+        }
+    }
+
+    // The "current" link, or the highest numbered revision where links aren't kept
+    private static Path currentRevision(Path snap) throws IOException {
+        Path current = snap.resolve("current");
+        if (Files.isDirectory(current)) return current.toRealPath();
+        Path best = null;
+        long bestRevision = -1;
+        try (DirectoryStream<Path> revisions = Files.newDirectoryStream(snap, Files::isDirectory)) {
+            for (Path revision : revisions) {
+                String name = revision.getFileName().toString();
+                if (!name.chars().allMatch(Character::isDigit)) continue;
+                long number = Long.parseLong(name);
+                if (number > bestRevision) {
+                    bestRevision = number;
+                    best = revision;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Top-level name and version go into the entry; returns the snap's type, "app" if unset
+    private static String readYaml(Path yaml, RegistryEntry entry) throws IOException {
+        String type = "app";
+        try (BufferedReader reader = Files.newBufferedReader(yaml, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || Character.isWhitespace(line.charAt(0))) continue;
+                int colon = line.indexOf(':');
+                if (colon <= 0) continue;
+                String key = line.substring(0, colon);
+                String value = unquote(line.substring(colon + 1).trim());
+                if (key.equals("name")) entry.putValue("DisplayName", value);
+                else if (key.equals("version")) entry.putValue("DisplayVersion", value);
+                else if (key.equals("type")) type = value;
+            }
+        }
+        return type;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+                && value.charAt(value.length() - 1) == value.charAt(0)) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+}
\ No newline at end of file
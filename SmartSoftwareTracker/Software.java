@@ -1,46 +1,46 @@
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-
-public class Software {
-    private String name;
-    private String version;
-    private LocalDate installationDate;
-    private String status;
-
-    public Software(String name, String version, LocalDate installationDate, String status) {
-        this.name = name;
-        this.version = version;
-        this.installationDate = installationDate;
-        this.status = status;
-    }
-
-    public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
-
-    public String getVersion() { return version; }
-    public void setVersion(String version) { this.version = version; }
-
-    public LocalDate getInstallationDate() { return installationDate; }
-    public void setInstallationDate(LocalDate installationDate) { this.installationDate = installationDate; }
-
-    public String getStatus() { return status; }
-    public void setStatus(String status) { this.status = status; }
-
-    @Override
-    public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return String.format("%s,%s,%s,%s", 
-            name, version, installationDate.format(formatter), status);
-    }
-
-    public static Software fromString(String line) {
-        String[] parts = line.split(",");
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return new Software(
-            parts[0],
-            parts[1],
-            LocalDate.parse(parts[2], formatter),
-            parts[3]
-        );
-    }
+import java.time.LocalDate;
+
+// Immutable; an edit replaces the record, so readers can share instances across threads.
+// Kept small for large inventories: the date is an epoch day, the status an enum, and
+// versions are pooled Version instances, so records on the same release share one.
+public final class Software {
+    private final String name;
+    private final Version version;
+    private final int epochDay;
+    private final Status status;
+
+    public Software(String name, String version, int epochDay, Status status) {
+        this.name = name;
+        this.version = Version.of(version);
+        this.epochDay = epochDay;
+        this.status = status;
+    }
+
+    public Software(String name, String version, LocalDate installationDate, Status status) {
+        this(name, version, (int) installationDate.toEpochDay(), status);
+    }
+
+    public Software(String name, String version, LocalDate installationDate, String status) {
+        this(name, version, installationDate, Status.fromLabel(status));
+    }
+
+    public String getName() { return name; }
+    public String getVersion() { return version.toString(); }
+    public Version getParsedVersion() { return version; }
+    public LocalDate getInstallationDate() { return LocalDate.ofEpochDay(epochDay); }
+    public int getEpochDay() { return epochDay; }
+    public Status getStatus() { return status; }
+
+    public Software withStatus(Status status) {
+        return new Software(name, version.toString(), epochDay, status);
+    }
+
+    @Override
+    public String toString() {
+        return SoftwareCodec.encode(this, new StringBuilder(name.length() + 32)).toString();
+    }
+
+    public static Software fromString(String line) {
+        return SoftwareCodec.decode(line);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+import java.time.DateTimeException;
+
+// Encodes and decodes the "name,version,yyyy-MM-dd,status" text rows without
+// String.format, split or a DateTimeFormatter: fields are located by hand and
+// the date is converted straight to and from an epoch day. Encoding appends to
+// a caller-owned StringBuilder, so a writer can reuse one buffer for every row.
+//
+// A comma, backslash or line break in a name or version is escaped with a backslash
+// (\, \\ \n \r), so every row stays one line of four fields. A backslash before any
+// other character is kept as it is, so rows written before escaping still read back.
+// Decoding keeps the old split(",") behaviour otherwise: the first four fields are
+// used and anything after them is ignored.
+public final class SoftwareCodec {
+
+    private SoftwareCodec() {
+    }
+
+    public static StringBuilder encode(Software s, StringBuilder out) {
+        appendField(s.getName(), out).append(',');
+        appendField(s.getVersion(), out).append(',');
+        appendDate(s.getEpochDay(), out);
+        return out.append(',').append(s.getStatus().getLabel());
+    }
+
+    private static StringBuilder appendField(String field, StringBuilder out) {
+        int i = 0;
+        while (i < field.length() && !needsEscape(field.charAt(i))) i++;
+        if (i == field.length()) return out.append(field);
+        out.append(field, 0, i);
+        for (; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\n') out.append("\\n");
+            else if (c == '\r') out.append("\\r");
+            else if (needsEscape(c)) out.append('\\').append(c);
+            else out.append(c);
+        }
+        return out;
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == ',' || c == '\\' || c == '\n' || c == '\r';
+    }
+
+    public static Software decode(CharSequence line) {
+        int c1 = separator(line, 0);
+        int c2 = c1 < 0 ? -1 : separator(line, c1 + 1);
+        int c3 = c2 < 0 ? -1 : separator(line, c2 + 1);
+        if (c3 < 0) throw new IllegalArgumentException("Expected 4 fields: " + line);
+        int c4 = separator(line, c3 + 1);
+        int end = c4 < 0 ? line.length() : c4;
+
+        return new Software(
+            field(line, 0, c1),
+            field(line, c1 + 1, c2),
+            parseDate(line, c2 + 1, c3),
+            Status.fromLabel(line.subSequence(c3 + 1, end))
+        );
+    }
+
+    // The next comma that isn't escaped
+    private static int separator(CharSequence s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') i++;
+            else if (c == ',') return i;
+        }
+        return -1;
+    }
+
+    private static String field(CharSequence s, int start, int end) {
+        int i = start;
+        while (i < end && s.charAt(i) != '\\') i++;
+        if (i == end) return s.subSequence(start, end).toString();
+        StringBuilder out = new StringBuilder(end - start).append(s, start, i);
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            char next = i + 1 < end ? s.charAt(i + 1) : 0;
+            if (c != '\\' || next == 0) {
+                out.append(c);
+            } else if (next == 'n' || next == 'r' || next == ',' || next == '\\') {
+                out.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+                i++;
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // yyyy-MM-dd -> days since 1970-01-01
+    public static int parseDate(CharSequence s, int start, int end) {
+        if (end - start != 10 || s.charAt(start + 4) != '-' || s.charAt(start + 7) != '-') {
+            throw new DateTimeException("Expected yyyy-MM-dd: " + s.subSequence(start, end));
+        }
+        int year = digits(s, start, 4);
+        int month = digits(s, start + 5, 2);
+        int day = digits(s, start + 8, 2);
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            throw new DateTimeException("Invalid date: " + s.subSequence(start, end));
+        }
+        return epochDay(year, month, day);
+    }
+
+    private static int digits(CharSequence s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new DateTimeException("Not a digit in date: " + c);
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2: return isLeapYear(year) ? 29 : 28;
+            case 4: case 6: case 9: case 11: return 30;
+            default: return 31;
+        }
+    }
+
+    // Days-from-civil, counting from a March-based year so leap days fall at the end
+    static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // Inverse of epochDay, appended as yyyy-MM-dd
+    public static void appendDate(int epochDay, StringBuilder out) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 1000) {
+            // Zero-pad to four digits like the yyyy pattern did
+            for (int p = 1000; p > Math.max(year, 1); p /= 10) out.append('0');
+        }
+        out.append(year).append('-');
+        if (month < 10) out.append('0');
+        out.append(month).append('-');
+        if (day < 10) out.append('0');
+        out.append(day);
+    }
+}
\ No newline at end of file
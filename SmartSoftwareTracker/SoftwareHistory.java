@@ -0,0 +1,656 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Append-only history of every record change, kept next to the data file, so earlier
+// versions and install dates survive edits and scans. Each event holds a product's
+// whole state from then on, delta-encoded against the product's previous event, which
+// it points back to:
+//
+//   header:  magic "SSTH", format version
+//   event:   flags, then
+//     product   varint id and varint bytes back to the product's previous event, or
+//               with NEW_PRODUCT the name; ids count up from 0
+//     time      milliseconds since the product's previous event (since the epoch for a
+//               new product), zigzag varint
+//     version   with VERSION: varint id + 1, or 0 followed by a new version string
+//     status    with STATUS: the ordinal
+//     installed with DAY: epoch day minus the product's previous one, zigzag varint
+//   REMOVED means the record left the inventory; it keeps its last version and day.
+//
+// Strings are varint-length UTF-8. Products are matched by normalized name. Only each
+// product's last event and the version strings are kept in memory; <file>.index holds
+// them as of some length of the log, so open reads that and replays only the events
+// after it. The index is rewritten on close and every INDEX_INTERVAL events, and the
+// whole log is replayed if it is missing or doesn't match. A product's timeline is read
+// by following its back-pointers, so it costs that product's events only.
+public class SoftwareHistory implements Closeable {
+    private static final int MAGIC = 0x53535448; // "SSTH"
+    private static final int INDEX_MAGIC = 0x53535449; // "SSTI"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = 8;
+    private static final int NEW_PRODUCT = 1;
+    private static final int VERSION = 2;
+    private static final int STATUS = 4;
+    private static final int DAY = 8;
+    private static final int REMOVED = 16;
+    // Status code of a removed record in a state; the others are Status ordinals
+    private static final int GONE = 7;
+    private static final int MAX_VERSIONS = 1 << 28;
+    // Events appended before a sync also rewrites the index, bounding what open replays
+    private static final int INDEX_INTERVAL = 1 << 16;
+    private static final Status[] STATUSES = Status.values();
+
+    // One change: a product's state from this time on
+    public static final class Event {
+        private final long time;
+        private final Software software;
+        private final boolean removed;
+
+        Event(long time, Software software, boolean removed) {
+            this.time = time;
+            this.software = software;
+            this.removed = removed;
+        }
+
+        public Instant getTime() { return Instant.ofEpochMilli(time); }
+        public long getTimeMillis() { return time; }
+        // The record as it was; after a removal, its last version and day, Not Installed
+        public Software getSoftware() { return software; }
+        public boolean isRemoved() { return removed; }
+    }
+
+    // A product and its last event, which the next one is encoded against and points
+    // back to. The state is packed into a long as installed day (high 32 bits), version
+    // id and status code (low 3 bits).
+    private static final class Product {
+        final String name;
+        final int id;
+        long offset;
+        long time;
+        long state;
+
+        Product(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+    }
+
+    // One event as stored, before it is applied to the product's previous state
+    private static final class Raw {
+        int flags;
+        String name;
+        long id;
+        long back;
+        long timeDelta;
+        long versionId;
+        String newVersion;
+        int ordinal;
+        long dayDelta;
+    }
+
+    private static long state(int day, int version, int status) {
+        return (long) day << 32 | (long) version << 3 | status;
+    }
+
+    private static int day(long state) {
+        return (int) (state >> 32);
+    }
+
+    private static int version(long state) {
+        return (int) state >>> 3;
+    }
+
+    private static int status(long state) {
+        return (int) state & 7;
+    }
+
+    private final File file;
+    private final File indexFile;
+    // Normalized name -> product; and every product by id, in order of first appearance
+    private final Map<String, Product> products = new HashMap<>();
+    private final List<Product> productList = new ArrayList<>();
+    private final Map<String, Integer> versionIds = new HashMap<>();
+    private final List<String> versions = new ArrayList<>();
+    private long events;
+    // Events the index on disk covers
+    private long indexedEvents;
+    // Bytes in the log, buffered ones included: where the next event goes
+    private long length;
+    private FileOutputStream fileOut;
+    private OutputStream out;
+    // For reading timelines back; opened on the first query
+    private FileChannel reader;
+    private byte[] record = new byte[64];
+    private int recordLength;
+
+    private SoftwareHistory(File file) {
+        this.file = file;
+        this.indexFile = new File(file.getPath() + ".index");
+    }
+
+    // Opens the history in file, creating it if there is none, for appending. A torn
+    // last event from a crash is cut off.
+    public static SoftwareHistory open(File file) throws IOException {
+        SoftwareHistory history = new SoftwareHistory(file);
+        try (Metrics.Span span = Metrics.HISTORY_LOAD.start()) {
+            long size = file.isFile() ? file.length() : 0;
+            long valid = size < HEADER_LENGTH ? 0 : history.load(size);
+            if (valid < size) {
+                Log.warn("history.truncated", "file", file, "bytes", size - valid);
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(valid);
+                }
+            }
+            history.fileOut = new FileOutputStream(file, valid > 0);
+            history.out = new BufferedOutputStream(history.fileOut, 1 << 16);
+            if (valid == 0) {
+                DataOutputStream header = new DataOutputStream(history.out);
+                header.writeInt(MAGIC);
+                header.writeInt(FORMAT_VERSION);
+                header.flush();
+                valid = HEADER_LENGTH;
+            }
+            history.length = valid;
+            span.setCount(history.events - history.indexedEvents);
+        }
+        Log.debug("history.loaded", "file", file, "events", history.events, "products", history.productList.size(),
+            "replayed", history.events - history.indexedEvents);
+        return history;
+    }
+
+    // Reads the index, then the events after it. Returns the length of the complete events.
+    private long load(long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Input in = new Input(channel, 0, 1 << 16);
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a history file");
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) throw new IOException(file + ": unsupported history version " + version);
+            long from = readIndex(size);
+            if (from > 0) {
+                long valid = replay(in, from, false);
+                if (valid >= 0) return valid;
+                Log.warn("history.indexStale", "file", indexFile);
+                clear();
+            }
+            return replay(in, HEADER_LENGTH, true);
+        }
+    }
+
+    // Applies the events from offset on to the tables. Returns the length of the
+    // complete events, or -1 if one doesn't point back where the tables say its
+    // product's last event is, which means the index doesn't belong to this log.
+    private long replay(Input in, long from, boolean whole) throws IOException {
+        in.seek(from);
+        long valid = from;
+        Raw raw = new Raw();
+        try {
+            while (true) {
+                long offset = in.position();
+                // Read the whole event before applying it, so a torn one changes nothing
+                read(in, raw);
+                Product product = null;
+                if (raw.name == null) {
+                    if (raw.id >= productList.size()) throw new IOException(file + ": product id " + raw.id + " out of range");
+                    product = productList.get((int) raw.id);
+                    if (offset - raw.back != product.offset) {
+                        if (whole) throw new IOException(file + ": event at " + offset + " doesn't follow its product's last one");
+                        return -1;
+                    }
+                }
+                if (raw.versionId >= versions.size()) throw new IOException(file + ": version id " + raw.versionId + " out of range");
+                if (raw.newVersion != null && !versionIds.containsKey(raw.newVersion)) addVersion(raw.newVersion);
+                if (product == null) product = addProduct(raw.name);
+                product.state = apply(product.state, raw);
+                product.time += raw.timeDelta;
+                product.offset = offset;
+                events++;
+                valid = in.position();
+            }
+        } catch (EOFException e) {
+            return valid;
+        }
+    }
+
+    private void read(Input in, Raw raw) throws IOException {
+        raw.flags = in.readByte();
+        raw.name = null;
+        raw.id = -1;
+        raw.back = 0;
+        if ((raw.flags & NEW_PRODUCT) != 0) {
+            raw.name = in.readString();
+        } else {
+            raw.id = in.readVarlong();
+            raw.back = in.readVarlong();
+        }
+        raw.timeDelta = unzigzag(in.readVarlong());
+        raw.versionId = -1;
+        raw.newVersion = null;
+        if ((raw.flags & VERSION) != 0) {
+            raw.versionId = in.readVarlong() - 1;
+            if (raw.versionId < 0) raw.newVersion = in.readString();
+        }
+        raw.ordinal = (raw.flags & STATUS) != 0 ? in.readByte() : -1;
+        if (raw.ordinal >= STATUSES.length) throw new IOException(file + ": bad status " + raw.ordinal);
+        raw.dayDelta = (raw.flags & DAY) != 0 ? unzigzag(in.readVarlong()) : 0;
+    }
+
+    // The state after the event, from the product's state before it (0 for a new one)
+    private long apply(long previous, Raw raw) throws IOException {
+        int version;
+        if (raw.newVersion != null) {
+            Integer id = versionIds.get(raw.newVersion);
+            if (id == null) throw new IOException(file + ": unknown version " + raw.newVersion);
+            version = id;
+        } else {
+            version = raw.versionId >= 0 ? (int) raw.versionId : version(previous);
+        }
+        int status = (raw.flags & REMOVED) != 0 ? GONE : raw.ordinal >= 0 ? raw.ordinal : status(previous);
+        return state(day(previous) + (int) raw.dayDelta, version, status);
+    }
+
+    // Restores the tables from the index if it covers no more than the log has. Returns
+    // the length of log it covers, or 0 without a usable index.
+    private long readIndex(long size) {
+        if (!indexFile.isFile()) return 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() == INDEX_MAGIC && in.readInt() == FORMAT_VERSION) {
+                long covered = in.readLong();
+                long count = in.readLong();
+                if (covered >= HEADER_LENGTH && covered <= size) {
+                    int versionCount = in.readInt();
+                    for (int i = 0; i < versionCount; i++) addVersion(readString(in));
+                    int productCount = in.readInt();
+                    boolean valid = true;
+                    for (int i = 0; i < productCount; i++) {
+                        Product product = addProduct(readString(in));
+                        product.offset = in.readLong();
+                        product.time = in.readLong();
+                        product.state = in.readLong();
+                        if (product.offset < HEADER_LENGTH || product.offset >= covered) valid = false;
+                    }
+                    if (valid) {
+                        events = count;
+                        indexedEvents = count;
+                        return covered;
+                    }
+                }
+            }
+            Log.warn("history.indexStale", "file", indexFile);
+        } catch (IOException e) {
+            Log.warn("history.indexUnreadable", "file", indexFile, "reason", e);
+        }
+        clear();
+        return 0;
+    }
+
+    // Writes the tables out as of the current length, which the caller has synced
+    private void writeIndex() throws IOException {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            data.writeInt(INDEX_MAGIC);
+            data.writeInt(FORMAT_VERSION);
+            data.writeLong(length);
+            data.writeLong(events);
+            data.writeInt(versions.size());
+            for (String version : versions) writeString(data, version);
+            data.writeInt(productList.size());
+            for (Product product : productList) {
+                writeString(data, product.name);
+                data.writeLong(product.offset);
+                data.writeLong(product.time);
+                data.writeLong(product.state);
+            }
+            data.flush();
+            fileOut.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        indexedEvents = events;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 1 << 20) throw new IOException("String of " + length + " bytes");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void clear() {
+        products.clear();
+        productList.clear();
+        versionIds.clear();
+        versions.clear();
+        events = 0;
+        indexedEvents = 0;
+    }
+
+    private Product addProduct(String name) {
+        Product product = new Product(name, productList.size());
+        productList.add(product);
+        products.putIfAbsent(SoftwareManager.normalizeName(name), product);
+        return product;
+    }
+
+    private int addVersion(String version) throws IOException {
+        int id = versions.size();
+        if (id == MAX_VERSIONS) throw new IOException(file + ": too many distinct versions");
+        versions.add(version);
+        versionIds.put(version, id);
+        return id;
+    }
+
+    public synchronized boolean isEmpty() {
+        return events == 0;
+    }
+
+    public synchronized long size() {
+        return events;
+    }
+
+    public synchronized int productCount() {
+        return productList.size();
+    }
+
+    public boolean record(Software s, long time) throws IOException {
+        return record(s.getName(), s.getVersion(), s.getEpochDay(), s.getStatus(), time);
+    }
+
+    // Records the product's state at time (milliseconds since the epoch). Returns false,
+    // and writes nothing, if it is the state already recorded last. A time before the
+    // product's last event is taken as that event's time, so its timeline stays ordered.
+    public synchronized boolean record(String name, String version, int epochDay, Status status, long time) throws IOException {
+        return append(name, version, epochDay, status.ordinal(), time);
+    }
+
+    // Records that the product left the inventory; false if it had already, or was never seen
+    public synchronized boolean recordRemoved(String name, long time) throws IOException {
+        Product product = products.get(SoftwareManager.normalizeName(name));
+        if (product == null) return false;
+        return append(name, versions.get(version(product.state)), day(product.state), GONE, time);
+    }
+
+    private boolean append(String name, String version, int day, int status, long time) throws IOException {
+        if (out == null) throw new IOException("History is closed");
+        Product product = products.get(SoftwareManager.normalizeName(name));
+        long last = product == null ? 0 : product.state;
+        Integer versionId = versionIds.get(version);
+
+        int flags;
+        if (product == null) {
+            flags = NEW_PRODUCT | VERSION | DAY | (status == GONE ? REMOVED : STATUS);
+        } else {
+            flags = 0;
+            if (versionId == null || versionId != version(last)) flags |= VERSION;
+            if (day != day(last)) flags |= DAY;
+            if (status == GONE) {
+                flags |= REMOVED;
+            } else if (status != status(last)) {
+                flags |= STATUS;
+            }
+            if (flags == 0 || (flags == REMOVED && status(last) == GONE)) return false;
+            time = Math.max(time, product.time);
+        }
+
+        recordLength = 0;
+        putByte(flags);
+        if (product == null) {
+            putString(name);
+            putVarlong(zigzag(time));
+        } else {
+            putVarlong(product.id);
+            putVarlong(length - product.offset);
+            putVarlong(zigzag(time - product.time));
+        }
+        if ((flags & VERSION) != 0) {
+            if (versionId == null) {
+                putVarlong(0);
+                putString(version);
+            } else {
+                putVarlong(versionId + 1L);
+            }
+        }
+        if ((flags & STATUS) != 0) putByte(status);
+        if ((flags & DAY) != 0) putVarlong(zigzag((long) day - day(last)));
+        if (versionId == null) versionId = addVersion(version);
+        out.write(record, 0, recordLength);
+
+        if (product == null) product = addProduct(name);
+        product.offset = length;
+        product.time = time;
+        product.state = state(day, versionId, status);
+        length += recordLength;
+        events++;
+        Metrics.HISTORY_EVENTS.increment();
+        return true;
+    }
+
+    // Every recorded state of the product, oldest first; empty if it was never seen.
+    // Reads only the product's own events, newest first along the back-pointers.
+    public synchronized List<Event> timeline(String name) throws IOException {
+        Product product = products.get(SoftwareManager.normalizeName(name));
+        if (product == null) return List.of();
+        List<Raw> chain = new ArrayList<>();
+        Input in = input(512);
+        long offset = product.offset;
+        while (true) {
+            in.seek(offset);
+            Raw raw = new Raw();
+            read(in, raw);
+            chain.add(raw);
+            if (raw.name != null) break;
+            if (raw.back <= 0 || raw.back > offset - HEADER_LENGTH) throw new IOException(file + ": bad back-pointer at " + offset);
+            offset -= raw.back;
+        }
+        List<Event> result = new ArrayList<>(chain.size());
+        long state = 0;
+        long time = 0;
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            Raw raw = chain.get(i);
+            state = apply(state, raw);
+            time += raw.timeDelta;
+            result.add(new Event(time, software(product.name, state), status(state) == GONE));
+        }
+        return result;
+    }
+
+    // The product as it was at time, or null if it wasn't in the inventory then
+    public synchronized Software asOf(String name, Instant time) throws IOException {
+        long millis = time.toEpochMilli();
+        Software result = null;
+        for (Event event : timeline(name)) {
+            if (event.time > millis) break;
+            result = event.removed ? null : event.software;
+        }
+        return result;
+    }
+
+    // The whole inventory as it was at time, in order of first appearance. This reads
+    // the log through once.
+    public synchronized List<Software> inventoryAsOf(Instant time) throws IOException {
+        long millis = time.toEpochMilli();
+        int count = productList.size();
+        long[] states = new long[count];
+        long[] times = new long[count];
+        long[] at = new long[count];
+        Arrays.fill(at, -1);
+        Input in = input(1 << 16);
+        in.seek(HEADER_LENGTH);
+        Raw raw = new Raw();
+        int next = 0;
+        while (in.position() < length) {
+            read(in, raw);
+            int id = raw.name != null ? next++ : (int) raw.id;
+            if (id >= count) throw new IOException(file + ": product id " + id + " out of range");
+            states[id] = apply(states[id], raw);
+            times[id] += raw.timeDelta;
+            if (times[id] <= millis) at[id] = states[id];
+        }
+        List<Software> result = new ArrayList<>();
+        for (int id = 0; id < count; id++) {
+            if (at[id] >= 0 && status(at[id]) != GONE) result.add(software(productList.get(id).name, at[id]));
+        }
+        return result;
+    }
+
+    private Software software(String name, long state) {
+        Status status = status(state) == GONE ? Status.NOT_INSTALLED : STATUSES[status(state)];
+        return new Software(name, versions.get(version(state)), day(state), status);
+    }
+
+    // Reads back what has been appended so far, buffered events included
+    private Input input(int bufferSize) throws IOException {
+        if (out == null) throw new IOException("History is closed");
+        out.flush();
+        if (reader == null) reader = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        return new Input(reader, HEADER_LENGTH, bufferSize);
+    }
+
+    // Hands buffered events to the OS
+    public synchronized void flush() throws IOException {
+        if (out != null) out.flush();
+    }
+
+    // Flushes and waits for the events to reach the disk; every INDEX_INTERVAL events
+    // this also rewrites the index
+    public synchronized void sync() throws IOException {
+        if (out == null) return;
+        out.flush();
+        fileOut.getFD().sync();
+        if (events - indexedEvents >= INDEX_INTERVAL) writeIndex();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out == null) return;
+        try {
+            out.flush();
+            fileOut.getFD().sync();
+            if (events != indexedEvents || !indexFile.isFile()) writeIndex();
+        } finally {
+            out.close();
+            out = null;
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+    }
+
+    private void putByte(int b) {
+        if (recordLength == record.length) record = Arrays.copyOf(record, record.length * 2);
+        record[recordLength++] = (byte) b;
+    }
+
+    private void putVarlong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            putByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        putByte((int) value);
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putVarlong(bytes.length);
+        if (record.length < recordLength + bytes.length) {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + bytes.length));
+        }
+        System.arraycopy(bytes, 0, record, recordLength, bytes.length);
+        recordLength += bytes.length;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Buffered reads from any position of the log, without the per-byte locking of
+    // BufferedInputStream; events are read a byte at a time. Throws EOFException at the end.
+    private static final class Input {
+        private final FileChannel channel;
+        private final byte[] buffer;
+        private final ByteBuffer wrapped;
+        private long start;
+        private int pos;
+        private int limit;
+
+        Input(FileChannel channel, long position, int bufferSize) {
+            this.channel = channel;
+            this.buffer = new byte[bufferSize];
+            this.wrapped = ByteBuffer.wrap(buffer);
+            this.start = position;
+        }
+
+        long position() {
+            return start + pos;
+        }
+
+        void seek(long position) {
+            if (position >= start && position <= start + limit) {
+                pos = (int) (position - start);
+            } else {
+                start = position;
+                pos = 0;
+                limit = 0;
+            }
+        }
+
+        int readByte() throws IOException {
+            if (pos == limit) {
+                start += limit;
+                pos = 0;
+                wrapped.clear();
+                limit = Math.max(0, channel.read(wrapped, start));
+                if (limit == 0) throw new EOFException();
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        int readInt() throws IOException {
+            return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+        }
+
+        long readVarlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        String readString() throws IOException {
+            long length = readVarlong();
+            if (length > 1 << 20) throw new IOException("String of " + length + " bytes");
+            byte[] bytes = new byte[(int) length];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) readByte();
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,537 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Secondary indexes over one immutable snapshot, answering SoftwareQuery without
+// scanning every row:
+//
+//   byName    rows in case-insensitive name order, for prefix ranges and name sorting
+//   trigrams  name trigram -> rows containing it, for substring search (built on
+//             the first substring query, as it is the largest of the indexes)
+//   byStatus  one bitmap of rows per status
+//   byDate    install day -> rows, in date order
+//   versions  product -> rows in version order (a VersionIndex, also built on first use)
+//
+// select() starts from whichever index yields the fewest candidate rows and checks
+// the remaining conditions on those rows only. Results are row numbers into getRows().
+// update() derives the indexes of a later snapshot from these, sorting in only the
+// rows that changed.
+public final class SoftwareIndex {
+    // Trigrams are hashed into this many buckets; a collision only adds candidates,
+    // which the final check filters out
+    private static final int TRIGRAM_BUCKETS = 1 << 16;
+
+    private final List<Software> rows;
+    private final int[] byName;
+    // Row -> its position in byName, so name sorting is an int sort
+    private final int[] nameRank;
+    private final Map<Status, BitSet> byStatus = new EnumMap<>(Status.class);
+    private final NavigableMap<Integer, int[]> byDate = new TreeMap<>();
+    private volatile Trigrams trigrams;
+    private volatile VersionIndex versions;
+
+    private SoftwareIndex(List<Software> rows) {
+        this.rows = rows;
+        int size = rows.size();
+
+        // Case-folded copies for the sort only: plain compareTo on them orders exactly
+        // like CASE_INSENSITIVE_ORDER on the names, and much faster
+        String[] folded = new String[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            folded[i] = fold(rows.get(i).getName());
+            order[i] = i;
+        }
+        Arrays.parallelSort(order, (a, b) -> {
+            int c = folded[a].compareTo(folded[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        byName = new int[size];
+        nameRank = new int[size];
+        for (int i = 0; i < size; i++) {
+            byName[i] = order[i];
+            nameRank[order[i]] = i;
+        }
+
+        for (Status status : Status.values()) byStatus.put(status, new BitSet(size));
+        long[] days = new long[size];
+        for (int i = 0; i < size; i++) {
+            Software s = rows.get(i);
+            byStatus.get(s.getStatus()).set(i);
+            days[i] = sortKey(s.getEpochDay(), i);
+        }
+        Arrays.parallelSort(days);
+        groupByDay(days);
+    }
+
+    // The indexes of rows from those of an earlier snapshot: oldToNew maps each of its
+    // rows to the same record in rows, or -1 if it is gone; fresh are the rows of
+    // records it didn't have, in row order
+    private SoftwareIndex(SoftwareIndex old, List<Software> rows, int[] oldToNew, int[] fresh) {
+        this.rows = rows;
+        int size = rows.size();
+
+        // Kept rows stay in name order, as none moved past another; the fresh ones are
+        // sorted and each put in place with a binary search
+        String[] folded = new String[fresh.length];
+        Integer[] order = new Integer[fresh.length];
+        for (int i = 0; i < fresh.length; i++) {
+            folded[i] = fold(rows.get(fresh[i]).getName());
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = folded[a].compareTo(folded[b]);
+            return c != 0 ? c : Integer.compare(fresh[a], fresh[b]);
+        });
+        int[] kept = new int[size - fresh.length];
+        int count = 0;
+        for (int row : old.byName) {
+            if (oldToNew[row] >= 0) kept[count++] = oldToNew[row];
+        }
+        byName = new int[size];
+        int from = 0;
+        int pos = 0;
+        for (int i : order) {
+            int low = from;
+            int high = kept.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int c = fold(rows.get(kept[mid]).getName()).compareTo(folded[i]);
+                if (c < 0 || (c == 0 && kept[mid] < fresh[i])) low = mid + 1; else high = mid;
+            }
+            System.arraycopy(kept, from, byName, pos, low - from);
+            pos += low - from;
+            byName[pos++] = fresh[i];
+            from = low;
+        }
+        System.arraycopy(kept, from, byName, pos, kept.length - from);
+        nameRank = new int[size];
+        for (int i = 0; i < size; i++) nameRank[byName[i]] = i;
+
+        for (Status status : Status.values()) byStatus.put(status, new BitSet(size));
+        for (int i = 0; i < size; i++) byStatus.get(rows.get(i).getStatus()).set(i);
+
+        // Same for the dates, merging two sorted runs of keys
+        long[] keptDays = new long[kept.length];
+        count = 0;
+        for (Map.Entry<Integer, int[]> e : old.byDate.entrySet()) {
+            for (int row : e.getValue()) {
+                if (oldToNew[row] >= 0) keptDays[count++] = sortKey(e.getKey(), oldToNew[row]);
+            }
+        }
+        long[] freshDays = new long[fresh.length];
+        for (int i = 0; i < fresh.length; i++) freshDays[i] = sortKey(rows.get(fresh[i]).getEpochDay(), fresh[i]);
+        Arrays.sort(freshDays);
+        long[] days = new long[size];
+        for (int i = 0, k = 0, f = 0; i < size; i++) {
+            days[i] = f == freshDays.length || (k < keptDays.length && keptDays[k] < freshDays[f]) ? keptDays[k++] : freshDays[f++];
+        }
+        groupByDay(days);
+
+        Trigrams t = old.trigrams;
+        if (t != null) trigrams = new Trigrams(t, oldToNew, rows, fresh);
+    }
+
+    // Fills byDate from sorted day/row keys
+    private void groupByDay(long[] days) {
+        for (int start = 0; start < days.length; ) {
+            int day = (int) (days[start] >> 32);
+            int end = start;
+            while (end < days.length && (int) (days[end] >> 32) == day) end++;
+            int[] group = new int[end - start];
+            for (int i = start; i < end; i++) group[i - start] = (int) days[i];
+            byDate.put(day, group);
+            start = end;
+        }
+    }
+
+    private static String fold(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) chars[i] = Trigrams.fold(chars[i]);
+        return new String(chars);
+    }
+
+    public static SoftwareIndex build(List<Software> rows) {
+        return new SoftwareIndex(rows);
+    }
+
+    // Indexes for a later snapshot of the same list, in which records were appended,
+    // replaced or removed; Software is immutable, so the others are the same objects in
+    // the same order. Built from these when at most an eighth of the rows changed,
+    // else from scratch. The version index is built again on first use.
+    public SoftwareIndex update(List<Software> newRows) {
+        if (newRows == rows) return this;
+        int oldSize = rows.size();
+        int newSize = newRows.size();
+        int[] oldToNew = new int[oldSize];
+        Arrays.fill(oldToNew, -1);
+        int[] fresh = new int[Math.max(0, newSize - oldSize) + 16];
+        int count = 0;
+        // Walk both lists together, taking a mismatch as a removal when the next old
+        // record matches, else as a replacement when the next ones match
+        int i = 0;
+        int j = 0;
+        while (i < oldSize && j < newSize) {
+            if (rows.get(i) == newRows.get(j)) {
+                oldToNew[i++] = j++;
+            } else if (i + 1 < oldSize && rows.get(i + 1) == newRows.get(j)) {
+                i++;
+            } else if (i + 1 < oldSize && j + 1 < newSize && rows.get(i + 1) == newRows.get(j + 1)) {
+                i++;
+                if (count == fresh.length) fresh = Arrays.copyOf(fresh, count * 2);
+                fresh[count++] = j++;
+            } else {
+                break;
+            }
+            if ((long) count * 8 > newSize) return build(newRows);
+        }
+        // Anything else: match the rest by identity
+        if (i < oldSize && j < newSize) {
+            Map<Software, Integer> remaining = new IdentityHashMap<>();
+            for (int k = i; k < oldSize; k++) remaining.put(rows.get(k), k);
+            int last = -1;
+            for (; j < newSize; j++) {
+                Integer k = remaining.get(newRows.get(j));
+                // A record that moved back past another is taken as removed and added again
+                if (k != null && k > last) {
+                    oldToNew[k] = j;
+                    last = k;
+                } else {
+                    if (count == fresh.length) fresh = Arrays.copyOf(fresh, count * 2);
+                    fresh[count++] = j;
+                }
+            }
+        }
+        // Appended records
+        for (; j < newSize; j++) {
+            if (count == fresh.length) fresh = Arrays.copyOf(fresh, count * 2);
+            fresh[count++] = j;
+        }
+        if ((long) count * 8 > newSize) return build(newRows);
+        return new SoftwareIndex(this, newRows, oldToNew, Arrays.copyOf(fresh, count));
+    }
+
+    // The snapshot the row numbers refer to
+    public List<Software> getRows() {
+        return rows;
+    }
+
+    public List<Software> query(SoftwareQuery query) {
+        int[] selected = select(query);
+        List<Software> result = new ArrayList<>(selected.length);
+        for (int row : selected) result.add(rows.get(row));
+        return result;
+    }
+
+    // Row numbers of the matching records, sorted and limited as the query asks;
+    // in row order when it has no sort
+    public int[] select(SoftwareQuery query) {
+        int size = rows.size();
+        int[] candidates = null;
+        int estimate = size;
+        char best = 'a';
+
+        if (query.namePrefix != null) {
+            int count = prefixEnd(query.namePrefix) - prefixStart(query.namePrefix);
+            if (count < estimate) { estimate = count; best = 'p'; }
+        }
+        if (query.nameContains != null && query.nameContains.length() >= 3) {
+            int count = trigrams().smallestBucket(query.nameContains)[1];
+            if (count < estimate) { estimate = count; best = 'c'; }
+        }
+        if (query.product != null) {
+            int count = versions().count(query.product, query.minVersion, query.maxVersion);
+            if (count < estimate) { estimate = count; best = 'v'; }
+        }
+        if (query.statuses != null) {
+            int count = 0;
+            for (Status status : query.statuses) count += byStatus.get(status).cardinality();
+            if (count < estimate) { estimate = count; best = 's'; }
+        }
+        if (query.fromDay != Integer.MIN_VALUE || query.toDay != Integer.MAX_VALUE) {
+            int count = 0;
+            for (int[] group : dayRange(query).values()) count += group.length;
+            if (count < estimate) { estimate = count; best = 'd'; }
+        }
+
+        // A large match set that is wanted in name or date order and cut short by a
+        // limit is cheaper to find by walking that order until the limit is reached
+        if (query.limit < estimate && estimate > size / 16
+                && (query.sort == SoftwareQuery.Sort.NAME || query.sort == SoftwareQuery.Sort.DATE)) {
+            return walkInOrder(query);
+        }
+
+        switch (best) {
+            case 'p': candidates = Arrays.copyOfRange(byName, prefixStart(query.namePrefix), prefixEnd(query.namePrefix)); break;
+            case 'c': candidates = trigrams().candidates(query.nameContains); break;
+            case 'v': candidates = versions().select(query.product, query.minVersion, query.maxVersion); break;
+            case 's': candidates = statusRows(query); break;
+            case 'd': candidates = dateRows(query); break;
+            default: break;
+        }
+
+        int[] matches = new int[candidates == null ? size : candidates.length];
+        int count = 0;
+        for (int i = 0; i < matches.length; i++) {
+            int row = candidates == null ? i : candidates[i];
+            if (query.matches(rows.get(row))) matches[count++] = row;
+        }
+        matches = Arrays.copyOf(matches, count);
+        sort(matches, query.sort);
+        if (query.descending && query.sort != null) reverse(matches);
+        return matches.length > query.limit ? Arrays.copyOf(matches, query.limit) : matches;
+    }
+
+    private int[] walkInOrder(SoftwareQuery query) {
+        int[] result = new int[query.limit];
+        int count = 0;
+        if (query.sort == SoftwareQuery.Sort.NAME) {
+            for (int i = 0; i < byName.length && count < query.limit; i++) {
+                int row = byName[query.descending ? byName.length - 1 - i : i];
+                if (query.matches(rows.get(row))) result[count++] = row;
+            }
+        } else {
+            NavigableMap<Integer, int[]> days = query.descending ? byDate.descendingMap() : byDate;
+            for (int[] group : days.values()) {
+                for (int i = 0; i < group.length && count < query.limit; i++) {
+                    int row = group[query.descending ? group.length - 1 - i : i];
+                    if (query.matches(rows.get(row))) result[count++] = row;
+                }
+                if (count == query.limit) break;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private void sort(int[] matches, SoftwareQuery.Sort sort) {
+        if (sort == null) {
+            Arrays.sort(matches);
+        } else if (sort == SoftwareQuery.Sort.NAME) {
+            for (int i = 0; i < matches.length; i++) matches[i] = nameRank[matches[i]];
+            Arrays.sort(matches);
+            for (int i = 0; i < matches.length; i++) matches[i] = byName[matches[i]];
+        } else if (sort == SoftwareQuery.Sort.VERSION) {
+            Integer[] boxed = new Integer[matches.length];
+            for (int i = 0; i < matches.length; i++) boxed[i] = matches[i];
+            Arrays.sort(boxed, (a, b) -> {
+                int c = rows.get(a).getParsedVersion().compareTo(rows.get(b).getParsedVersion());
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+            for (int i = 0; i < matches.length; i++) matches[i] = boxed[i];
+        } else {
+            // Key in the high half, row in the low half: one primitive sort, ties by row
+            long[] keys = new long[matches.length];
+            for (int i = 0; i < matches.length; i++) {
+                Software s = rows.get(matches[i]);
+                int key = sort == SoftwareQuery.Sort.DATE ? s.getEpochDay() : s.getStatus().ordinal();
+                keys[i] = sortKey(key, matches[i]);
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < matches.length; i++) matches[i] = (int) keys[i];
+        }
+    }
+
+    private static long sortKey(int key, int row) {
+        return ((long) key << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    private static void reverse(int[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    // First position in byName whose name starts with prefix or sorts after it
+    private int prefixStart(String prefix) {
+        int low = 0;
+        int high = byName.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(rows.get(byName[mid]).getName(), prefix) < 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    // First position in byName past the names starting with prefix
+    private int prefixEnd(String prefix) {
+        int low = 0;
+        int high = byName.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(rows.get(byName[mid]).getName(), prefix) <= 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    // Compares only the first prefix.length() characters of name, in byName's order
+    private static int comparePrefix(String name, String prefix) {
+        int length = Math.min(name.length(), prefix.length());
+        return String.CASE_INSENSITIVE_ORDER.compare(name.substring(0, length), prefix);
+    }
+
+    private int[] statusRows(SoftwareQuery query) {
+        BitSet union = new BitSet(rows.size());
+        for (Status status : query.statuses) union.or(byStatus.get(status));
+        return union.stream().toArray();
+    }
+
+    private NavigableMap<Integer, int[]> dayRange(SoftwareQuery query) {
+        if (query.fromDay > query.toDay) return new TreeMap<>();
+        return byDate.subMap(query.fromDay, true, query.toDay, true);
+    }
+
+    private int[] dateRows(SoftwareQuery query) {
+        int count = 0;
+        for (int[] group : dayRange(query).values()) count += group.length;
+        int[] result = new int[count];
+        int pos = 0;
+        for (int[] group : dayRange(query).values()) {
+            System.arraycopy(group, 0, result, pos, group.length);
+            pos += group.length;
+        }
+        return result;
+    }
+
+    public VersionIndex versions() {
+        VersionIndex v = versions;
+        if (v == null) {
+            synchronized (this) {
+                v = versions;
+                if (v == null) versions = v = new VersionIndex(rows);
+            }
+        }
+        return v;
+    }
+
+    private Trigrams trigrams() {
+        Trigrams t = trigrams;
+        if (t == null) {
+            synchronized (this) {
+                t = trigrams;
+                if (t == null) trigrams = t = new Trigrams(rows);
+            }
+        }
+        return t;
+    }
+
+    // Bucketed trigram postings, laid out flat: the rows of bucket b are
+    // postings[offsets[b] .. offsets[b + 1]), in ascending row order
+    private static final class Trigrams {
+        private final int[] offsets = new int[TRIGRAM_BUCKETS + 1];
+        private final int[] postings;
+
+        Trigrams(List<Software> rows) {
+            // Two passes, count then fill; lastRow keeps a row from being listed
+            // twice under one bucket
+            int[] lastRow = new int[TRIGRAM_BUCKETS];
+            Arrays.fill(lastRow, -1);
+            for (int row = 0; row < rows.size(); row++) {
+                String name = rows.get(row).getName();
+                for (int i = 0; i + 3 <= name.length(); i++) {
+                    int b = bucket(name, i);
+                    if (lastRow[b] != row) {
+                        lastRow[b] = row;
+                        offsets[b + 1]++;
+                    }
+                }
+            }
+            for (int b = 0; b < TRIGRAM_BUCKETS; b++) offsets[b + 1] += offsets[b];
+
+            postings = new int[offsets[TRIGRAM_BUCKETS]];
+            int[] fill = Arrays.copyOf(offsets, TRIGRAM_BUCKETS);
+            Arrays.fill(lastRow, -1);
+            for (int row = 0; row < rows.size(); row++) {
+                String name = rows.get(row).getName();
+                for (int i = 0; i + 3 <= name.length(); i++) {
+                    int b = bucket(name, i);
+                    if (lastRow[b] != row) {
+                        lastRow[b] = row;
+                        postings[fill[b]++] = row;
+                    }
+                }
+            }
+        }
+
+        // The postings of a later snapshot; see SoftwareIndex(SoftwareIndex, ...)
+        Trigrams(Trigrams old, int[] oldToNew, List<Software> rows, int[] fresh) {
+            // Bucket in the high half, row in the low half, so one sort puts the fresh
+            // rows of each bucket together in row order
+            long[] added = new long[16];
+            int addedCount = 0;
+            int[] lastRow = new int[TRIGRAM_BUCKETS];
+            Arrays.fill(lastRow, -1);
+            for (int row : fresh) {
+                String name = rows.get(row).getName();
+                for (int i = 0; i + 3 <= name.length(); i++) {
+                    int b = bucket(name, i);
+                    if (lastRow[b] != row) {
+                        lastRow[b] = row;
+                        if (addedCount == added.length) added = Arrays.copyOf(added, addedCount * 2);
+                        added[addedCount++] = sortKey(b, row);
+                    }
+                }
+            }
+            Arrays.sort(added, 0, addedCount);
+
+            // Count then fill as in a build, merging each bucket's kept rows, still in
+            // row order, with its fresh ones
+            for (int b = 0; b < TRIGRAM_BUCKETS; b++) {
+                for (int p = old.offsets[b]; p < old.offsets[b + 1]; p++) {
+                    if (oldToNew[old.postings[p]] >= 0) offsets[b + 1]++;
+                }
+            }
+            for (int i = 0; i < addedCount; i++) offsets[(int) (added[i] >> 32) + 1]++;
+            for (int b = 0; b < TRIGRAM_BUCKETS; b++) offsets[b + 1] += offsets[b];
+
+            postings = new int[offsets[TRIGRAM_BUCKETS]];
+            int a = 0;
+            for (int b = 0; b < TRIGRAM_BUCKETS; b++) {
+                int pos = offsets[b];
+                for (int p = old.offsets[b]; p < old.offsets[b + 1]; p++) {
+                    int row = oldToNew[old.postings[p]];
+                    if (row < 0) continue;
+                    while (a < addedCount && (int) (added[a] >> 32) == b && (int) added[a] < row) postings[pos++] = (int) added[a++];
+                    postings[pos++] = row;
+                }
+                while (a < addedCount && (int) (added[a] >> 32) == b) postings[pos++] = (int) added[a++];
+            }
+        }
+
+        private static char fold(char c) {
+            return Character.toLowerCase(Character.toUpperCase(c));
+        }
+
+        private static int bucket(String s, int i) {
+            int h = (fold(s.charAt(i)) * 31 + fold(s.charAt(i + 1))) * 31 + fold(s.charAt(i + 2));
+            return (h * 0x9E3779B1) >>> 16;
+        }
+
+        // {bucket, size} of the needle's least common trigram
+        int[] smallestBucket(String needle) {
+            int best = bucket(needle, 0);
+            for (int i = 1; i + 3 <= needle.length(); i++) {
+                int b = bucket(needle, i);
+                if (size(b) < size(best)) best = b;
+            }
+            return new int[]{ best, size(best) };
+        }
+
+        private int size(int bucket) {
+            return offsets[bucket + 1] - offsets[bucket];
+        }
+
+        // Every row containing the needle is in here, plus some that don't
+        int[] candidates(String needle) {
+            int b = smallestBucket(needle)[0];
+            return Arrays.copyOfRange(postings, offsets[b], offsets[b + 1]);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,247 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Append-only log of inventory edits, replayed on top of the data file at startup.
+// The first line names the snapshot generation the log applies to, then one record per edit:
+//   +<record>           append
+//   =<index>,<record>   replace the record at index
+//   -<index>            remove the record at index
+// Appends are fsynced in groups: after GROUP_SIZE records or GROUP_DELAY_MS, whichever comes first.
+// After a failed write nothing more is appended, as later records would refer to positions
+// the log never saw; sync() reports the failure until the owner replaces the journal.
+public class SoftwareJournal implements Closeable {
+    static final String GENERATION_PREFIX = "#generation ";
+    private static final int GROUP_SIZE = 64;
+    private static final long GROUP_DELAY_MS = 20;
+
+    private static final ScheduledExecutorService SYNCER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "journal-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Receives replayed edits
+    public interface Target {
+        void add(Software s);
+        void replace(int index, Software s);
+        void remove(int index);
+    }
+
+    private final File file;
+    private final long generation;
+    private final FileOutputStream out;
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder(128);
+    private long size;
+    private int pending;
+    private ScheduledFuture<?> scheduledSync;
+    private boolean closed;
+    private IOException failure;
+
+    private SoftwareJournal(File file, long generation, boolean append) throws IOException {
+        this.file = file;
+        this.generation = generation;
+        this.out = new FileOutputStream(file, append);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.size = append ? file.length() : 0;
+    }
+
+    // Starts an empty journal for the given snapshot generation
+    public static SoftwareJournal create(File file, long generation) throws IOException {
+        SoftwareJournal journal = new SoftwareJournal(file, generation, false);
+        journal.append(GENERATION_PREFIX + generation);
+        journal.sync();
+        return journal;
+    }
+
+    // Reopens an existing journal to keep appending to it, after cutting it back to
+    // length, the end of its last complete record as returned by replay()
+    public static SoftwareJournal open(File file, long generation, long length) throws IOException {
+        if (file.length() > length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(length);
+            }
+        }
+        return new SoftwareJournal(file, generation, true);
+    }
+
+    // Returns the generation in the journal header, or -1 if the file is missing or has none
+    public static long readGeneration(File file) {
+        if (!file.exists()) return -1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header != null && header.startsWith(GENERATION_PREFIX)) {
+                return Long.parseLong(header.substring(GENERATION_PREFIX.length()).trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.warn("journal.unreadable", "file", file, "reason", e.getMessage());
+        }
+        return -1;
+    }
+
+    // Applies every complete record in the file and returns the length up to the end
+    // of the last one. A last line with no line break is a write torn by a crash and is
+    // ignored; any other record that can't be applied fails the replay, as every record
+    // after it would land on the wrong position.
+    public static long replay(File file, Target target) throws IOException {
+        long length = 0;
+        int lineNumber = 0;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (b != '\n') {
+                    buffer.write(b);
+                    continue;
+                }
+                lineNumber++;
+                length += buffer.size() + 1;
+                String line = buffer.toString(StandardCharsets.UTF_8);
+                buffer.reset();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                try {
+                    apply(line, target);
+                } catch (RuntimeException e) {
+                    throw new IOException(file + ": line " + lineNumber + ": can't apply \"" + line + "\": " + e.getMessage(), e);
+                }
+            }
+        }
+        if (buffer.size() > 0) {
+            Log.warn("journal.tornRecord", "file", file, "bytes", buffer.size());
+        }
+        return length;
+    }
+
+    private static void apply(String line, Target target) {
+        switch (line.charAt(0)) {
+            case '+':
+                target.add(Software.fromString(line.substring(1)));
+                break;
+            case '=': {
+                int comma = line.indexOf(',');
+                target.replace(Integer.parseInt(line.substring(1, comma)),
+                               Software.fromString(line.substring(comma + 1)));
+                break;
+            }
+            case '-':
+                target.remove(Integer.parseInt(line.substring(1)));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown record type");
+        }
+    }
+
+    public long getGeneration() { return generation; }
+    public File getFile() { return file; }
+
+    public synchronized void appendAdd(Software s) {
+        appendRecord(record('+', s));
+    }
+
+    // Appends a batch with a single sync at the end
+    public synchronized void appendAdds(List<Software> batch) {
+        if (failure != null) return;
+        try {
+            for (Software s : batch) {
+                append(record('+', s));
+            }
+            sync();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    public synchronized void appendReplace(int index, Software s) {
+        line.setLength(0);
+        line.append('=').append(index).append(',');
+        appendRecord(SoftwareCodec.encode(s, line));
+    }
+
+    public void appendRemove(int index) {
+        appendRecord("-" + index);
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized boolean isFailed() {
+        return failure != null;
+    }
+
+    // Encodes into the shared line buffer; callers hold the lock until it is written
+    private StringBuilder record(char op, Software s) {
+        line.setLength(0);
+        return SoftwareCodec.encode(s, line.append(op));
+    }
+
+    private synchronized void appendRecord(CharSequence record) {
+        if (failure != null) return;
+        try {
+            append(record);
+            if (++pending >= GROUP_SIZE) {
+                sync();
+            } else if (scheduledSync == null) {
+                scheduledSync = SYNCER.schedule(this::syncQuietly, GROUP_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(IOException e) {
+        if (failure == null) failure = e;
+        Log.error("journal.writeFailed", e, "file", file);
+    }
+
+    private void append(CharSequence record) throws IOException {
+        writer.append(record);
+        writer.write('\n');
+        size += record.length() + 1;
+    }
+
+    // Flushes buffered records and forces them to disk
+    public synchronized void sync() throws IOException {
+        if (scheduledSync != null) {
+            scheduledSync.cancel(false);
+            scheduledSync = null;
+        }
+        if (failure != null) {
+            throw new IOException("Cannot write " + file + ": " + failure.getMessage(), failure);
+        }
+        try {
+            writer.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            failed(e);
+            throw e;
+        }
+        pending = 0;
+    }
+
+    private synchronized void syncQuietly() {
+        scheduledSync = null;
+        if (closed) return;
+        try {
+            sync();
+        } catch (IOException e) {
+            // Kept in failure for the next sync()
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            sync();
+        } finally {
+            writer.close();
+        }
+    }
+}
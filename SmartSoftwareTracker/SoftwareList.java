@@ -0,0 +1,118 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// The manager's record list, held in fixed-size chunks so it can be published without
+// a copy: snapshot() hands out an immutable list sharing the chunks, and the next write
+// to a shared chunk copies only that chunk. Publishing after an edit costs the chunk
+// table and the chunks written since the last snapshot, not every row.
+// Not thread-safe; the manager writes it under its lock.
+public final class SoftwareList extends AbstractList<Software> implements RandomAccess {
+    private static final int SHIFT = 10;
+    private static final int CHUNK = 1 << SHIFT;
+    private static final int MASK = CHUNK - 1;
+
+    private Software[][] chunks = new Software[16][];
+    // Chunks written since the last snapshot, which no snapshot shares
+    private boolean[] owned = new boolean[16];
+    private int size;
+
+    @Override
+    public Software get(int index) {
+        Objects.checkIndex(index, size);
+        return chunks[index >>> SHIFT][index & MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Software s) {
+        int c = size >>> SHIFT;
+        if (c == chunks.length) {
+            chunks = Arrays.copyOf(chunks, c * 2);
+            owned = Arrays.copyOf(owned, c * 2);
+        }
+        if (chunks[c] == null) {
+            chunks[c] = new Software[CHUNK];
+            owned[c] = true;
+        }
+        writable(c)[size & MASK] = s;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Software set(int index, Software s) {
+        Software old = get(index);
+        writable(index >>> SHIFT)[index & MASK] = s;
+        return old;
+    }
+
+    // Shifts the later rows down one, chunk by chunk
+    @Override
+    public Software remove(int index) {
+        Software old = get(index);
+        int last = size - 1;
+        int first = index >>> SHIFT;
+        int lastChunk = last >>> SHIFT;
+        for (int c = first; c <= lastChunk; c++) {
+            Software[] chunk = writable(c);
+            int from = c == first ? index & MASK : 0;
+            int end = c == lastChunk ? last & MASK : MASK;
+            System.arraycopy(chunk, from + 1, chunk, from, end - from);
+            chunk[end] = c < lastChunk ? chunks[c + 1][0] : null;
+        }
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        chunks = new Software[16][];
+        owned = new boolean[16];
+        size = 0;
+        modCount++;
+    }
+
+    // The rows as they are now; later writes don't change it
+    public List<Software> snapshot() {
+        Arrays.fill(owned, false);
+        return new Snapshot(Arrays.copyOf(chunks, (size + MASK) >>> SHIFT), size);
+    }
+
+    private Software[] writable(int c) {
+        if (!owned[c]) {
+            chunks[c] = chunks[c].clone();
+            owned[c] = true;
+        }
+        return chunks[c];
+    }
+
+    private static final class Snapshot extends AbstractList<Software> implements RandomAccess {
+        private final Software[][] chunks;
+        private final int size;
+
+        Snapshot(Software[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        public Software get(int index) {
+            Objects.checkIndex(index, size);
+            return chunks[index >>> SHIFT][index & MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
\ No newline at end of file
@@ -1,304 +1,846 @@
-import java.io.*;
-import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-
-public class SoftwareManager {
-    private List<Software> softwareList;
-    private static final String DATA_FILE = "software_data.txt";
-
-    public SoftwareManager() {
-        softwareList = new ArrayList<>();
-        loadData();
-    }
-
-    public void addSoftware(String name, String version, LocalDate date, String status) {
-        softwareList.add(new Software(name, version, date, status));
-        saveData();
-    }
-
-    public void removeSoftware(int index) {
-        if (index >= 0 && index < softwareList.size()) {
-            softwareList.remove(index);
-            saveData();
-        }
-    }
-
-    public void updateSoftware(int index, String name, String version, LocalDate date, String status) {
-        if (index >= 0 && index < softwareList.size()) {
-            Software s = softwareList.get(index);
-            s.setName(name);
-            s.setVersion(version);
-            s.setInstallationDate(date);
-            s.setStatus(status);
-            saveData();
-        }
-    }
-
-    public List<Software> getAllSoftware() {
-        return new ArrayList<>(softwareList);
-    }
-
-    public void scanSystemForSoftware() {
-        try {
-            System.out.println("Scanning for installed software using Registry...");
-            
-            // Try PowerShell first (with full path)
-            if (!scanWithPowerShell()) {
-                // If PowerShell fails, use direct registry query
-                scanWithRegistryQuery();
-            }
-            
-            // Save the updated list
-            saveData();
-            
-            System.out.println("Scan complete! Total software in database: " + softwareList.size());
-            
-        } catch (Exception e) {
-            System.err.println("Error scanning system: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-    
-    private boolean scanWithPowerShell() {
-        try {
-            // Try different possible PowerShell locations
-            String[] possiblePaths = {
-                "powershell.exe",
-                "C:\\Windows\\System32\\WindowsPowerShell\\v1.0\\powershell.exe",
-                "C:\\Windows\\SysWOW64\\WindowsPowerShell\\v1.0\\powershell.exe"
-            };
-            
-            for (String powerShellPath : possiblePaths) {
-                File psFile = new File(powerShellPath);
-                if (psFile.exists()) {
-                    System.out.println("Found PowerShell at: " + powerShellPath);
-                    
-                    String[] command = {
-                        powerShellPath,
-                        "-Command",
-                        "Get-ItemProperty HKLM:\\Software\\Microsoft\\Windows\\CurrentVersion\\Uninstall\\*, " +
-                        "HKLM:\\Software\\WOW6432Node\\Microsoft\\Windows\\CurrentVersion\\Uninstall\\* | " +
-                        "Where-Object { $_.DisplayName } | " +
-                        "Select-Object DisplayName, DisplayVersion, InstallDate | " +
-                        "ConvertTo-Csv -NoTypeInformation"
-                    };
-                    
-                    ProcessBuilder processBuilder = new ProcessBuilder(command);
-                    processBuilder.redirectErrorStream(true);
-                    Process process = processBuilder.start();
-                    
-                    int count = parsePowerShellOutput(process);
-                    
-                    process.waitFor();
-                    
-                    if (count > 0) {
-                        System.out.println("PowerShell scan added " + count + " software entries.");
-                        return true;
-                    }
-                }
-            }
-            
-        } catch (Exception e) {
-            System.out.println("PowerShell scan failed: " + e.getMessage());
-        }
-        return false;
-    }
-    
-    private int parsePowerShellOutput(Process process) throws IOException {
-        int count = 0;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            boolean firstLine = true;
-            
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip CSV header
-                }
-                
-                // Parse CSV format
-                String[] parts = line.split("\",\"");
-                if (parts.length >= 1) {
-                    String name = parts[0].replaceAll("^\"|\"$", "").trim();
-                    
-                    if (!name.isEmpty() && !name.equalsIgnoreCase("DisplayName")) {
-                        String version = (parts.length >= 2) ? 
-                            parts[1].replaceAll("^\"|\"$", "").trim() : "Unknown";
-                        
-                        // Check if already exists
-                        boolean exists = false;
-                        for (Software s : softwareList) {
-                            if (s.getName().equalsIgnoreCase(name)) {
-                                exists = true;
-                                break;
-                            }
-                        }
-                        
-                        if (!exists) {
-                            softwareList.add(new Software(name, version, LocalDate.now(), "Installed"));
-                            count++;
-                        }
-                    }
-                }
-            }
-        }
-        return count;
-    }
-
-    private void scanWithRegistryQuery() {
-        try {
-            System.out.println("Using enhanced registry query method...");
-            
-            // Scan 64-bit software
-            scanRegistryPath("HKLM\\Software\\Microsoft\\Windows\\CurrentVersion\\Uninstall");
-            
-            // Scan 32-bit software on 64-bit Windows
-            scanRegistryPath("HKLM\\Software\\WOW6432Node\\Microsoft\\Windows\\CurrentVersion\\Uninstall");
-            
-            // Scan per-user installations
-            scanRegistryPath("HKCU\\Software\\Microsoft\\Windows\\CurrentVersion\\Uninstall");
-            
-        } catch (Exception e) {
-            System.err.println("Registry scan error: " + e.getMessage());
-        }
-    }
-    
-    private void scanRegistryPath(String regPath) {
-        try {
-            System.out.println("Scanning: " + regPath);
-            
-            // First, get all subkeys
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                "reg", "query", regPath
-            );
-            
-            Process process = processBuilder.start();
-            List<String> subkeys = new ArrayList<>();
-            
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    line = line.trim();
-                    if (line.startsWith("HKEY")) {
-                        subkeys.add(line);
-                    }
-                }
-            }
-            
-            process.waitFor();
-            
-            // Now query each subkey for DisplayName and DisplayVersion
-            for (String subkey : subkeys) {
-                String displayName = getRegistryValue(subkey, "DisplayName");
-                
-                if (displayName != null && !displayName.isEmpty() && 
-                    !displayName.contains("{")) { // Skip GUID-like names
-                    
-                    // Check if already exists
-                    boolean exists = false;
-                    for (Software s : softwareList) {
-                        if (s.getName().equalsIgnoreCase(displayName)) {
-                            exists = true;
-                            break;
-                        }
-                    }
-                    
-                    if (!exists) {
-                        String version = getRegistryValue(subkey, "DisplayVersion");
-                        if (version == null) version = getRegistryValue(subkey, "Version");
-                        if (version == null) version = "Unknown";
-                        
-                        String installDate = getRegistryValue(subkey, "InstallDate");
-                        LocalDate date = LocalDate.now();
-                        
-                        if (installDate != null && installDate.length() == 8) {
-                            try {
-                                String formattedDate = installDate.substring(0, 4) + "-" +
-                                                     installDate.substring(4, 6) + "-" +
-                                                     installDate.substring(6, 8);
-                                date = LocalDate.parse(formattedDate);
-                            } catch (Exception e) {
-                                // Use current date if parsing fails
-                            }
-                        }
-                        
-                        softwareList.add(new Software(displayName, version, date, "Installed"));
-                        System.out.println("Found: " + displayName + " (" + version + ")");
-                    }
-                }
-            }
-            
-        } catch (Exception e) {
-            // Ignore errors for specific paths (may not exist)
-        }
-    }
-    
-    private String getRegistryValue(String keyPath, String valueName) {
-        try {
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                "reg", "query", keyPath, "/v", valueName
-            );
-            Process process = processBuilder.start();
-            
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.contains(valueName)) {
-                        // Registry output format: "    DisplayName    REG_SZ    Value"
-                        String[] parts = line.split("REG_SZ");
-                        if (parts.length >= 2) {
-                            return parts[1].trim();
-                        }
-                    }
-                }
-            }
-            
-            process.waitFor();
-        } catch (Exception e) {
-            // Value not found
-        }
-        return null;
-    }
-
-    public int getDetectedSoftwareCount() {
-        return softwareList.size();
-    }
-
-    private void saveData() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(DATA_FILE))) {
-            for (Software s : softwareList) {
-                writer.write(s.toString());
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void loadData() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return;
-        }
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (!line.isEmpty()) {
-                    try {
-                        softwareList.add(Software.fromString(line));
-                    } catch (Exception e) {
-                        System.err.println("Error parsing line: " + line);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
+import java.io.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class SoftwareManager {
+    // Told which rows changed, so views can update just those rows
+    public interface Listener {
+        void rowsInserted(int first, int last);
+        void rowsUpdated(int first, int last);
+        void rowsRemoved(int first, int last);
+    }
+
+    // Writers change softwareList under the manager lock, then publish an immutable
+    // snapshot of it, which shares all but the chunks written since the last one;
+    // readers only touch the published snapshot, with no lock and no copy
+    private final SoftwareList softwareList = new SoftwareList();
+    private volatile List<Software> snapshot = List.of();
+    // Normalized name -> first record with that name, kept in step with softwareList
+    private final Map<String, Software> nameIndex = new ConcurrentHashMap<>();
+    // Records per normalized name, so removing a unique name never has to search the list
+    private final Map<String, Integer> nameCounts = new HashMap<>();
+    // Position of each record in softwareList, by identity, kept in step with it, so an
+    // update of a record found by name never has to search the list
+    private final Map<Software, Integer> positions = new IdentityHashMap<>();
+    private static final String DATA_FILE = "software_data.txt";
+    // Used instead when started with -Dtracker.format=binary
+    private static final String BINARY_DATA_FILE = "software_data.bin";
+    private final SoftwareRepository repository;
+    // Scan state and cache are kept as files next to this one
+    private final File stateBase;
+    // Found on first scan unless set; see SoftwareSources
+    private volatile List<SoftwareSource> sources;
+    private ScanCache scanCache;
+    // Every version and status a product has had, in <data file>.history; opened on the
+    // first change or history query, or in the background by openHistoryInBackground().
+    // Opening takes historyLock rather than the manager's, so edits and reads don't wait on it.
+    private volatile SoftwareHistory history;
+    private final Object historyLock = new Object();
+    private boolean historyClosed;
+    // Changes made while the history opens in the background; recorded once it has.
+    // Guards historyOpening too.
+    private final List<PendingChange> pendingHistory = new ArrayList<>();
+    private boolean historyOpening;
+    // No recording after a history error, or with -Dtracker.history=off
+    private volatile boolean historyOff = "off".equals(System.getProperty("tracker.history"));
+    // Expiry deadlines in <data file>.expiry; opened on first use
+    private ExpiryScheduler expiry;
+    // Matches scanned names to known ones spelled differently; built on the first scan
+    // merge, kept up to date by add(). Off with -Dtracker.resolve=off.
+    private EntityResolver resolver;
+    private final boolean resolveOff = "off".equals(System.getProperty("tracker.resolve"));
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Query indexes for the snapshot they were built from; brought up to date on the
+    // first query after the snapshot changes, which after a few edits only sorts in
+    // the changed rows
+    private volatile SoftwareIndex queryIndex;
+    private final Object queryIndexLock = new Object();
+
+    static final long SCAN_TIMEOUT_MINUTES = 5;
+    private static final int IMPORT_BATCH = 65536;
+    private final Thread shutdownHook = new Thread(this::close, "software-manager-close");
+
+    // Trailing company suffixes that don't make two products different
+    private static final Set<String> VENDOR_SUFFIXES = Set.of(
+        "inc", "inc.", "corp", "corp.", "corporation", "co", "co.",
+        "ltd", "ltd.", "llc", "gmbh", "ag", "s.a."
+    );
+
+    // The text data file, the binary one with -Dtracker.format=binary, or a SQL
+    // database with -Dtracker.jdbc=<url> (the driver has to be on the class path)
+    public SoftwareManager() {
+        this(defaultRepository(), new File(DATA_FILE));
+    }
+
+    public SoftwareManager(File dataFile) {
+        this(new TextSoftwareRepository(dataFile), dataFile);
+    }
+
+    public SoftwareManager(SoftwareRepository repository, File stateBase) {
+        this.repository = repository;
+        this.stateBase = stateBase;
+        loadData();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private static SoftwareRepository defaultRepository() {
+        String url = System.getProperty("tracker.jdbc");
+        if (url != null) {
+            // Never fall back to software_data.txt: edits would go to another store than asked for
+            try {
+                return new JdbcSoftwareRepository(url);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e.getMessage(), e);
+            }
+        }
+        return new TextSoftwareRepository(new File("binary".equals(System.getProperty("tracker.format")) ? BINARY_DATA_FILE : DATA_FILE));
+    }
+
+    public SoftwareRepository getRepository() {
+        return repository;
+    }
+
+    public synchronized void addSoftware(String name, String version, LocalDate date, Status status) {
+        Software s = new Software(name, version, date, status);
+        add(s);
+        repository.add(s);
+        recordHistory(null, s);
+        publish();
+        fireInserted(softwareList.size() - 1, softwareList.size() - 1);
+    }
+
+    public synchronized void removeSoftware(int index) {
+        if (index >= 0 && index < softwareList.size()) {
+            Software removed = softwareList.remove(index);
+            positions.remove(removed);
+            for (int i = index; i < softwareList.size(); i++) positions.put(softwareList.get(i), i);
+            unindex(removed);
+            repository.remove(index);
+            recordHistory(removed, null);
+            dropExpiry(removed);
+            publish();
+            for (Listener l : listeners) l.rowsRemoved(index, index);
+        }
+    }
+
+    public synchronized void updateSoftware(int index, String name, String version, LocalDate date, Status status) {
+        if (index >= 0 && index < softwareList.size()) {
+            replace(index, new Software(name, version, date, status));
+            publish();
+            for (Listener l : listeners) l.rowsUpdated(index, index);
+        }
+    }
+
+    public Software findByName(String name) {
+        return nameIndex.get(normalizeName(name));
+    }
+
+    // The record for this name, or failing that for a known name that EntityResolver
+    // takes for the same product, like "Foo x64 - 1.2" for "Foo (x64) - 1.2.3"
+    private Software findSameProduct(String name) {
+        Software existing = findByName(name);
+        if (existing != null || resolveOff) return existing;
+        if (resolver == null) {
+            try (Metrics.Span span = Metrics.RESOLVE.start("index")) {
+                resolver = new EntityResolver(EntityResolver.Rules.fromSystemProperties());
+                List<String> names = new ArrayList<>(Math.min(softwareList.size(), EntityResolver.MAX_NAMES));
+                for (Software s : softwareList) {
+                    if (names.size() == EntityResolver.MAX_NAMES) break;
+                    names.add(s.getName());
+                }
+                resolver.addAll(names);
+                span.setCount(names.size());
+                if (resolver.isFull()) Log.warn("resolve.full", "names", EntityResolver.MAX_NAMES);
+            }
+        }
+        String match = resolver.match(name);
+        // A removed record's name stays in the resolver and finds nothing here
+        return match == null ? null : findByName(match);
+    }
+
+    // Replaces the record with this name, or appends a new one.
+    // Returns true if a record was added.
+    public synchronized boolean upsert(String name, String version, LocalDate date, Status status) {
+        Software existing = findByName(name);
+        if (existing == null) {
+            addSoftware(name, version, date, status);
+            return true;
+        }
+        int index = positions.get(existing);
+        replace(index, new Software(existing.getName(), version, date, status));
+        publish();
+        for (Listener l : listeners) l.rowsUpdated(index, index);
+        return false;
+    }
+
+    public synchronized boolean removeByName(String name) {
+        Software existing = findByName(name);
+        if (existing == null) {
+            return false;
+        }
+        removeSoftware(positions.get(existing));
+        return true;
+    }
+
+    // Removes this record, taken from any snapshot; false if it has since been replaced
+    // or removed. Table rows may come from an older snapshot than the list's positions.
+    public synchronized boolean removeRecord(Software s) {
+        Integer index = positions.get(s);
+        if (index == null) {
+            return false;
+        }
+        removeSoftware(index);
+        return true;
+    }
+
+    // Replaces this record, taken from any snapshot; false if it has since been replaced
+    // or removed
+    public synchronized boolean updateRecord(Software s, String newName, String version, LocalDate date, Status status) {
+        Integer index = positions.get(s);
+        if (index == null) {
+            return false;
+        }
+        updateSoftware(index, newName, version, date, status);
+        return true;
+    }
+
+    // Replaces the record with this name, which may be renamed; false if there is none
+    public synchronized boolean updateByName(String name, String newName, String version, LocalDate date, Status status) {
+        Software existing = findByName(name);
+        if (existing == null) {
+            return false;
+        }
+        updateSoftware(positions.get(existing), newName, version, date, status);
+        return true;
+    }
+
+    // upsert for a batch of imported records, with one publish and one sync at the end;
+    // records equal to the stored one are skipped. Returns the number added.
+    public synchronized int upsertAll(List<Software> records) throws IOException {
+        Upsert upsert = new Upsert();
+        upsert.apply(records);
+        return upsert.finish();
+    }
+
+    // State of one upsert run, which may take its records in several batches
+    private final class Upsert {
+        final int first = softwareList.size();
+        final List<Integer> updated = new ArrayList<>();
+        // New records not yet handed to the repository; stored as one batch, and always
+        // before a replace, which may refer to one of them by position
+        int unstored = first;
+
+        void apply(List<Software> records) {
+            for (Software s : records) {
+                Software existing = findByName(s.getName());
+                if (existing == null) {
+                    add(s);
+                    recordHistory(null, s);
+                    continue;
+                }
+                if (existing.getVersion().equals(s.getVersion()) && existing.getEpochDay() == s.getEpochDay()
+                        && existing.getStatus() == s.getStatus()) {
+                    continue;
+                }
+                store();
+                int index = positions.get(existing);
+                replace(index, new Software(existing.getName(), s.getVersion(), s.getEpochDay(), s.getStatus()));
+                if (index < first) updated.add(index);
+            }
+            store();
+        }
+
+        void store() {
+            if (unstored < softwareList.size()) {
+                repository.addAll(softwareList.subList(unstored, softwareList.size()));
+                unstored = softwareList.size();
+            }
+        }
+
+        int finish() throws IOException {
+            repository.sync();
+            publish();
+            for (int index : updated) {
+                for (Listener l : listeners) l.rowsUpdated(index, index);
+            }
+            fireInserted(first, softwareList.size() - 1);
+            return softwareList.size() - first;
+        }
+    }
+
+    // Writes the current records to file, streaming; returns the number written
+    public int exportTo(File file, ExportFormat format) throws IOException {
+        List<Software> rows = snapshot;
+        try (SoftwareWriter writer = format.openWriter(new FileOutputStream(file))) {
+            for (Software s : rows) writer.write(s);
+        }
+        return rows.size();
+    }
+
+    // Upserts every record in the file, reading IMPORT_BATCH at a time, so only one
+    // batch is held besides the records themselves. Readers see the import as one
+    // change: it is published, and the repository checkpointed, once at the end.
+    // Returns the number added.
+    public synchronized int importFrom(File file, ExportFormat format) throws IOException {
+        Upsert upsert = new Upsert();
+        List<Software> batch = new ArrayList<>(IMPORT_BATCH);
+        try (SoftwareReader reader = format.openReader(new FileInputStream(file))) {
+            Software s;
+            while ((s = reader.read()) != null) {
+                batch.add(s);
+                if (batch.size() == IMPORT_BATCH) {
+                    upsert.apply(batch);
+                    batch.clear();
+                }
+            }
+            upsert.apply(batch);
+        } catch (IOException e) {
+            // What was read before the bad record stays imported
+            upsert.finish();
+            throw e;
+        }
+        return upsert.finish();
+    }
+
+    // Adds and stores scanned records whose name isn't known yet.
+    // Returns the number added.
+    synchronized int mergeScanned(List<Software> scanned) {
+        long start = System.nanoTime();
+        int first = softwareList.size();
+        for (Software s : scanned) {
+            if (EntityResolver.isJunk(s.getName())) continue;
+            if (findSameProduct(s.getName()) == null) {
+                add(s);
+                recordHistory(null, s);
+            }
+        }
+        Metrics.DEDUP.recordSince(start);
+        int count = softwareList.size() - first;
+        if (count > 0) {
+            repository.addAll(softwareList.subList(first, softwareList.size()));
+            publish();
+        }
+        fireInserted(first, softwareList.size() - 1);
+        return count;
+    }
+
+    private void add(Software s) {
+        softwareList.add(s);
+        positions.put(s, softwareList.size() - 1);
+        index(s);
+        addToResolver(s.getName());
+    }
+
+    // Checked before adding, as the list has already changed by now. Names past
+    // EntityResolver.MAX_NAMES are still found by exact name, just not by other spellings.
+    private void addToResolver(String name) {
+        if (resolver == null || resolver.isFull()) return;
+        resolver.add(name);
+        if (resolver.isFull()) Log.warn("resolve.full", "names", EntityResolver.MAX_NAMES);
+    }
+
+    // Swaps in a new record and stores it; the caller publishes
+    private void replace(int index, Software s) {
+        Software old = softwareList.set(index, s);
+        positions.remove(old);
+        positions.put(s, index);
+        unindex(old);
+        index(s);
+        if (!old.getName().equals(s.getName())) addToResolver(s.getName());
+        dropExpiry(old);
+        repository.replace(index, s);
+        recordHistory(old, s);
+    }
+
+    // Records a record added (before null), changed or removed (after null). A product
+    // is only removed from the history when no record with its name is left.
+    private void recordHistory(Software before, Software after) {
+        if (historyOff) return;
+        long now = System.currentTimeMillis();
+        if (after != null) writeHistory(new PendingChange(after, null, now));
+        if (before == null) return;
+        String key = normalizeName(before.getName());
+        if (after != null && normalizeName(after.getName()).equals(key)) return;
+        Software remaining = nameIndex.get(key);
+        writeHistory(remaining != null ? new PendingChange(remaining, null, now) : new PendingChange(null, before.getName(), now));
+    }
+
+    // A record's new state, or (software null) the removal of a product
+    private static final class PendingChange {
+        final Software software;
+        final String removedName;
+        final long time;
+
+        PendingChange(Software software, String removedName, long time) {
+            this.software = software;
+            this.removedName = removedName;
+            this.time = time;
+        }
+    }
+
+    private void writeHistory(PendingChange change) {
+        SoftwareHistory h = history;
+        if (h == null) {
+            synchronized (pendingHistory) {
+                h = history;
+                if (h == null && historyOpening) {
+                    pendingHistory.add(change);
+                    return;
+                }
+            }
+        }
+        if (h == null) {
+            try {
+                h = getHistory();
+            } catch (IOException | RuntimeException e) {
+                Log.error("history.openFailed", e);
+                historyOff = true;
+                return;
+            }
+        }
+        apply(h, change);
+    }
+
+    private void apply(SoftwareHistory h, PendingChange change) {
+        if (historyOff) return;
+        try {
+            if (change.software != null) h.record(change.software, change.time); else h.recordRemoved(change.removedName, change.time);
+        } catch (IOException | RuntimeException e) {
+            Log.error("history.writeFailed", e);
+            historyOff = true;
+        }
+    }
+
+    // Opens the history on a background thread, so the first change needn't wait for it;
+    // changes made meanwhile are recorded once it is open
+    public void openHistoryInBackground() {
+        synchronized (pendingHistory) {
+            if (history != null || historyOff || historyOpening) return;
+            historyOpening = true;
+        }
+        Thread t = new Thread(() -> {
+            try {
+                getHistory();
+            } catch (IOException | RuntimeException e) {
+                Log.error("history.openFailed", e);
+                historyOff = true;
+            } finally {
+                synchronized (pendingHistory) {
+                    historyOpening = false;
+                    pendingHistory.clear();
+                }
+            }
+        }, "history-open");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // The change history, opened on first use. A new history starts with the published
+    // records, each dated from its install day; changes made while it opened come after.
+    public SoftwareHistory getHistory() throws IOException {
+        SoftwareHistory h = history;
+        if (h != null) return h;
+        synchronized (historyLock) {
+            if (history != null) return history;
+            if (historyClosed) throw new IOException("History is closed");
+            SoftwareHistory opened = SoftwareHistory.open(new File(stateBase.getPath() + ".history"));
+            try {
+                if (opened.isEmpty()) {
+                    for (Software s : snapshot) {
+                        opened.record(s, LocalDate.ofEpochDay(s.getEpochDay()).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                opened.close();
+                throw e;
+            }
+            synchronized (pendingHistory) {
+                for (PendingChange change : pendingHistory) apply(opened, change);
+                pendingHistory.clear();
+                history = opened;
+            }
+            return opened;
+        }
+    }
+
+    // Expiry deadlines and their timers, opened on first use. Nothing expires until
+    // the scheduler runs: start() it, or runDue() for a one-off check.
+    public synchronized ExpiryScheduler getExpiryScheduler() throws IOException {
+        if (expiry == null) expiry = ExpiryScheduler.open(this, new File(stateBase.getPath() + ".expiry"));
+        return expiry;
+    }
+
+    // The record expires at the start of that day, local time; null clears
+    public void setExpiry(String name, LocalDate date) throws IOException {
+        getExpiryScheduler().setDeadline(name, date == null ? null : date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public LocalDate getExpiry(String name) throws IOException {
+        Instant deadline = getExpiryScheduler().getDeadline(name);
+        return deadline == null ? null : LocalDate.ofInstant(deadline, ZoneId.systemDefault());
+    }
+
+    // Marks the Trial or Installed record with each of these names Expired, as one
+    // batch with one save, and returns the new records; run by ExpiryScheduler
+    synchronized List<Software> expire(List<String> names) throws IOException {
+        List<Software> expired = new ArrayList<>();
+        List<Integer> updated = new ArrayList<>();
+        for (String name : names) {
+            Software s = findByName(name);
+            if (s == null || !ExpiryScheduler.canExpire(s.getStatus())) continue;
+            int index = positions.get(s);
+            Software replacement = s.withStatus(Status.EXPIRED);
+            replace(index, replacement);
+            expired.add(replacement);
+            updated.add(index);
+        }
+        // A retry after a failed save finds the records already changed in memory;
+        // they still have to be saved before the caller forgets their deadlines
+        if (expired.isEmpty()) {
+            repository.sync();
+            return List.of();
+        }
+        repository.sync();
+        publish();
+        for (int index : updated) {
+            for (Listener l : listeners) l.rowsUpdated(index, index);
+        }
+        return expired;
+    }
+
+    // Clears the deadline of a name no record has any more
+    private void dropExpiry(Software old) {
+        if (expiry == null || nameIndex.containsKey(normalizeName(old.getName()))) return;
+        try {
+            expiry.setDeadline(old.getName(), null);
+        } catch (IOException e) {
+            Log.error("expiry.writeFailed", e);
+        }
+    }
+
+    private void index(Software s) {
+        String key = normalizeName(s.getName());
+        nameCounts.merge(key, 1, Integer::sum);
+        nameIndex.putIfAbsent(key, s);
+    }
+
+    // Makes the writer's changes visible to readers in one step; called once per batch
+    private void publish() {
+        snapshot = softwareList.snapshot();
+        try {
+            repository.checkpoint(snapshot, false);
+        } catch (IOException e) {
+            Log.error("data.checkpointFailed", e);
+        }
+        try {
+            if (history != null) history.flush();
+        } catch (IOException e) {
+            Log.error("history.writeFailed", e);
+        }
+    }
+
+    // Drops the index entry for a record leaving the list, falling back to
+    // a remaining record with the same name if there is one
+    private void unindex(Software s) {
+        String key = normalizeName(s.getName());
+        if (nameCounts.merge(key, -1, Integer::sum) == 0) {
+            nameCounts.remove(key);
+            nameIndex.remove(key);
+            return;
+        }
+        if (nameIndex.get(key) != s) {
+            return;
+        }
+        nameIndex.remove(key);
+        for (Software other : softwareList) {
+            if (other != s && normalizeName(other.getName()).equals(key)) {
+                nameIndex.put(key, other);
+                break;
+            }
+        }
+    }
+
+    // Case-folds, collapses whitespace and drops trailing company suffixes,
+    // so "Proton  VPN" and "proton vpn" or "Foo Inc." and "Foo" share a key
+    public static String normalizeName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) sb.append(' ');
+                pendingSpace = false;
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+
+        // Strip trailing ", Inc." style suffixes
+        while (true) {
+            int end = sb.length();
+            while (end > 0 && sb.charAt(end - 1) == ',') end--;
+            int space = sb.lastIndexOf(" ", end - 1);
+            if (space < 0 || !VENDOR_SUFFIXES.contains(sb.substring(space + 1, end))) {
+                sb.setLength(end);
+                break;
+            }
+            sb.setLength(space);
+            while (sb.length() > 0 && sb.charAt(sb.length() - 1) == ',') sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireInserted(int first, int last) {
+        if (last < first) return;
+        for (Listener l : listeners) l.rowsInserted(first, last);
+    }
+
+    // Lock-free reads of the current snapshot. Callers that need several
+    // consistent reads should take getAllSoftware() once and use that.
+    public int size() {
+        return snapshot.size();
+    }
+
+    public Software get(int index) {
+        return snapshot.get(index);
+    }
+
+    // Position of this record, by identity, in the current snapshot; -1 if it isn't in it
+    public synchronized int indexOf(Software s) {
+        Integer index = positions.get(s);
+        return index == null ? -1 : index;
+    }
+
+    // Lets the registry scan run against captured "reg query" output
+    public void setScanSource(ScanSource scanSource) {
+        setSources(List.of(new WindowsRegistrySource(scanSource)));
+    }
+
+    public void setSources(List<SoftwareSource> sources) {
+        this.sources = List.copyOf(sources);
+        getScanCache().invalidate();
+    }
+
+    public List<SoftwareSource> getSources() {
+        List<SoftwareSource> current = sources;
+        if (current == null) {
+            current = List.copyOf(SoftwareSources.available());
+            sources = current;
+        }
+        return current;
+    }
+
+    // Immutable snapshot; it never changes, later edits publish a new one
+    public List<Software> getAllSoftware() {
+        return snapshot;
+    }
+
+    // Indexes over the current snapshot; the row numbers it returns refer to its getRows()
+    public SoftwareIndex getIndex() {
+        List<Software> current = snapshot;
+        SoftwareIndex index = queryIndex;
+        if (index != null && index.getRows() == current) return index;
+        synchronized (queryIndexLock) {
+            index = queryIndex;
+            if (index == null) {
+                index = SoftwareIndex.build(current);
+                queryIndex = index;
+            } else if (index.getRows() != current) {
+                index = index.update(current);
+                queryIndex = index;
+            }
+            return index;
+        }
+    }
+
+    // The indexes if they are already built for the current snapshot, else null
+    public SoftwareIndex getCurrentIndex() {
+        SoftwareIndex index = queryIndex;
+        return index != null && index.getRows() == snapshot ? index : null;
+    }
+
+    public List<Software> query(SoftwareQuery query) {
+        return getIndex().query(query);
+    }
+
+    public void scanSystemForSoftware() {
+        try {
+            List<String> names = new ArrayList<>();
+            for (SoftwareSource source : getSources()) names.add(source.getName());
+            Log.info("scan.start", "sources", String.join(",", names));
+
+            newScanPipeline().run(SCAN_TIMEOUT_MINUTES, TimeUnit.MINUTES, (done, total, seen, added) -> { });
+            saveData();
+
+            Log.info("scan.saved", "total", size());
+
+        } catch (Exception e) {
+            Log.error("scan.failed", e);
+        }
+    }
+
+    // Merges ConvertTo-Csv output of uninstall keys, read straight from the stream
+    int parsePowerShellOutput(InputStream in) throws IOException {
+        int[] count = new int[1];
+        List<Software> batch = new ArrayList<>();
+        WindowsRegistrySource.parsePowerShellCsv(new InputStreamReader(in), RegistryScanner.UNINSTALL_HIVES[0], entry -> {
+            if (!entry.isApplication()) return;
+            batch.add(entry.toSoftware());
+            if (batch.size() >= 64) {
+                count[0] += mergeScanned(batch);
+                batch.clear();
+            }
+        });
+        return count[0] + mergeScanned(batch);
+    }
+
+    // Rescans every source and applies only what changed since the last rescan
+    public ChangeSet scanForChanges() throws InterruptedException, IOException, TimeoutException {
+        return newScanPipeline().run(SCAN_TIMEOUT_MINUTES, TimeUnit.MINUTES, (done, total, seen, added) -> { });
+    }
+
+    // Diffs a completed scan against the saved scan state and applies the changes
+    synchronized ChangeSet finishScan(List<RegistryEntry> entries, Set<String> failedScopes) throws IOException {
+        try (Metrics.Span span = Metrics.DIFF.start()) {
+            span.setCount(entries.size());
+            File stateFile = new File(stateBase.getPath() + ".scanstate");
+            ScanState state = ScanState.load(stateFile);
+            ChangeSet changes = IncrementalScanner.diff(state, entries, failedScopes);
+            applyChanges(changes, state);
+            if (state.isModified()) state.save(stateFile);
+            return changes;
+        }
+    }
+
+    // Parsed results of recent scans, kept next to the data file
+    public synchronized ScanCache getScanCache() {
+        if (scanCache == null) scanCache = ScanCache.load(new File(stateBase.getPath() + ".scancache"));
+        return scanCache;
+    }
+
+    public ScanPipeline newScanPipeline() {
+        return new ScanPipeline(this, getSources(), getScanCache());
+    }
+
+    // Applies a change set as one batch. Removed software is kept and marked
+    // "Not Installed"; a reinstall or upgrade marks it installed again.
+    public void applyChanges(ChangeSet changes) throws IOException {
+        applyChanges(changes, null);
+    }
+
+    // With a scan state, scanned names merged into a record spelled differently are
+    // noted in it, and a removal of such a name marks that record
+    synchronized void applyChanges(ChangeSet changes, ScanState state) throws IOException {
+        int first = softwareList.size();
+        List<Integer> updated = new ArrayList<>();
+        for (ChangeSet.Change change : changes.getChanges()) {
+            Software scanned = change.getSoftware();
+            if (change.getType() != ChangeSet.Type.REMOVED && EntityResolver.isJunk(scanned.getName())) continue;
+            // Removals match exactly, or through the record the name was merged into, so
+            // one spelling going away can't mark another's record
+            Software existing;
+            if (change.getType() == ChangeSet.Type.REMOVED) {
+                existing = findByName(state != null ? state.recordFor(scanned.getName()) : scanned.getName());
+            } else {
+                existing = findSameProduct(scanned.getName());
+                if (existing != null && state != null) state.setRecord(scanned.getName(), existing.getName());
+            }
+
+            if (change.getType() == ChangeSet.Type.REMOVED) {
+                if (existing != null && existing.getStatus() != Status.NOT_INSTALLED) {
+                    int index = positions.get(existing);
+                    replace(index, existing.withStatus(Status.NOT_INSTALLED));
+                    updated.add(index);
+                }
+            } else if (existing == null) {
+                add(scanned);
+                repository.add(scanned);
+                recordHistory(null, scanned);
+            } else if (!existing.getVersion().equals(scanned.getVersion()) || existing.getStatus() == Status.NOT_INSTALLED) {
+                Status status = existing.getStatus() == Status.NOT_INSTALLED ? Status.INSTALLED : existing.getStatus();
+                int index = positions.get(existing);
+                replace(index, new Software(existing.getName(), scanned.getVersion(), scanned.getInstallationDate(), status));
+                updated.add(index);
+            }
+        }
+        repository.sync();
+        publish();
+        for (int index : updated) {
+            for (Listener l : listeners) l.rowsUpdated(index, index);
+        }
+        fireInserted(first, softwareList.size() - 1);
+    }
+
+    public int getDetectedSoftwareCount() {
+        return snapshot.size();
+    }
+
+    // Writes a full snapshot now and waits for it; used after scans that add many rows at once
+    synchronized void saveData() throws IOException {
+        repository.checkpoint(snapshot, true);
+        if (history != null) history.sync();
+    }
+
+    // Flushes pending writes and closes the repository
+    public synchronized void close() {
+        try {
+            repository.close();
+        } catch (IOException e) {
+            Log.error("data.closeFailed", e);
+        }
+        synchronized (historyLock) {
+            historyClosed = true;
+            try {
+                if (history != null) history.close();
+            } catch (IOException e) {
+                Log.error("history.closeFailed", e);
+            }
+        }
+        try {
+            if (expiry != null) expiry.close();
+        } catch (IOException e) {
+            Log.error("expiry.closeFailed", e);
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; this is the hook running
+        }
+    }
+
+    // A store that can't be read fails the start, rather than showing an empty or partial
+    // inventory whose next save would overwrite it
+    private void loadData() {
+        try (Metrics.Span span = Metrics.LOAD.start()) {
+            for (Software s : repository.load()) {
+                add(s);
+            }
+            span.setCount(softwareList.size());
+        } catch (IOException e) {
+            Log.error("data.loadFailed", e);
+            throw new UncheckedIOException(e);
+        }
+        snapshot = softwareList.snapshot();
+        Log.debug("data.loaded", "rows", softwareList.size());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+// Filter, sort and limit for SoftwareIndex.select. Every condition is optional and
+// they are combined with AND:
+//
+//   SoftwareQuery.all().nameContains("java").status(Status.INSTALLED)
+//       .installedBetween(from, to).sortBy(SoftwareQuery.Sort.DATE, true).limit(50)
+//
+// Name matching ignores case. product() matches VersionIndex.productKey, so
+// product("Git").versionBelow("2.45") finds every Git older than 2.45. Dates are
+// inclusive; versionBelow is exclusive so that versionAtLeast("2").versionBelow("3")
+// selects the 2.x line. Versions compare as Version does.
+public final class SoftwareQuery {
+
+    // Sort keys, in table column order
+    public enum Sort {
+        NAME(Comparator.comparing(Software::getName, String.CASE_INSENSITIVE_ORDER)),
+        VERSION(Comparator.comparing(Software::getParsedVersion)),
+        DATE(Comparator.comparingInt(Software::getEpochDay)),
+        STATUS(Comparator.comparing(Software::getStatus));
+
+        private final Comparator<Software> comparator;
+
+        Sort(Comparator<Software> comparator) {
+            this.comparator = comparator;
+        }
+
+        // The order select() produces, for callers that place single rows themselves
+        public Comparator<Software> comparator() {
+            return comparator;
+        }
+    }
+
+    String namePrefix;
+    String nameContains;
+    String product;
+    EnumSet<Status> statuses;
+    int fromDay = Integer.MIN_VALUE;
+    int toDay = Integer.MAX_VALUE;
+    Version minVersion;
+    Version maxVersion;
+    Sort sort;
+    boolean descending;
+    int limit = Integer.MAX_VALUE;
+
+    public static SoftwareQuery all() {
+        return new SoftwareQuery();
+    }
+
+    public SoftwareQuery copy() {
+        SoftwareQuery q = new SoftwareQuery();
+        q.namePrefix = namePrefix;
+        q.nameContains = nameContains;
+        q.product = product;
+        q.statuses = statuses == null ? null : EnumSet.copyOf(statuses);
+        q.fromDay = fromDay;
+        q.toDay = toDay;
+        q.minVersion = minVersion;
+        q.maxVersion = maxVersion;
+        q.sort = sort;
+        q.descending = descending;
+        q.limit = limit;
+        return q;
+    }
+
+    public SoftwareQuery nameStartsWith(String prefix) {
+        namePrefix = prefix == null || prefix.isEmpty() ? null : prefix;
+        return this;
+    }
+
+    public SoftwareQuery nameContains(String text) {
+        nameContains = text == null || text.isEmpty() ? null : text;
+        return this;
+    }
+
+    // Every record of one product, whatever its edition or architecture
+    public SoftwareQuery product(String name) {
+        product = name == null || name.isEmpty() ? null : VersionIndex.productKey(name);
+        return this;
+    }
+
+    // Any of the given statuses; call with none to clear
+    public SoftwareQuery status(Status... allowed) {
+        statuses = allowed.length == 0 ? null : EnumSet.of(allowed[0], allowed);
+        return this;
+    }
+
+    public SoftwareQuery installedBetween(LocalDate from, LocalDate to) {
+        fromDay = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+        toDay = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+        return this;
+    }
+
+    public SoftwareQuery versionAtLeast(String version) {
+        minVersion = version == null ? null : Version.of(version);
+        return this;
+    }
+
+    public SoftwareQuery versionBelow(String version) {
+        maxVersion = version == null ? null : Version.of(version);
+        return this;
+    }
+
+    public SoftwareQuery sortBy(Sort sort, boolean descending) {
+        this.sort = sort;
+        this.descending = descending;
+        return this;
+    }
+
+    public SoftwareQuery limit(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit < 0: " + limit);
+        this.limit = limit;
+        return this;
+    }
+
+    // True if the record passes every condition; sort and limit don't apply
+    public boolean matches(Software s) {
+        String name = s.getName();
+        if (namePrefix != null && !name.regionMatches(true, 0, namePrefix, 0, namePrefix.length())) return false;
+        if (nameContains != null && !containsIgnoreCase(name, nameContains)) return false;
+        if (product != null && !product.equals(VersionIndex.productKey(name))) return false;
+        if (statuses != null && !statuses.contains(s.getStatus())) return false;
+        int day = s.getEpochDay();
+        if (day < fromDay || day > toDay) return false;
+        if (minVersion != null && s.getParsedVersion().compareTo(minVersion) < 0) return false;
+        if (maxVersion != null && s.getParsedVersion().compareTo(maxVersion) >= 0) return false;
+        return true;
+    }
+
+    // The matching records of rows, in the order and number SoftwareIndex.select() gives,
+    // found by one pass over them: for a single query, where building an index costs more
+    public List<Software> filter(List<Software> rows) {
+        List<Software> result = new ArrayList<>();
+        for (Software s : rows) {
+            if (matches(s)) result.add(s);
+        }
+        // A stable sort keeps equal keys in row order, as the index does
+        if (sort != null) result.sort(sort.comparator());
+        if (descending && sort != null) Collections.reverse(result);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    static boolean containsIgnoreCase(String text, String part) {
+        for (int i = 0; i + part.length() <= text.length(); i++) {
+            if (text.regionMatches(true, i, part, 0, part.length())) return true;
+        }
+        return false;
+    }
+}
\ No newline at end of file
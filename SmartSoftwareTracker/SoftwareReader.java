@@ -0,0 +1,8 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+// Streams records in from an export file, one at a time
+public interface SoftwareReader extends Closeable {
+    // The next record, or null at the end of the file
+    Software read() throws IOException;
+}
\ No newline at end of file
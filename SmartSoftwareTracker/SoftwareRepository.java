@@ -0,0 +1,32 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+// Where the manager's records are stored. The manager keeps every record in memory
+// and tells the repository about each edit, by position in its list; the repository
+// only has to make them durable and hand them back in order on the next start.
+//   TextSoftwareRepository  software_data.txt (or .bin) plus an edit journal
+//   JdbcSoftwareRepository  a table in an embedded SQL database (H2, SQLite)
+// Writes may be buffered until sync(), or until the repository decides to flush.
+public interface SoftwareRepository extends Closeable {
+    // Every stored record, in order; called once, before any write
+    List<Software> load() throws IOException;
+
+    void add(Software s);
+
+    // A batch of scan results, written in one go
+    void addAll(List<Software> batch);
+
+    void replace(int index, Software s);
+
+    void remove(int index);
+
+    // Makes every write so far durable
+    void sync() throws IOException;
+
+    // Called with the current records after each batch of edits, so the repository
+    // can compact; force asks for everything to be written out now
+    default void checkpoint(List<Software> rows, boolean force) throws IOException {
+        if (force) sync();
+    }
+}
\ No newline at end of file
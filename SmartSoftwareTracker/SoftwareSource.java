@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// A place installed software is listed: the Windows uninstall hives, the dpkg
+// status file, the snap and flatpak install trees. Implementations are found with
+// ServiceLoader (META-INF/services/SoftwareSource) and need a public no-arg constructor.
+//
+// A source is split into scopes that are read independently and at the same time,
+// e.g. one per hive. Every entry's key path must start with "<scope>\", so a scope
+// that fails to read keeps its previous entries instead of reporting them removed.
+public interface SoftwareSource {
+    String getName();
+
+    // False when this machine doesn't have it, e.g. no dpkg status file
+    boolean isAvailable();
+
+    List<String> getScopes();
+
+    // Streams the scope's entries to sink. Throws if the scope can't be read.
+    void scan(String scope, Consumer<RegistryEntry> sink) throws IOException;
+
+    // Cheap to get and different whenever the scope's entries may have changed, e.g.
+    // the size and modification time of the file it reads; null if there is no such
+    // thing, and cached results then only last for the cache's TTL (see ScanCache)
+    default String changeToken(String scope) {
+        return null;
+    }
+
+    // Called from another thread to make running scans return early
+    default void cancel() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Finds the software sources. The file-based ones read paths under -Dtracker.root
+// (default "/"), so pointing it at fixtures/linux scans the captured trees offline.
+public final class SoftwareSources {
+    private SoftwareSources() {
+    }
+
+    public static Path root() {
+        return Paths.get(System.getProperty("tracker.root", "/"));
+    }
+
+    // Every registered source, or the built-in ones when the services file isn't on the class path
+    public static List<SoftwareSource> all() {
+        List<SoftwareSource> sources = new ArrayList<>();
+        for (SoftwareSource source : ServiceLoader.load(SoftwareSource.class)) {
+            sources.add(source);
+        }
+        if (sources.isEmpty()) {
+            sources.add(new WindowsRegistrySource());
+            sources.add(new DpkgSource());
+            sources.add(new SnapSource());
+            sources.add(new FlatpakSource());
+        }
+        return sources;
+    }
+
+    public static List<SoftwareSource> available() {
+        List<SoftwareSource> available = new ArrayList<>();
+        for (SoftwareSource source : all()) {
+            if (source.isAvailable()) available.add(source);
+        }
+        return available;
+    }
+
+    // Size and modification time of a file, or null if it can't be read
+    public static String fileToken(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Hash of the names and modification times of the directories up to depth levels
+    // below the root; adding, removing or relinking anything in them changes it
+    public static String treeToken(Path root, int depth) {
+        try (Stream<Path> paths = Files.walk(root, depth)) {
+            long sum = 0;
+            int count = 0;
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) continue;
+                String entry = root.relativize(path) + "@" + Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis();
+                // Summed, so the order directories are listed in doesn't matter
+                long hash = 0xcbf29ce484222325L;
+                for (int i = 0; i < entry.length(); i++) {
+                    hash = (hash ^ entry.charAt(i)) * 0x100000001b3L;
+                }
+                sum += hash;
+                count++;
+            }
+            return count + ":" + Long.toHexString(sum);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Lists what each available source finds, e.g. offline against the fixtures:
+    //   java -Dtracker.root=fixtures/linux -Dtracker.registry=fixtures/registry SoftwareSources
+    public static void main(String[] args) throws Exception {
+        for (SoftwareSource source : available()) {
+            for (String scope : source.getScopes()) {
+                AtomicInteger count = new AtomicInteger();
+                System.out.println(source.getName() + " " + scope);
+                source.scan(scope, entry -> {
+                    if (!entry.isApplication()) return;
+                    count.incrementAndGet();
+                    System.out.println("  " + entry.toSoftware());
+                });
+                System.out.println("  " + count + " applications");
+            }
+        }
+    }
+}
\ No newline at end of file
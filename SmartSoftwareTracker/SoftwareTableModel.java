@@ -0,0 +1,271 @@
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+// Table model that reads rows straight from the manager's immutable snapshot instead
+// of copying them. Sorting and filtering go through an index of model rows
+// (view -> model), built by a SoftwareQuery against the manager's query indexes;
+// with neither active the index is dropped and rows map one to one.
+//
+// The query indexes take seconds to build for a million rows, so on the EDT they are
+// built on a background thread, one build at a time, while the table keeps showing
+// the rows it has; the new rows are swapped in when the build is done.
+public class SoftwareTableModel extends AbstractTableModel implements SoftwareManager.Listener {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"Name", "Version", "Installation Date", "Status"};
+    private static final ExecutorService INDEXER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "table-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final SoftwareManager manager;
+    // Snapshot the table currently shows; replaced on every change
+    private List<Software> rows;
+    // Search conditions from the UI, or null; filter is its matches() for single rows
+    private SoftwareQuery query;
+    private Predicate<Software> filter;
+    private Comparator<Software> comparator;
+    private int sortColumn = -1;
+    private boolean ascending = true;
+
+    // View row -> manager index; null when there is no filter or sort
+    private int[] view;
+    private int viewSize;
+    // An index build is running for this model; EDT only
+    private boolean building;
+    // A refresh for changes made off the EDT is already queued
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    public SoftwareTableModel(SoftwareManager manager) {
+        this.manager = manager;
+        this.rows = manager.getAllSoftware();
+        manager.addListener(this);
+    }
+
+    @Override
+    public int getRowCount() {
+        return view == null ? rows.size() : viewSize;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return value(getSoftware(row), column);
+    }
+
+    private static Object value(Software s, int column) {
+        switch (column) {
+            case 0: return s.getName();
+            case 1: return s.getVersion();
+            case 2: return s.getInstallationDate();
+            default: return s.getStatus();
+        }
+    }
+
+    // Manager index of a table row in the snapshot the table shows, which may be behind
+    // the manager's list; use getSoftware() to act on the row
+    public int modelIndex(int viewRow) {
+        return view == null ? viewRow : view[viewRow];
+    }
+
+    // The record a table row shows
+    public Software getSoftware(int viewRow) {
+        return rows.get(modelIndex(viewRow));
+    }
+
+    // Shows only rows matching the query's conditions; its sort and limit are ignored,
+    // the table's own column sort applies. Null shows everything.
+    public void setQuery(SoftwareQuery query) {
+        this.query = query == null ? null : query.copy().sortBy(null, false).limit(Integer.MAX_VALUE);
+        this.filter = this.query == null ? null : this.query::matches;
+        refresh();
+    }
+
+    // Sorts by the column, reversing the order when it is already sorted by it
+    public void sortBy(int column) {
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+        Comparator<Software> byColumn = SoftwareQuery.Sort.values()[column].comparator();
+        comparator = ascending ? byColumn : byColumn.reversed();
+        refresh();
+    }
+
+    // Takes the latest snapshot and repaints the whole table. With a filter or sort and
+    // no index for that snapshot yet, the EDT only starts a build; other threads wait
+    // for it.
+    public void refresh() {
+        if (query == null && comparator == null) {
+            long start = System.nanoTime();
+            rows = manager.getAllSoftware();
+            view = null;
+            fireTableDataChanged();
+            Metrics.TABLE_REFRESH.recordSince(start);
+            return;
+        }
+        SoftwareIndex index = manager.getCurrentIndex();
+        if (index == null) {
+            if (SwingUtilities.isEventDispatchThread()) {
+                buildIndex();
+                return;
+            }
+            index = manager.getIndex();
+        }
+        show(index);
+    }
+
+    private void show(SoftwareIndex index) {
+        long start = System.nanoTime();
+        SoftwareQuery q = query == null ? SoftwareQuery.all() : query.copy();
+        if (sortColumn >= 0) q.sortBy(SoftwareQuery.Sort.values()[sortColumn], !ascending);
+        rows = index.getRows();
+        view = index.select(q);
+        viewSize = view.length;
+        fireTableDataChanged();
+        Metrics.TABLE_REFRESH.recordSince(start);
+    }
+
+    // Refresh calls made while a build runs are folded into one more build, started
+    // when it is done if the snapshot has moved on by then
+    private void buildIndex() {
+        if (building) return;
+        building = true;
+        INDEXER.execute(() -> {
+            SoftwareIndex index;
+            try {
+                index = manager.getIndex();
+            } catch (RuntimeException e) {
+                Log.error("table.indexFailed", e);
+                SwingUtilities.invokeLater(() -> building = false);
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                building = false;
+                if (query == null && comparator == null) {
+                    refresh();
+                    return;
+                }
+                // Rows and view come from the same index, so even a stale one is consistent
+                show(index);
+                if (index.getRows() != manager.getAllSoftware()) buildIndex();
+            });
+        });
+    }
+
+    // Manager callbacks. Changes made off the EDT (scans) are coalesced into a refresh,
+    // as is any change whose snapshot doesn't line up with the one shown.
+
+    // Takes the manager's snapshot if it is the expected size after the change
+    private boolean advance(int expectedSize) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            // One refresh at a time in the event queue, however many batches arrive
+            if (refreshQueued.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(() -> {
+                    refreshQueued.set(false);
+                    refresh();
+                });
+            }
+            return false;
+        }
+        List<Software> latest = manager.getAllSoftware();
+        if (latest.size() != expectedSize) {
+            refresh();
+            return false;
+        }
+        rows = latest;
+        return true;
+    }
+
+    @Override
+    public void rowsInserted(int first, int last) {
+        if (!advance(rows.size() + last - first + 1)) return;
+        if (view == null) {
+            fireTableRowsInserted(first, last);
+            return;
+        }
+        shiftView(first, last - first + 1);
+        for (int i = first; i <= last; i++) {
+            insertIntoView(i);
+        }
+    }
+
+    @Override
+    public void rowsUpdated(int first, int last) {
+        if (!advance(rows.size())) return;
+        if (view == null) {
+            fireTableRowsUpdated(first, last);
+            return;
+        }
+        for (int i = first; i <= last; i++) {
+            removeFromView(i);
+            insertIntoView(i);
+        }
+    }
+
+    @Override
+    public void rowsRemoved(int first, int last) {
+        if (!advance(rows.size() - (last - first + 1))) return;
+        if (view == null) {
+            fireTableRowsDeleted(first, last);
+            return;
+        }
+        for (int i = first; i <= last; i++) {
+            removeFromView(i);
+        }
+        shiftView(last + 1, first - last - 1);
+    }
+
+    // Adds delta to every index at or after from
+    private void shiftView(int from, int delta) {
+        for (int i = 0; i < viewSize; i++) {
+            if (view[i] >= from) view[i] += delta;
+        }
+    }
+
+    private void insertIntoView(int modelRow) {
+        Software s = rows.get(modelRow);
+        if (filter != null && !filter.test(s)) return;
+
+        int pos = viewSize;
+        if (comparator != null) {
+            int low = 0;
+            int high = viewSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(rows.get(view[mid]), s) <= 0) low = mid + 1; else high = mid;
+            }
+            pos = low;
+        }
+        if (viewSize == view.length) view = Arrays.copyOf(view, Math.max(16, viewSize * 2));
+        System.arraycopy(view, pos, view, pos + 1, viewSize - pos);
+        view[pos] = modelRow;
+        viewSize++;
+        fireTableRowsInserted(pos, pos);
+    }
+
+    private void removeFromView(int modelRow) {
+        for (int pos = 0; pos < viewSize; pos++) {
+            if (view[pos] == modelRow) {
+                System.arraycopy(view, pos + 1, view, pos, viewSize - pos - 1);
+                viewSize--;
+                fireTableRowsDeleted(pos, pos);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+// Streams records out to an export file, one at a time; close() finishes the file
+public interface SoftwareWriter extends Closeable {
+    void write(Software s) throws IOException;
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+// Install status of a record. The labels are what the data file and the UI show.
+public enum Status {
+    INSTALLED("Installed"),
+    TRIAL("Trial"),
+    EXPIRED("Expired"),
+    NOT_INSTALLED("Not Installed");
+
+    private final String label;
+
+    Status(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public static Status fromLabel(CharSequence label) {
+        for (Status status : values()) {
+            if (status.label.contentEquals(label)) return status;
+        }
+        String text = label.toString().trim();
+        for (Status status : values()) {
+            if (status.label.equalsIgnoreCase(text)) return status;
+        }
+        throw new IllegalArgumentException("Unknown status: " + label);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
\ No newline at end of file
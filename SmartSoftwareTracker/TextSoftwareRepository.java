@@ -0,0 +1,289 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// The data file (text, or BinarySnapshot when it ends in .bin) plus a journal of the
+// edits made since it was written. Single edits are appended to the journal; the data
+// file is only rewritten by compaction, once the journal passes COMPACT_THRESHOLD bytes.
+// Both are UTF-8. After a failed journal write or snapshot, sync() throws and the next
+// checkpoint writes the manager's records out as a new snapshot instead.
+public class TextSoftwareRepository implements SoftwareRepository {
+    private static final long COMPACT_THRESHOLD = 1024 * 1024;
+
+    private final File dataFile;
+    private final File journalFile;
+    private final File oldJournalFile;
+    private SoftwareJournal journal;
+    private long generation;
+    private Future<?> pendingCompaction;
+    // A snapshot written in the background that failed; its .journal.old must be kept
+    // until a snapshot succeeds
+    private volatile IOException failure;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "snapshot-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TextSoftwareRepository(File dataFile) {
+        this.dataFile = dataFile;
+        this.journalFile = new File(dataFile.getPath() + ".journal");
+        this.oldJournalFile = new File(dataFile.getPath() + ".journal.old");
+    }
+
+    public File getDataFile() {
+        return dataFile;
+    }
+
+    // Loads the snapshot, then replays the journals on top of it. A leftover
+    // .journal.old means a compaction was interrupted; it is replayed only if
+    // the snapshot predates it. A row that can't be read fails the load.
+    @Override
+    public synchronized List<Software> load() throws IOException {
+        List<Software> rows = new ArrayList<>();
+        generation = readSnapshot(rows);
+        SoftwareJournal.Target target = target(rows);
+
+        boolean recovered = false;
+        if (SoftwareJournal.readGeneration(oldJournalFile) == generation) {
+            SoftwareJournal.replay(oldJournalFile, target);
+            generation++;
+            recovered = true;
+        } else {
+            oldJournalFile.delete();
+        }
+
+        if (SoftwareJournal.readGeneration(journalFile) == generation) {
+            long length = SoftwareJournal.replay(journalFile, target);
+            journal = SoftwareJournal.open(journalFile, generation, length);
+        } else {
+            journal = SoftwareJournal.create(journalFile, generation);
+        }
+
+        if (recovered) {
+            compact(List.copyOf(rows), true);
+        }
+        return rows;
+    }
+
+    // The records as load() would return them, without touching any file: for reading
+    // an inventory that belongs to someone else, like the inputs of a diff
+    public List<Software> read() throws IOException {
+        List<Software> rows = new ArrayList<>();
+        long at = readSnapshot(rows);
+        SoftwareJournal.Target target = target(rows);
+        if (SoftwareJournal.readGeneration(oldJournalFile) == at) {
+            SoftwareJournal.replay(oldJournalFile, target);
+            at++;
+        }
+        if (SoftwareJournal.readGeneration(journalFile) == at) {
+            SoftwareJournal.replay(journalFile, target);
+        }
+        return rows;
+    }
+
+    // Adds the data file's records to rows; returns the generation it was written for
+    private long readSnapshot(List<Software> rows) throws IOException {
+        long generation = 0;
+        if (BinarySnapshot.isBinary(dataFile)) {
+            BinarySnapshot binary = BinarySnapshot.read(dataFile);
+            generation = binary.getGeneration();
+            for (int i = 0; i < binary.size(); i++) {
+                rows.add(binary.get(i));
+            }
+        } else if (dataFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), StandardCharsets.UTF_8))) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    line = line.trim();
+                    try {
+                        if (line.startsWith(SoftwareJournal.GENERATION_PREFIX)) {
+                            generation = Long.parseLong(line.substring(SoftwareJournal.GENERATION_PREFIX.length()).trim());
+                        } else if (!line.isEmpty()) {
+                            rows.add(Software.fromString(line));
+                        }
+                    } catch (RuntimeException e) {
+                        throw new IOException(dataFile + ": line " + lineNumber + ": can't read \"" + line + "\": " + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+        return generation;
+    }
+
+    private static SoftwareJournal.Target target(List<Software> rows) {
+        return new SoftwareJournal.Target() {
+            public void add(Software s) { rows.add(s); }
+            public void replace(int index, Software s) { rows.set(index, s); }
+            public void remove(int index) { rows.remove(index); }
+        };
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public synchronized void add(Software s) {
+        journal.appendAdd(s);
+    }
+
+    @Override
+    public synchronized void addAll(List<Software> batch) {
+        journal.appendAdds(batch);
+    }
+
+    @Override
+    public synchronized void replace(int index, Software s) {
+        journal.appendReplace(index, s);
+    }
+
+    @Override
+    public synchronized void remove(int index) {
+        journal.appendRemove(index);
+    }
+
+    @Override
+    public synchronized void sync() throws IOException {
+        journal.sync();
+    }
+
+    // Compacts once the journal is big enough, or now and waiting for it when forced.
+    // After a failure the records are written out now, in place of the journal.
+    @Override
+    public synchronized void checkpoint(List<Software> rows, boolean force) throws IOException {
+        if (journal.isFailed() || failure != null) {
+            awaitCompaction();
+            rewrite(rows);
+        } else if (force) {
+            compact(rows, true);
+            IOException e = failure;
+            if (e != null) throw new IOException("Cannot write " + dataFile + ": " + e.getMessage(), e);
+        } else if (journal.size() >= COMPACT_THRESHOLD && (pendingCompaction == null || pendingCompaction.isDone())) {
+            compact(rows, false);
+        }
+    }
+
+    // Flushes the journal and lets a running compaction finish
+    @Override
+    public synchronized void close() throws IOException {
+        awaitCompaction();
+        compactor.shutdown();
+        if (journal != null) journal.close();
+    }
+
+    // Rotates the journal and writes a new snapshot generation in the background.
+    // The snapshot covers everything up to the rotation; edits made while it is
+    // written go to the new journal, which is tagged with the new generation.
+    private void compact(List<Software> rows, boolean wait) throws IOException {
+        awaitCompaction();
+        if (failure != null) {
+            rewrite(rows);
+            return;
+        }
+        long nextGeneration = generation + 1;
+        journal.close();
+        try {
+            Files.move(journalFile.toPath(), oldJournalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            journal = SoftwareJournal.open(journalFile, generation, journalFile.length());
+            throw e;
+        }
+        try {
+            journal = SoftwareJournal.create(journalFile, nextGeneration);
+        } catch (IOException e) {
+            // Appends fail on the closed journal until a rewrite replaces it
+            failure = e;
+            throw e;
+        }
+        generation = nextGeneration;
+
+        pendingCompaction = compactor.submit(() -> {
+            try {
+                writeSnapshot(rows, nextGeneration);
+                oldJournalFile.delete();
+            } catch (IOException e) {
+                failure = e;
+                Log.error("data.saveFailed", e, "file", dataFile);
+            }
+        });
+        if (wait) awaitCompaction();
+    }
+
+    // Writes the records as a new snapshot generation and starts an empty journal for
+    // it; the old journals are only dropped once the snapshot is in place
+    private void rewrite(List<Software> rows) throws IOException {
+        long nextGeneration = generation + 1;
+        writeSnapshot(rows, nextGeneration);
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // The snapshot has every record the journal had
+        }
+        generation = nextGeneration;
+        oldJournalFile.delete();
+        try {
+            journal = SoftwareJournal.create(journalFile, nextGeneration);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        failure = null;
+        Log.info("data.rewritten", "file", dataFile, "rows", rows.size());
+    }
+
+    private void awaitCompaction() {
+        if (pendingCompaction == null) return;
+        try {
+            pendingCompaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.error("data.saveFailed", e.getCause(), "file", dataFile);
+        }
+    }
+
+    // Temp file plus rename, so a crash mid-write never leaves a half-written data file
+    private void writeSnapshot(List<Software> rows, long snapshotGeneration) throws IOException {
+        try (Metrics.Span span = Metrics.SAVE.start(dataFile.getName())) {
+            span.setCount(rows.size());
+            writeSnapshotFile(rows, snapshotGeneration);
+        }
+    }
+
+    private void writeSnapshotFile(List<Software> rows, long snapshotGeneration) throws IOException {
+        File temp = new File(dataFile.getPath() + ".tmp");
+        if (dataFile.getName().endsWith(".bin")) {
+            BinarySnapshot.write(rows, snapshotGeneration, temp);
+        } else {
+            try (FileOutputStream out = new FileOutputStream(temp);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                writer.write(SoftwareJournal.GENERATION_PREFIX + snapshotGeneration);
+                writer.newLine();
+                StringBuilder line = new StringBuilder(128);
+                for (Software s : rows) {
+                    line.setLength(0);
+                    SoftwareCodec.encode(s, line);
+                    writer.append(line);
+                    writer.newLine();
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+        }
+        try {
+            Files.move(temp.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,217 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Hierarchical timer wheel (Varghese and Lauck) of int payloads with millisecond
+// deadlines. Level 0 has a slot per tick, level 1 a slot per 64 ticks, and so on for
+// LEVELS levels; a timer goes in the level whose slot width fits its distance from the
+// current tick, and moves down a level each time the wheel below completes a turn.
+// Scheduling and cancelling are O(1), and advancing costs a few bitmap tests per
+// empty stretch of 64 ticks plus the work for the timers that move or fire, so nothing
+// ever walks all the timers. Timers further out than the top level reaches (2,000
+// years at one-second ticks) wait in its last slot and are placed again from there.
+//
+// Timers live in parallel arrays, linked into their slot both ways; a handle is an
+// index into them and is reused once its timer fires or is cancelled. Not thread-safe.
+public class TimerWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 6;
+    private static final int NONE = -1;
+
+    private final long tickMillis;
+    // The last tick advanced to; timers due at or before it have fired
+    private long currentTick;
+    // Per level and slot, the first timer in it or NONE
+    private final int[] heads = new int[LEVELS * SLOTS];
+    // Per level, a bit per slot that has timers
+    private final long[] occupied = new long[LEVELS];
+
+    private long[] deadlines = new long[64];
+    private int[] payloads = new int[64];
+    private int[] next = new int[64];
+    private int[] previous = new int[64];
+    // Level * SLOTS + slot of each scheduled timer, NONE for a free handle
+    private int[] slots = new int[64];
+    private int capacity;
+    // Free handles, chained through next
+    private int free = NONE;
+    private int size;
+
+    // The tick nowMillis falls in is still to come, so timers due by then fire on the
+    // first advance
+    public TimerWheel(long tickMillis, long nowMillis) {
+        if (tickMillis < 1) throw new IllegalArgumentException("tickMillis < 1: " + tickMillis);
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis) - 1;
+        Arrays.fill(heads, NONE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns a handle for cancel(). A deadline already passed fires on the next advance.
+    public int schedule(long deadlineMillis, int payload) {
+        int handle = allocate();
+        deadlines[handle] = deadlineMillis;
+        payloads[handle] = payload;
+        place(handle, currentTick + 1);
+        size++;
+        return handle;
+    }
+
+    public boolean isScheduled(int handle) {
+        return handle >= 0 && handle < capacity && slots[handle] != NONE;
+    }
+
+    public long deadline(int handle) {
+        return deadlines[handle];
+    }
+
+    public int payload(int handle) {
+        return payloads[handle];
+    }
+
+    // Returns false if the timer already fired or was cancelled
+    public boolean cancel(int handle) {
+        if (!isScheduled(handle)) return false;
+        unlink(handle);
+        release(handle);
+        size--;
+        return true;
+    }
+
+    // Fires, in deadline order to the tick, every timer due at or before nowMillis
+    public int advance(long nowMillis, IntConsumer due) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        int fired = 0;
+        while (currentTick < target) {
+            long tick = currentTick + 1;
+            int slot = (int) (tick & (SLOTS - 1));
+            if (slot != 0) {
+                // Jump to the next timer at level 0, or to the end of this turn
+                long ahead = occupied[0] >>> slot;
+                int skip = ahead == 0 ? SLOTS - slot : Long.numberOfTrailingZeros(ahead);
+                if (skip > 0) {
+                    currentTick = Math.min(target, currentTick + skip);
+                    continue;
+                }
+            } else {
+                cascade(tick);
+            }
+            currentTick = tick;
+            fired += fire(slot, due);
+        }
+        return fired;
+    }
+
+    // The earliest time at which advance() may have a timer to fire or move down a
+    // level; Long.MAX_VALUE if nothing is scheduled. A slot at level L is due at the
+    // first tick on or after the next one that starts a block of 64^L ticks with its index.
+    public long nextWakeMillis() {
+        if (size == 0) return Long.MAX_VALUE;
+        long tick = currentTick + 1;
+        long earliest = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            if (occupied[level] == 0) continue;
+            int shift = level * SLOT_BITS;
+            long block = (tick + (1L << shift) - 1) >>> shift;
+            long ahead = Long.rotateRight(occupied[level], (int) (block & (SLOTS - 1)));
+            earliest = Math.min(earliest, (block + Long.numberOfTrailingZeros(ahead)) << shift);
+        }
+        return earliest * tickMillis;
+    }
+
+    // At the start of a level 0 turn, moves the current slot of each level above down,
+    // highest first, while that level is at the start of its own turn too
+    private void cascade(long tick) {
+        int top = 1;
+        while (top < LEVELS - 1 && ((tick >>> top * SLOT_BITS) & (SLOTS - 1)) == 0) top++;
+        for (int level = top; level >= 1; level--) {
+            int slot = (int) ((tick >>> level * SLOT_BITS) & (SLOTS - 1));
+            int index = level * SLOTS + slot;
+            int handle = heads[index];
+            if (handle == NONE) continue;
+            heads[index] = NONE;
+            occupied[level] &= ~(1L << slot);
+            while (handle != NONE) {
+                int following = next[handle];
+                // Relative to the tick being entered, whose level 0 slot fires next
+                place(handle, tick);
+                handle = following;
+            }
+        }
+    }
+
+    private int fire(int slot, IntConsumer due) {
+        int handle = heads[slot];
+        if (handle == NONE) return 0;
+        heads[slot] = NONE;
+        occupied[0] &= ~(1L << slot);
+        int fired = 0;
+        while (handle != NONE) {
+            int following = next[handle];
+            int payload = payloads[handle];
+            release(handle);
+            size--;
+            fired++;
+            due.accept(payload);
+            handle = following;
+        }
+        return fired;
+    }
+
+    // Puts a timer in the slot for its distance from base, the first tick not yet fired
+    private void place(int handle, long base) {
+        long tick = Math.max(Math.floorDiv(deadlines[handle], tickMillis), base);
+        // Beyond the top level it waits in the slot that comes round last, and is placed
+        // again from there
+        long delta = Math.min(tick - base, (1L << LEVELS * SLOT_BITS) - 1);
+        tick = base + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (level + 1) * SLOT_BITS) level++;
+        int slot = (int) ((tick >>> level * SLOT_BITS) & (SLOTS - 1));
+        int index = level * SLOTS + slot;
+        int head = heads[index];
+        next[handle] = head;
+        previous[handle] = NONE;
+        if (head != NONE) previous[head] = handle;
+        heads[index] = handle;
+        slots[handle] = index;
+        occupied[level] |= 1L << slot;
+    }
+
+    private void unlink(int handle) {
+        int index = slots[handle];
+        if (previous[handle] != NONE) {
+            next[previous[handle]] = next[handle];
+        } else {
+            heads[index] = next[handle];
+            if (next[handle] == NONE) occupied[index / SLOTS] &= ~(1L << (index % SLOTS));
+        }
+        if (next[handle] != NONE) previous[next[handle]] = previous[handle];
+    }
+
+    private int allocate() {
+        if (free != NONE) {
+            int handle = free;
+            free = next[handle];
+            return handle;
+        }
+        if (capacity == deadlines.length) {
+            int grown = capacity * 2;
+            deadlines = Arrays.copyOf(deadlines, grown);
+            payloads = Arrays.copyOf(payloads, grown);
+            next = Arrays.copyOf(next, grown);
+            previous = Arrays.copyOf(previous, grown);
+            slots = Arrays.copyOf(slots, grown);
+        }
+        return capacity++;
+    }
+
+    private void release(int handle) {
+        slots[handle] = NONE;
+        next[handle] = free;
+        free = handle;
+    }
+}
\ No newline at end of file
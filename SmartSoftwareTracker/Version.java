@@ -0,0 +1,172 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A version string parsed once into numeric segments, so comparing two versions is
+// a compare of primitive fields with no parsing or allocation. Handles what shows up in
+// uninstall keys: "2.52.0", "2025.2", "14.40.33810.0", "v1.2", "1.0a", "3.0.0-rc.2"
+// (the tail after the numbers is a qualifier that sorts before the plain release)
+// and "1.2+build.5" (build metadata is ignored). Anything that does not start with
+// a number is kept as an unparsed string and sorts before every parsed version.
+//
+// Trailing zero segments don't count, so "2" and "2.0" compare equal; equals() and
+// hashCode() still go by the original text, the way the UI shows it.
+public final class Version implements Comparable<Version> {
+    // Shared instances by text; records on the same release share one Version
+    private static final ConcurrentHashMap<String, Version> POOL = new ConcurrentHashMap<>();
+    private static final long[] NO_SEGMENTS = new long[0];
+    // Longer digit runs would overflow a long
+    private static final int MAX_SEGMENT_DIGITS = 18;
+
+    private final String text;
+    private final long[] segments;
+    // Number of segments left after dropping trailing zeros
+    private final int significant;
+    private final String qualifier;
+    private final boolean parsed;
+    // The common case, up to four segments of 16 bits (15 for the first), packed into
+    // one long so most comparisons are a single compare; negative when it doesn't fit
+    private final long packed;
+
+    private Version(String text) {
+        this.text = text;
+        String s = text.trim();
+        int pos = 0;
+        if (s.length() > 1 && (s.charAt(0) == 'v' || s.charAt(0) == 'V') && isDigit(s.charAt(1))) pos = 1;
+
+        long[] parts = new long[4];
+        int count = 0;
+        while (pos < s.length() && isDigit(s.charAt(pos))) {
+            int start = pos;
+            long value = 0;
+            while (pos < s.length() && isDigit(s.charAt(pos)) && pos - start < MAX_SEGMENT_DIGITS) {
+                value = value * 10 + (s.charAt(pos++) - '0');
+            }
+            if (count == parts.length) parts = Arrays.copyOf(parts, count * 2);
+            parts[count++] = value;
+            if (pos + 1 < s.length() && s.charAt(pos) == '.' && isDigit(s.charAt(pos + 1))) {
+                pos++;
+            } else {
+                break;
+            }
+        }
+
+        this.parsed = count > 0;
+        this.segments = count == 0 ? NO_SEGMENTS : Arrays.copyOf(parts, count);
+        int last = count;
+        while (last > 0 && segments[last - 1] == 0) last--;
+        this.significant = last;
+        long key = last <= 4 ? 0 : -1;
+        for (int i = 0; i < 4 && key >= 0; i++) {
+            long segment = i < last ? segments[i] : 0;
+            key = segment > 0xFFFF ? -1 : (key << 16) | segment;
+        }
+        this.packed = key;
+
+        String rest = parsed ? s.substring(pos) : s;
+        if (parsed) {
+            int plus = rest.indexOf('+');
+            if (plus >= 0) rest = rest.substring(0, plus);
+            int start = 0;
+            while (start < rest.length() && "-_. ".indexOf(rest.charAt(start)) >= 0) start++;
+            rest = rest.substring(start);
+        }
+        this.qualifier = rest.isEmpty() ? null : rest;
+    }
+
+    // Parses, or returns the shared instance for this text
+    public static Version of(String text) {
+        Version v = POOL.get(text);
+        if (v == null) {
+            Version created = new Version(text);
+            v = POOL.putIfAbsent(text, created);
+            if (v == null) v = created;
+        }
+        return v;
+    }
+
+    public static int compare(String a, String b) {
+        return of(a).compareTo(of(b));
+    }
+
+    public boolean isParsed() { return parsed; }
+    public int getSegmentCount() { return segments.length; }
+
+    // Segment i, or 0 past the end
+    public long getSegment(int i) {
+        return i < segments.length ? segments[i] : 0;
+    }
+
+    public String getQualifier() { return qualifier; }
+
+    @Override
+    public int compareTo(Version other) {
+        if (this == other) return 0;
+        if (parsed != other.parsed) return parsed ? 1 : -1;
+        if (!parsed) return String.CASE_INSENSITIVE_ORDER.compare(text.trim(), other.text.trim());
+
+        if (packed >= 0 && other.packed >= 0) {
+            if (packed != other.packed) return Long.compare(packed, other.packed);
+        } else {
+            int length = Math.max(significant, other.significant);
+            for (int i = 0; i < length; i++) {
+                int c = Long.compare(getSegment(i), other.getSegment(i));
+                if (c != 0) return c;
+            }
+        }
+        if (qualifier == null || other.qualifier == null) {
+            return qualifier == other.qualifier ? 0 : qualifier == null ? 1 : -1;
+        }
+        return compareQualifiers(qualifier, other.qualifier);
+    }
+
+    // Case-insensitive, with digit runs compared as numbers: "rc.10" > "rc.9"
+    private static int compareQualifiers(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (isDigit(ca) && isDigit(cb)) {
+                int startA = i;
+                int startB = j;
+                while (startA < a.length() && a.charAt(startA) == '0') startA++;
+                while (startB < b.length() && b.charAt(startB) == '0') startB++;
+                i = startA;
+                j = startB;
+                while (i < a.length() && isDigit(a.charAt(i))) i++;
+                while (j < b.length() && isDigit(b.charAt(j))) j++;
+                int c = Integer.compare(i - startA, j - startB);
+                if (c != 0) return c;
+                for (int k = 0; k < i - startA; k++) {
+                    c = Character.compare(a.charAt(startA + k), b.charAt(startB + k));
+                    if (c != 0) return c;
+                }
+            } else {
+                int c = Character.compare(Character.toLowerCase(ca), Character.toLowerCase(cb));
+                if (c != 0) return c;
+                i++;
+                j++;
+            }
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Version && ((Version) o).text.equals(text);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
\ No newline at end of file
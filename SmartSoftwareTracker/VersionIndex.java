@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Per-product version index over one snapshot. Records are grouped by productKey,
+// which drops editions, architectures and version numbers from the display name,
+// so "WinRAR 7.13 (64-bit)" and "WinRAR 7.01 (32-bit)" are both product "winrar".
+// Within a product, rows are held in version order next to their parsed versions,
+// and a version range is two binary searches.
+public final class VersionIndex {
+    private static final Set<String> ARCHITECTURE_TAGS = Set.of(
+        "x64", "x86", "(x64)", "(x86)", "(64-bit)", "(32-bit)", "64-bit", "32-bit", "arm64", "(arm64)"
+    );
+
+    private final List<Software> rows;
+    private final Map<String, Product> products = new HashMap<>();
+
+    // One product's rows, sorted by version, with the versions in a parallel array
+    private static final class Product {
+        final int[] rows;
+        final Version[] versions;
+
+        Product(int[] rows, Version[] versions) {
+            this.rows = rows;
+            this.versions = versions;
+        }
+    }
+
+    public VersionIndex(List<Software> rows) {
+        this.rows = rows;
+        Map<String, List<Integer>> grouped = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            grouped.computeIfAbsent(productKey(rows.get(i).getName()), k -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<String, List<Integer>> e : grouped.entrySet()) {
+            Integer[] order = e.getValue().toArray(new Integer[0]);
+            Arrays.sort(order, (a, b) -> {
+                int c = rows.get(a).getParsedVersion().compareTo(rows.get(b).getParsedVersion());
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+            int[] sorted = new int[order.length];
+            Version[] versions = new Version[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = order[i];
+                versions[i] = rows.get(order[i]).getParsedVersion();
+            }
+            products.put(e.getKey(), new Product(sorted, versions));
+        }
+    }
+
+    // Normalized name without version numbers, architecture tags or a dangling " - "
+    public static String productKey(String name) {
+        String key = SoftwareManager.normalizeName(name);
+        StringBuilder sb = new StringBuilder(key.length());
+        for (String token : key.split(" ")) {
+            if (token.equals("-") || ARCHITECTURE_TAGS.contains(token) || isVersionToken(token)) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(token);
+        }
+        // A name that is nothing but a version keeps its normalized form
+        return sb.length() == 0 ? key : sb.toString();
+    }
+
+    private static boolean isVersionToken(String token) {
+        int start = token.startsWith("v") ? 1 : 0;
+        return token.length() > start + 2 && Character.isDigit(token.charAt(start)) && token.indexOf('.') > 0;
+    }
+
+    public Set<String> getProducts() {
+        return products.keySet();
+    }
+
+    // Rows of the product with min <= version < maxExclusive, in version order.
+    // Either bound may be null for an open range.
+    public int[] select(String product, Version min, Version maxExclusive) {
+        Product p = products.get(productKey(product));
+        if (p == null) return new int[0];
+        int from = min == null ? 0 : lowerBound(p.versions, min);
+        int to = maxExclusive == null ? p.rows.length : lowerBound(p.versions, maxExclusive);
+        return from < to ? Arrays.copyOfRange(p.rows, from, to) : new int[0];
+    }
+
+    public int count(String product, Version min, Version maxExclusive) {
+        Product p = products.get(productKey(product));
+        if (p == null) return 0;
+        int from = min == null ? 0 : lowerBound(p.versions, min);
+        int to = maxExclusive == null ? p.rows.length : lowerBound(p.versions, maxExclusive);
+        return Math.max(0, to - from);
+    }
+
+    public List<Software> olderThan(String product, String version) {
+        return toSoftware(select(product, null, Version.of(version)));
+    }
+
+    public List<Software> between(String product, String min, String maxExclusive) {
+        return toSoftware(select(product, Version.of(min), Version.of(maxExclusive)));
+    }
+
+    // All records of the product, oldest version first
+    public List<Software> getInstalls(String product) {
+        return toSoftware(select(product, null, null));
+    }
+
+    private List<Software> toSoftware(int[] selected) {
+        List<Software> result = new ArrayList<>(selected.length);
+        for (int row : selected) result.add(rows.get(row));
+        return result;
+    }
+
+    // First position whose version is >= v
+    private static int lowerBound(Version[] versions, Version v) {
+        int low = 0;
+        int high = versions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (versions[mid].compareTo(v) < 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// The Windows uninstall hives, one scope per hive. Live scans read each hive through
+// long-lived PowerShell sessions shared by all scans (ShellSessionPool), so a rescan
+// starts no process; if PowerShell isn't there or the command fails, the hive is read
+// with a single "reg query /s" instead.
+// With -Dtracker.registry=<dir> the hives come from captured "reg query" output (see
+// FileScanSource), which works on any OS; -Dtracker.reg=<path> and
+// -Dtracker.powershell=<path> name the reg and PowerShell to use, such as
+// fixtures/shell/reg.sh and fixtures/shell/powershell.sh on Linux.
+public class WindowsRegistrySource implements SoftwareSource {
+    private static final String[] POWERSHELL_PATHS = {
+        "C:\\Windows\\System32\\WindowsPowerShell\\v1.0\\powershell.exe",
+        "C:\\Windows\\SysWOW64\\WindowsPowerShell\\v1.0\\powershell.exe"
+    };
+    private static final long POWERSHELL_TIMEOUT_SECONDS = 60;
+
+    private final ScanSource source;
+    private final List<String> hives;
+    private final boolean available;
+    private final Set<Reader> openReaders = ConcurrentHashMap.newKeySet();
+
+    public WindowsRegistrySource() {
+        String captured = System.getProperty("tracker.registry");
+        if (captured != null) {
+            this.source = new FileScanSource(Paths.get(captured));
+            this.available = true;
+        } else {
+            this.source = new RegScanSource();
+            this.available = System.getProperty("os.name", "").startsWith("Windows")
+                || System.getProperty("tracker.reg") != null
+                || System.getProperty("tracker.powershell") != null;
+        }
+        this.hives = List.of(RegistryScanner.UNINSTALL_HIVES);
+    }
+
+    public WindowsRegistrySource(ScanSource source) {
+        this(source, RegistryScanner.UNINSTALL_HIVES);
+    }
+
+    public WindowsRegistrySource(ScanSource source, String[] hives) {
+        this.source = source;
+        this.hives = Arrays.asList(hives.clone());
+        this.available = true;
+    }
+
+    @Override
+    public String getName() {
+        return "registry";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Override
+    public List<String> getScopes() {
+        return hives;
+    }
+
+    @Override
+    public String changeToken(String hive) {
+        return source.changeToken(hive);
+    }
+
+    @Override
+    public void scan(String hive, Consumer<RegistryEntry> sink) throws IOException {
+        ShellSessionPool powerShell = source instanceof RegScanSource ? PowerShell.pool() : null;
+        if (powerShell != null) {
+            try {
+                scanWithPowerShell(powerShell, hive, sink);
+                return;
+            } catch (IOException e) {
+                // A cancelled scan interrupts its producers; no reg then
+                if (e instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) throw e;
+                Log.warn("scan.powershell.failed", "scope", hive, "reason", e.getMessage());
+            }
+        }
+        BufferedReader reader = source.open(hive);
+        read(reader, r -> RegistryScanner.parse(reader, sink));
+    }
+
+    // The whole output is read before any entry is passed on, so a failed command
+    // leaves nothing for the reg fallback to repeat
+    private void scanWithPowerShell(ShellSessionPool powerShell, String hive, Consumer<RegistryEntry> sink) throws IOException {
+        String root = hive.startsWith("HKCU\\") ? "HKCU:" : "HKLM:";
+        String output = powerShell.run("Get-ItemProperty '" + root + hive.substring(4) + "\\*' | " +
+            "Select-Object PSChildName, DisplayName, DisplayVersion, InstallDate | " +
+            "ConvertTo-Csv -NoTypeInformation", POWERSHELL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        parsePowerShellCsv(new StringReader(output), hive, sink);
+    }
+
+    private interface ReadTask {
+        void run(BufferedReader reader) throws IOException;
+    }
+
+    // Tracks the reader so cancel() can close it, which ends the process behind it
+    private void read(BufferedReader reader, ReadTask task) throws IOException {
+        try (BufferedReader r = reader) {
+            openReaders.add(r);
+            try {
+                task.run(r);
+            } finally {
+                openReaders.remove(r);
+            }
+        }
+    }
+
+    // Reads ConvertTo-Csv output of uninstall keys. Every column but PSChildName becomes
+    // a value; the key is the hive path plus PSChildName, or the display name without it.
+    public static int parsePowerShellCsv(Reader in, String hive, Consumer<RegistryEntry> sink) throws IOException {
+        int count = 0;
+        String prefix = RegistryScanner.fullPath(hive) + "\\";
+        try (CsvReader reader = new CsvReader(in)) {
+            List<String> header = new ArrayList<>();
+            if (!reader.readRecord(header)) return 0;
+            int keyColumn = header.indexOf("PSChildName");
+            int nameColumn = header.indexOf("DisplayName");
+            if (nameColumn < 0) return 0;
+
+            List<String> fields = new ArrayList<>();
+            while (reader.readRecord(fields)) {
+                String key = keyColumn >= 0 && keyColumn < fields.size() ? fields.get(keyColumn) : "";
+                if (key.isEmpty()) key = nameColumn < fields.size() ? fields.get(nameColumn).trim() : "";
+                if (key.isEmpty()) continue;
+
+                RegistryEntry entry = new RegistryEntry(prefix + key);
+                for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                    if (i == keyColumn || fields.get(i).isEmpty()) continue;
+                    entry.putValue(header.get(i), fields.get(i).trim());
+                }
+                sink.accept(entry);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void cancel() {
+        ShellSessionPool powerShell = PowerShell.started;
+        if (powerShell != null) powerShell.abort();
+        for (Reader reader : openReaders) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    // Looked up once, on first use; the sessions start with the first command and
+    // stay up, one per hive scanned in parallel, until the JVM exits
+    private static final class PowerShell {
+        static final String PATH = find();
+        static volatile ShellSessionPool started;
+
+        private static String find() {
+            String configured = System.getProperty("tracker.powershell");
+            if (configured != null) return configured;
+            for (String path : POWERSHELL_PATHS) {
+                if (new File(path).isFile()) return path;
+            }
+            return null;
+        }
+
+        static synchronized ShellSessionPool pool() {
+            if (started == null && PATH != null) {
+                ShellSessionPool pool = new ShellSessionPool(
+                    List.of(PATH, "-NoProfile", "-NoLogo", "-NonInteractive", "-Command", "-"),
+                    "Write-Output \"%s $?\"", Charset.defaultCharset(), RegistryScanner.UNINSTALL_HIVES.length);
+                Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "powershell-sessions-close"));
+                started = pool;
+            }
+            return started;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+#!/bin/sh
+# Stand-in for "powershell -Command -" where there is no PowerShell:
+#
+#   java -Dtracker.powershell=fixtures/shell/powershell.sh Cli scan
+#
+# Reads one command per line, like PowerShell reading stdin:
+#   Write-Output '<text>'           prints the text
+#   Write-Output "<text> $?"        prints the text and True or False, whether the
+#                                   command before it succeeded
+#   Get-ItemProperty '<hive>\*' ... prints the captured hive in fixtures/registry
+#                                   the way ConvertTo-Csv would
+#   Start-Sleep <seconds>           sleeps, to try out command timeouts
+#   exit                            ends the session
+# Anything else prints nothing. Arguments are ignored. With POWERSHELL_FAIL set to a
+# hive prefix (HKLM, HKCU) Get-ItemProperty fails on a matching hive the way it does
+# on a key it can't read: the rows before it, an error on stderr, and $? False.
+#
+#   POWERSHELL_FAIL=HKLM java -Dtracker.powershell=fixtures/shell/powershell.sh Cli scan
+#
+# reports the HKLM hives as failed, and none of their records as removed.
+registry=$(cd "$(dirname "$0")/../registry" && pwd)
+status=True
+
+uninstall_csv() {
+    awk -F '    ' '
+        function q(s) { gsub(/"/, "\"\"", s); return "\"" s "\"" }
+        function flush() {
+            if (key != "") print q(key) "," q(name) "," q(version) "," q(date)
+            key = name = version = date = ""
+        }
+        BEGIN { print "\"PSChildName\",\"DisplayName\",\"DisplayVersion\",\"InstallDate\"" }
+        { sub(/\r$/, "") }
+        /^[^ ]/ { flush(); n = split($0, path, "\\"); key = path[n]; next }
+        $2 == "DisplayName" { name = $4 }
+        $2 == "DisplayVersion" { version = $4 }
+        $2 == "InstallDate" { date = $4 }
+        END { flush() }
+    ' "$registry/$1"
+}
+
+# uninstall_csv for the hive named in the command $2, failing partway if it matches
+get_item_property() {
+    case "$2" in
+        "$POWERSHELL_FAIL"*)
+            if [ -n "$POWERSHELL_FAIL" ]; then
+                rows=$(uninstall_csv "$1")
+                printf '%s\n' "$rows" | head -n $(( $(printf '%s\n' "$rows" | wc -l) / 2 ))
+                echo "Get-ItemProperty : Requested registry access is not allowed." >&2
+                status=False
+                return
+            fi ;;
+    esac
+    uninstall_csv "$1"
+    status=True
+}
+
+while IFS= read -r line; do
+    line=$(printf '%s' "$line" | tr -d '\r')
+    case "$line" in
+        "Write-Output '"*)
+            text=${line#"Write-Output '"}
+            printf '%s\n' "${text%"'"}"
+            status=True ;;
+        'Write-Output "'*)
+            text=${line#'Write-Output "'}
+            text=${text%'"'}
+            case "$text" in
+                *' $?') printf '%s %s\n' "${text%' $?'}" "$status" ;;
+                *) printf '%s\n' "$text" ;;
+            esac
+            status=True ;;
+        "Get-ItemProperty 'HKLM:\\Software\\WOW6432Node\\"*)
+            get_item_property HKLM_Software_WOW6432Node_Microsoft_Windows_CurrentVersion_Uninstall.txt HKLM ;;
+        "Get-ItemProperty 'HKLM:\\"*)
+            get_item_property HKLM_Software_Microsoft_Windows_CurrentVersion_Uninstall.txt HKLM ;;
+        "Get-ItemProperty 'HKCU:\\"*)
+            get_item_property HKCU_Software_Microsoft_Windows_CurrentVersion_Uninstall.txt HKCU ;;
+        "Start-Sleep "*)
+            sleep "${line#Start-Sleep }"
+            status=True ;;
+        exit)
+            exit 0 ;;
+    esac
+done
@@ -0,0 +1,28 @@
+#!/bin/sh
+# Stand-in for "reg query <hive> /s" where there is no reg.exe:
+#
+#   java -Dtracker.reg=fixtures/shell/reg.sh Cli scan
+#
+# Prints the captured hive in fixtures/registry. With REG_FAIL set to a hive prefix
+# (HKLM, HKCU, or a longer one) it fails partway through a matching hive the way reg
+# does on a key it can't read: the keys before it, an error on stderr, exit status 1.
+#
+#   REG_FAIL=HKLM java -Dtracker.reg=fixtures/shell/reg.sh Cli scan
+#
+# reports the HKLM hives as failed, and none of their records as removed.
+registry=$(cd "$(dirname "$0")/../registry" && pwd)
+
+[ "$1" = query ] || { echo "ERROR: Invalid syntax." >&2; exit 1; }
+file="$registry/$(printf '%s' "$2" | tr '\\' '_').txt"
+[ -f "$file" ] || { echo "ERROR: The system was unable to find the specified registry key or value." >&2; exit 1; }
+
+case "$2" in
+    "$REG_FAIL"*)
+        if [ -n "$REG_FAIL" ]; then
+            lines=$(wc -l < "$file")
+            head -n $((lines / 2)) "$file"
+            echo "ERROR: Access is denied." >&2
+            exit 1
+        fi ;;
+esac
+cat "$file"
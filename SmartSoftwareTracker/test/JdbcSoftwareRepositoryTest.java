@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class JdbcSoftwareRepositoryTest {
+    @TempDir
+    Path directory;
+
+    private String url(String driver) {
+        File file = directory.resolve("software").toFile();
+        return driver.equals("h2") ? "jdbc:h2:" + file.getAbsolutePath() : "jdbc:sqlite:" + file.getAbsolutePath() + ".db";
+    }
+
+    // Edits by position, then a reload and a page against the same query run in memory
+    @ParameterizedTest
+    @ValueSource(strings = { "h2", "sqlite" })
+    void editsSurviveReload(String driver) throws IOException {
+        String url = url(driver);
+        List<Software> expected = new ArrayList<>(InventoryGenerator.generate(3000, 7));
+        try (JdbcSoftwareRepository repository = new JdbcSoftwareRepository(url)) {
+            assertTrue(repository.load().isEmpty());
+            repository.addAll(expected);
+            for (int i = 0; i < 500; i++) {
+                int index = (i * 37) % expected.size();
+                if (i % 3 == 0) {
+                    expected.remove(index);
+                    repository.remove(index);
+                } else {
+                    Software s = expected.get(index).withStatus(Status.EXPIRED);
+                    expected.set(index, s);
+                    repository.replace(index, s);
+                }
+            }
+            Software added = new Software("Added Last", "1.0", 20_000, Status.TRIAL);
+            expected.add(added);
+            repository.add(added);
+            repository.sync();
+        }
+        try (JdbcSoftwareRepository repository = new JdbcSoftwareRepository(url)) {
+            assertRows(expected, repository.load());
+            SoftwareQuery trials = SoftwareQuery.all().status(Status.TRIAL).sortBy(SoftwareQuery.Sort.NAME, false);
+            List<Software> local = SoftwareIndex.build(expected).query(trials.copy());
+            assertRows(local.subList(10, 30), repository.page(trials, 10, 20));
+            assertEquals(local.size(), repository.count(trials));
+        }
+    }
+
+    // A write the database rejects: sync() has to fail, and the next checkpoint put back
+    // exactly the records the caller holds. SQLite doesn't enforce column lengths, so the
+    // oversized name is only rejected by H2.
+    @Test
+    void rejectedWriteIsRolledBackByCheckpoint() throws IOException {
+        String url = url("h2");
+        List<Software> expected = new ArrayList<>(InventoryGenerator.generate(100, 7));
+        try (JdbcSoftwareRepository repository = new JdbcSoftwareRepository(url)) {
+            repository.load();
+            repository.addAll(expected);
+            repository.sync();
+
+            repository.replace(0, new Software("x".repeat(5000), "1.0", 20_000, Status.TRIAL));
+            repository.add(new Software("Lost", "1.0", 20_000, Status.TRIAL));
+            assertThrows(IOException.class, repository::sync);
+            repository.checkpoint(expected, false);
+            repository.sync();
+        }
+        try (JdbcSoftwareRepository repository = new JdbcSoftwareRepository(url)) {
+            assertRows(expected, repository.load());
+        }
+    }
+
+    private static void assertRows(List<Software> expected, List<Software> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString(), "row " + i);
+        }
+    }
+}
\ No newline at end of file
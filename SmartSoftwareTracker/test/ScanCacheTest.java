@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScanCacheTest {
+    @TempDir
+    Path directory;
+
+    private File file() {
+        return directory.resolve("software.txt.scancache").toFile();
+    }
+
+    @Test
+    void changedTokenInvalidatesScope() {
+        ScanCache cache = new ScanCache(file(), ScanCache.DEFAULT_TTL_MILLIS, 1000);
+        cache.put("dpkg", "status", "100:1", entries("a", 3));
+        cache.put("rpm", "db", null, entries("b", 2));
+
+        assertEquals(3, cache.get("dpkg", "status", "100:1").size());
+        assertNull(cache.get("dpkg", "status", "120:2"));
+        // Dropped, not just skipped: the old token doesn't bring it back
+        assertNull(cache.get("dpkg", "status", "100:1"));
+        // A source that had no token loses its scope once it reports one
+        assertEquals(2, cache.get("rpm", "db", null).size());
+        assertNull(cache.get("rpm", "db", "1:1"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0, cache.getScopeCount());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void expiredScopeIsDropped() throws InterruptedException {
+        ScanCache cache = new ScanCache(file(), 20, 1000);
+        cache.put("reg", "HKLM", null, entries("a", 1));
+        Thread.sleep(40);
+        assertNull(cache.get("reg", "HKLM", null));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void invalidateSurvivesSave() throws IOException {
+        ScanCache cache = new ScanCache(file(), ScanCache.DEFAULT_TTL_MILLIS, 1000);
+        cache.put("reg", "HKLM\tWow6432Node", "t", entries("a\\b\nc", 4));
+        cache.save();
+
+        ScanCache loaded = ScanCache.load(file());
+        List<RegistryEntry> restored = loaded.get("reg", "HKLM\tWow6432Node", "t");
+        assertNotNull(restored);
+        assertEquals("a\\b\nc 3", restored.get(3).getKeyPath());
+        assertEquals("1.3\t", restored.get(3).getValue("DisplayVersion"));
+
+        loaded.invalidate();
+        loaded.save();
+        ScanCache reloaded = ScanCache.load(file());
+        assertNull(reloaded.get("reg", "HKLM\tWow6432Node", "t"));
+        assertEquals(0, reloaded.getScopeCount());
+    }
+
+    // Over maxEntries the least recently used scopes go first, but never the one just stored
+    @Test
+    void leastRecentlyUsedScopesAreEvicted() {
+        ScanCache cache = new ScanCache(file(), ScanCache.DEFAULT_TTL_MILLIS, 10);
+        cache.put("s", "1", null, entries("a", 4));
+        cache.put("s", "2", null, entries("b", 4));
+        assertNotNull(cache.get("s", "1", null));
+        cache.put("s", "3", null, entries("c", 4));
+        assertNull(cache.get("s", "2", null));
+        assertNotNull(cache.get("s", "1", null));
+        assertEquals(8, cache.getEntryCount());
+
+        cache.put("s", "4", null, entries("d", 20));
+        assertEquals(1, cache.getScopeCount());
+        assertEquals(20, cache.get("s", "4", null).size());
+    }
+
+    private static List<RegistryEntry> entries(String prefix, int count) {
+        List<RegistryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RegistryEntry entry = new RegistryEntry(prefix + " " + i);
+            entry.putValue("DisplayName", prefix + " " + i);
+            entry.putValue("DisplayVersion", "1." + i + "\t");
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
\ No newline at end of file
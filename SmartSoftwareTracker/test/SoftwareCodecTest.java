@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SoftwareCodecTest {
+    private static final String[] NAMES = {
+        "Plain", "Microsoft Visual C++ 2015-2022 Redistributable (x64), 14.38", "a,b,,c", ",leading",
+        "trailing,", "C:\\Program Files\\App", "ends with \\", "\\,", "two\nlines", "cr\rlf\r\n",
+        "Ünïcödé, ⚙", ""
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void escapedFieldsRoundTrip() {
+        for (String name : NAMES) {
+            Software s = new Software(name, "1.0, build " + name.length(), 20_000, Status.TRIAL);
+            String line = s.toString();
+            assertFalse(line.contains("\n") || line.contains("\r"), line);
+            Software decoded = Software.fromString(line);
+            assertEquals(name, decoded.getName());
+            assertEquals(s.getVersion(), decoded.getVersion());
+            assertEquals(20_000, decoded.getEpochDay());
+            assertEquals(Status.TRIAL, decoded.getStatus());
+        }
+    }
+
+    // Rows written before escaping: a backslash before anything else is kept, and
+    // fields after the fourth are ignored as split(",") did
+    @Test
+    void oldRowsStillRead() {
+        Software s = Software.fromString("C:\\Tools\\app,2.1,2024-02-29,Installed,extra,fields");
+        assertEquals("C:\\Tools\\app", s.getName());
+        assertEquals("2.1", s.getVersion());
+        assertEquals(19_782, s.getEpochDay());
+        assertEquals(Status.INSTALLED, s.getStatus());
+    }
+
+    // Through the journal, then through a compacted snapshot in each format
+    @ParameterizedTest
+    @ValueSource(strings = { "software.txt", "software.bin" })
+    void namesSurviveReload(String fileName) throws IOException {
+        File dataFile = directory.resolve(fileName).toFile();
+        List<Software> expected = new ArrayList<>();
+        for (int i = 0; i < NAMES.length; i++) {
+            expected.add(new Software(NAMES[i], "v" + i + ",rc", 19_000 + i, Status.INSTALLED));
+        }
+        try (TextSoftwareRepository repository = new TextSoftwareRepository(dataFile)) {
+            repository.load();
+            repository.addAll(expected);
+            repository.replace(1, expected.get(1).withStatus(Status.EXPIRED));
+            expected.set(1, expected.get(1).withStatus(Status.EXPIRED));
+        }
+        try (TextSoftwareRepository repository = new TextSoftwareRepository(dataFile)) {
+            assertRows(expected, repository.load());
+            repository.checkpoint(expected, true);
+        }
+        try (TextSoftwareRepository repository = new TextSoftwareRepository(dataFile)) {
+            assertRows(expected, repository.load());
+        }
+    }
+
+    private static void assertRows(List<Software> expected, List<Software> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Software e = expected.get(i);
+            Software a = actual.get(i);
+            assertEquals(e.getName(), a.getName(), "row " + i);
+            assertEquals(e.getVersion(), a.getVersion(), "row " + i);
+            assertEquals(e.getEpochDay(), a.getEpochDay(), "row " + i);
+            assertEquals(e.getStatus(), a.getStatus(), "row " + i);
+        }
+    }
+}
\ No newline at end of file
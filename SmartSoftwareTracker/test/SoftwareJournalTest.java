@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SoftwareJournalTest {
+    @TempDir
+    Path directory;
+
+    // Edits synced to the journal and never compacted, as a crash leaves them: the next
+    // load replays them on top of the snapshot
+    @Test
+    void syncedEditsSurviveCrash() throws IOException {
+        File dataFile = directory.resolve("software.txt").toFile();
+        List<Software> expected = edit(dataFile, 400);
+        assertRows(expected, new TextSoftwareRepository(dataFile).read());
+
+        TextSoftwareRepository repository = new TextSoftwareRepository(dataFile);
+        assertRows(expected, repository.load());
+        repository.close();
+    }
+
+    // A record cut off before its line break is dropped, and cut from the file so the
+    // next append starts on a line of its own
+    @Test
+    void tornRecordIsDroppedAndTruncated() throws IOException {
+        File dataFile = directory.resolve("software.txt").toFile();
+        List<Software> expected = edit(dataFile, 100);
+        File journal = new File(dataFile.getPath() + ".journal");
+        long length = journal.length();
+        append(journal, "+Half Written,1.");
+
+        TextSoftwareRepository repository = new TextSoftwareRepository(dataFile);
+        assertRows(expected, repository.load());
+        assertEquals(length, journal.length());
+        Software added = new Software("After Crash", "1.0", 20_000, Status.TRIAL);
+        expected.add(added);
+        repository.add(added);
+        repository.close();
+
+        repository = new TextSoftwareRepository(dataFile);
+        assertRows(expected, repository.load());
+        repository.close();
+    }
+
+    // A compaction interrupted after the journal was rotated but before the snapshot was
+    // written: the old journal is replayed, then the new one, and the snapshot is redone
+    @Test
+    void interruptedCompactionIsReplayed() throws IOException {
+        File dataFile = directory.resolve("software.txt").toFile();
+        List<Software> expected = edit(dataFile, 100);
+        File journal = new File(dataFile.getPath() + ".journal");
+        File oldJournal = new File(dataFile.getPath() + ".journal.old");
+        Files.move(journal.toPath(), oldJournal.toPath());
+        Software added = new Software("Rotated, Then Crashed", "2.0", 20_000, Status.INSTALLED);
+        expected.add(added);
+        append(journal, SoftwareJournal.GENERATION_PREFIX + "1\n+" + added + "\n");
+
+        TextSoftwareRepository repository = new TextSoftwareRepository(dataFile);
+        assertRows(expected, repository.load());
+        assertEquals(2, repository.getGeneration());
+        repository.close();
+        assertFalse(oldJournal.exists());
+
+        repository = new TextSoftwareRepository(dataFile);
+        assertRows(expected, repository.load());
+        repository.close();
+    }
+
+    // A complete record that can't be applied fails the load rather than shifting every
+    // later edit onto the wrong row
+    @Test
+    void unreadableRecordFailsReplay() throws IOException {
+        File dataFile = directory.resolve("software.txt").toFile();
+        edit(dataFile, 10);
+        append(new File(dataFile.getPath() + ".journal"), "-x\n+Later,1.0,2026-01-01,Installed\n");
+
+        TextSoftwareRepository repository = new TextSoftwareRepository(dataFile);
+        assertThrows(IOException.class, repository::load);
+        repository.close();
+    }
+
+    // Adds, replaces and removes through a repository that is synced but never closed or
+    // compacted; returns the records it should hold
+    private static List<Software> edit(File dataFile, int count) throws IOException {
+        List<Software> expected = new ArrayList<>();
+        TextSoftwareRepository repository = new TextSoftwareRepository(dataFile);
+        repository.load();
+        for (int i = 0; i < count; i++) {
+            Software s = new Software("App " + i, "1." + i, 19_000 + i, Status.INSTALLED);
+            expected.add(s);
+            repository.add(s);
+            if (i % 5 == 4) {
+                int index = (i * 7) % expected.size();
+                Software replaced = expected.get(index).withStatus(Status.EXPIRED);
+                expected.set(index, replaced);
+                repository.replace(index, replaced);
+            }
+            if (i % 9 == 8) {
+                int index = (i * 3) % expected.size();
+                expected.remove(index);
+                repository.remove(index);
+            }
+        }
+        repository.sync();
+        return expected;
+    }
+
+    private static void append(File file, String text) throws IOException {
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void assertRows(List<Software> expected, List<Software> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString(), "row " + i);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+class SoftwareManagerStressTest {
+    private static final int SCAN_BATCHES = 100;
+    private static final int BATCH_SIZE = 100;
+    private static final int EDITORS = 4;
+    private static final int ADDS_PER_EDITOR = 2_000;
+    private static final int REMOVES_PER_EDITOR = 500;
+
+    // Keeps results alive so the JIT cannot drop the readers' work
+    private static volatile Object sink;
+
+    @TempDir
+    Path directory;
+
+    // A scan thread merging batches, editor threads adding, upserting and removing their
+    // own names, and readers walking snapshots, all at once: no update may be lost, and
+    // the reloaded data file must hold the same rows
+    @Test
+    @Timeout(120)
+    void concurrentEditsAreNotLost() throws Exception {
+        File dataFile = directory.resolve("software.txt").toFile();
+        SoftwareManager manager = new SoftwareManager(dataFile);
+        LocalDate date = LocalDate.of(2026, 1, 1);
+
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+
+        writers.add(new Thread(() -> {
+            for (int b = 0; b < SCAN_BATCHES; b++) {
+                List<Software> batch = new ArrayList<>();
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    batch.add(new Software("Scanned " + b + "-" + i, "1.0", date, Status.INSTALLED));
+                }
+                manager.mergeScanned(batch);
+            }
+        }));
+        for (int e = 0; e < EDITORS; e++) {
+            int editor = e;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < ADDS_PER_EDITOR; i++) {
+                    manager.addSoftware("Edited " + editor + "-" + i, "1.0", date, Status.TRIAL);
+                    manager.upsert("Edited " + editor + "-" + i, "2.0", date, Status.INSTALLED);
+                    if (i < REMOVES_PER_EDITOR) manager.removeByName("Edited " + editor + "-" + i);
+                }
+            }));
+        }
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(new Thread(() -> {
+                while (running.get()) {
+                    int installed = 0;
+                    for (Software s : manager.getAllSoftware()) {
+                        if (s.getStatus() == Status.INSTALLED) installed++;
+                    }
+                    sink = installed;
+                }
+            }));
+        }
+
+        List<Thread> all = new ArrayList<>(writers);
+        all.addAll(readers);
+        for (Thread t : all) {
+            t.setUncaughtExceptionHandler((thread, ex) -> errors.add(ex));
+            t.start();
+        }
+        for (Thread t : writers) t.join();
+        running.set(false);
+        for (Thread t : readers) t.join();
+        assertTrue(errors.isEmpty(), () -> "thread failed: " + errors);
+
+        int expected = SCAN_BATCHES * BATCH_SIZE + EDITORS * (ADDS_PER_EDITOR - REMOVES_PER_EDITOR);
+        List<String> lost = new ArrayList<>();
+        for (int e = 0; e < EDITORS; e++) {
+            for (int i = 0; i < ADDS_PER_EDITOR; i++) {
+                String name = "Edited " + e + "-" + i;
+                Software s = manager.findByName(name);
+                if (i < REMOVES_PER_EDITOR ? s != null : s == null || !s.getVersion().equals("2.0")) lost.add(name);
+            }
+        }
+        assertTrue(lost.isEmpty(), () -> lost.size() + " lost updates, first " + lost.get(0));
+        assertEquals(expected, manager.size());
+        manager.close();
+
+        SoftwareManager reloaded = new SoftwareManager(dataFile);
+        try {
+            assertEquals(expected, reloaded.size());
+            assertEquals("2.0", reloaded.findByName("Edited 0-" + (ADDS_PER_EDITOR - 1)).getVersion());
+        } finally {
+            reloaded.close();
+        }
+    }
+}
\ No newline at end of file
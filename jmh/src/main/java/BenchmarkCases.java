@@ -0,0 +1,1234 @@
+import benchmarks.Workload;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.swing.table.DefaultTableModel;
+
+// The cases behind the JMH benchmarks in package benchmarks (java -jar
+// jmh/target/benchmarks.jar). open("codec.toString") does the setup for one case and
+// returns its body; JMH times run() and keeps the result alive. A body that uses up
+// what it works on (a file it fills, a wheel it drains) gets it back in prepare(),
+// which runs before every iteration and is not timed.
+public class BenchmarkCases {
+    private static final Map<String, Integer> SIZES = Map.of("1k", 1_000, "100k", 100_000, "1M", 1_000_000);
+
+    public static Workload open(String name) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        // Per-scan info lines would drown the results
+        if (System.getProperty("tracker.log") == null) Log.setLevel(Log.Level.WARN);
+        int dot = name.indexOf('.');
+        String group = dot < 0 ? name : name.substring(0, dot);
+        String item = dot < 0 ? "" : name.substring(dot + 1);
+        switch (group) {
+            case "codec": return codec(item);
+            case "heap": return heap(item);
+            case "csv": return csv(item);
+            case "parse": return parse(item);
+            case "merge": return merge(item);
+            case "loadsave": return loadSave(item);
+            case "startup": return startup(item);
+            case "table": return table(item);
+            case "query": return query(item);
+            case "version": return version(item);
+            case "fleet": return fleet(item);
+            case "sources": return sources(item);
+            case "repository": return repository(item);
+            case "export": return export(item);
+            case "shell": return shell(item);
+            case "history": return history(item);
+            case "resolve": return resolve(item);
+            case "expiry": return expiry(item);
+            case "metrics": return metrics(item);
+            default: throw unknown(name);
+        }
+    }
+
+    private static IllegalArgumentException unknown(String name) {
+        return new IllegalArgumentException("No benchmark case " + name);
+    }
+
+    // A data file in the temp directory, with its journal cleaned up on exit
+    private static File tempDataFile(String prefix) throws IOException {
+        File file = File.createTempFile(prefix, ".txt");
+        file.deleteOnExit();
+        new File(file.getPath() + ".journal").deleteOnExit();
+        new File(file.getPath() + ".tmp").deleteOnExit();
+        new File(file.getPath() + ".history").deleteOnExit();
+        new File(file.getPath() + ".history.index").deleteOnExit();
+        new File(file.getPath() + ".expiry").deleteOnExit();
+        return file;
+    }
+
+    private static void deleteDataFile(File file) {
+        file.delete();
+        new File(file.getPath() + ".journal").delete();
+        new File(file.getPath() + ".history").delete();
+        new File(file.getPath() + ".history.index").delete();
+        new File(file.getPath() + ".expiry").delete();
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        directory.delete();
+    }
+
+    // Software.toString / fromString over 100k rows
+    private static Workload codec(String item) {
+        List<Software> rows = InventoryGenerator.generate(100_000, 42);
+        List<String> lines = new ArrayList<>(rows.size());
+        for (Software s : rows) lines.add(s.toString());
+
+        switch (item) {
+            case "toString":
+                return () -> {
+                    long length = 0;
+                    for (Software s : rows) length += s.toString().length();
+                    return length;
+                };
+            case "encode.reused":
+                return () -> {
+                    StringBuilder line = new StringBuilder(128);
+                    long length = 0;
+                    for (Software s : rows) {
+                        line.setLength(0);
+                        length += SoftwareCodec.encode(s, line).length();
+                    }
+                    return length;
+                };
+            case "fromString":
+                return () -> {
+                    List<Software> parsed = new ArrayList<>(lines.size());
+                    for (String line : lines) parsed.add(Software.fromString(line));
+                    return parsed;
+                };
+            case "legacySplit":
+                return () -> {
+                    List<LegacySoftware> parsed = new ArrayList<>(lines.size());
+                    for (String line : lines) parsed.add(LegacySoftware.fromString(line));
+                    return parsed;
+                };
+            default: throw unknown("codec." + item);
+        }
+    }
+
+    // The record as it was before the compact layout: four object fields, each
+    // parsed into its own String or LocalDate
+    private static final class LegacySoftware {
+        final String name;
+        final String version;
+        final LocalDate installationDate;
+        final String status;
+
+        LegacySoftware(String name, String version, LocalDate installationDate, String status) {
+            this.name = name;
+            this.version = version;
+            this.installationDate = installationDate;
+            this.status = status;
+        }
+
+        static LegacySoftware fromString(String line) {
+            String[] parts = line.split(",");
+            return new LegacySoftware(parts[0], parts[1], LocalDate.parse(parts[2]), parts[3]);
+        }
+    }
+
+    // Parsing 1M lines into the legacy record or Software, and what the parsed list
+    // retains per row. There is no object layout tool here, so that is the used-heap
+    // delta after GC, printed when the case closes.
+    private static Workload heap(String item) {
+        Function<String, Object> parse;
+        switch (item) {
+            case "legacy": parse = LegacySoftware::fromString; break;
+            case "software": parse = Software::fromString; break;
+            default: throw unknown("heap." + item);
+        }
+        List<String> lines = new ArrayList<>(1_000_000);
+        for (Software s : InventoryGenerator.generate(1_000_000, 42)) lines.add(s.toString());
+
+        return new Workload() {
+            private List<Object> parsed;
+
+            @Override
+            public void prepare() {
+                parsed = null;
+            }
+
+            @Override
+            public Object run() {
+                List<Object> list = new ArrayList<>(lines.size());
+                for (String line : lines) list.add(parse.apply(line));
+                parsed = list;
+                return list;
+            }
+
+            @Override
+            public void close() throws InterruptedException {
+                long retained = usedHeap();
+                int rows = parsed.size();
+                parsed = null;
+                retained -= usedHeap();
+                System.out.printf("heap.%s.1m %.1f bytes/row%n", item, retained / (double) rows);
+            }
+        };
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // PowerShell ConvertTo-Csv output: split/regex path vs CsvReader on 10k lines
+    private static Workload csv(String item) {
+        String fixture = powerShellFixture(10_000);
+
+        switch (item) {
+            case "legacySplitRegex":
+                return () -> {
+                    List<String> names = new ArrayList<>();
+                    boolean firstLine = true;
+                    for (String line : fixture.split("\n")) {
+                        line = line.trim();
+                        if (line.isEmpty()) continue;
+                        if (firstLine) {
+                            firstLine = false;
+                            continue;
+                        }
+                        String[] parts = line.split("\",\"");
+                        names.add(parts[0].replaceAll("^\"|\"$", "").trim());
+                        if (parts.length >= 2) names.add(parts[1].replaceAll("^\"|\"$", "").trim());
+                    }
+                    return names;
+                };
+            case "csvReader":
+                return () -> {
+                    List<String> names = new ArrayList<>();
+                    List<String> fields = new ArrayList<>();
+                    try (CsvReader reader = new CsvReader(new StringReader(fixture))) {
+                        reader.readRecord(fields);
+                        while (reader.readRecord(fields)) {
+                            names.add(fields.get(0));
+                            names.add(fields.get(1));
+                        }
+                    }
+                    return names;
+                };
+            default: throw unknown("csv." + item);
+        }
+    }
+
+    // parsePowerShellOutput on 10k lines of captured output, merged into an empty inventory
+    private static Workload parse(String item) throws IOException {
+        if (!item.equals("powerShellOutput.10k")) throw unknown("parse." + item);
+        byte[] fixture = powerShellFixture(10_000).getBytes(StandardCharsets.UTF_8);
+        File dataFile = tempDataFile("parse");
+
+        return new Workload() {
+            @Override
+            public Object run() throws IOException {
+                deleteDataFile(dataFile);
+                SoftwareManager manager = new SoftwareManager(dataFile);
+                int added = manager.parsePowerShellOutput(new ByteArrayInputStream(fixture));
+                manager.close();
+                return added;
+            }
+
+            @Override
+            public void close() {
+                deleteDataFile(dataFile);
+            }
+        };
+    }
+
+    // Scan dedup: linear equalsIgnoreCase loop vs the normalized-name index, without
+    // and with fuzzy matching
+    private static Workload merge(String item) throws IOException {
+        List<Software> scanned = InventoryGenerator.generate(100_000, 42);
+
+        switch (item) {
+            case "legacyLinear.20k": {
+                List<Software> legacySample = scanned.subList(0, 20_000);
+                return () -> {
+                    List<Software> list = new ArrayList<>();
+                    for (Software candidate : legacySample) {
+                        boolean exists = false;
+                        for (Software s : list) {
+                            if (s.getName().equalsIgnoreCase(candidate.getName())) {
+                                exists = true;
+                                break;
+                            }
+                        }
+                        if (!exists) list.add(candidate);
+                    }
+                    return list;
+                };
+            }
+            case "nameIndex.100k":
+            case "resolve.100k": {
+                // Exact names only, or with EntityResolver matching respellings as well
+                if (item.startsWith("nameIndex")) System.setProperty("tracker.resolve", "off");
+                File dataFile = tempDataFile("merge");
+                return new Workload() {
+                    @Override
+                    public Object run() {
+                        deleteDataFile(dataFile);
+                        SoftwareManager manager = new SoftwareManager(dataFile);
+                        manager.mergeScanned(scanned);
+                        manager.close();
+                        return manager;
+                    }
+
+                    @Override
+                    public void close() {
+                        System.clearProperty("tracker.resolve");
+                        deleteDataFile(dataFile);
+                    }
+                };
+            }
+            default: throw unknown("merge." + item);
+        }
+    }
+
+    // SoftwareManager.loadData (through the constructor) and saveData at each inventory size
+    private static Workload loadSave(String item) throws IOException {
+        int dot = item.indexOf('.');
+        Integer size = dot < 0 ? null : SIZES.get(item.substring(dot + 1));
+        String operation = dot < 0 ? item : item.substring(0, dot);
+        if (size == null || !(operation.equals("load") || operation.equals("save"))) throw unknown("loadsave." + item);
+        File dataFile = tempDataFile("loadsave");
+        deleteDataFile(dataFile);
+        InventoryGenerator.writeText(InventoryGenerator.generate(size, 42), dataFile);
+
+        if (operation.equals("load")) {
+            return new Workload() {
+                @Override
+                public Object run() {
+                    SoftwareManager manager = new SoftwareManager(dataFile);
+                    manager.close();
+                    return manager.size();
+                }
+
+                @Override
+                public void close() {
+                    deleteDataFile(dataFile);
+                }
+            };
+        }
+        SoftwareManager manager = new SoftwareManager(dataFile);
+        return new Workload() {
+            @Override
+            public Object run() throws IOException {
+                manager.saveData();
+                return dataFile.length();
+            }
+
+            @Override
+            public void close() {
+                manager.close();
+                deleteDataFile(dataFile);
+            }
+        };
+    }
+
+    // Loading 1M records: text lines through Software.fromString vs the binary snapshot
+    private static Workload startup(String item) throws IOException {
+        List<Software> rows = InventoryGenerator.generate(1_000_000, 42);
+        File file = File.createTempFile("bench", item.startsWith("text") ? ".txt" : ".bin");
+        file.deleteOnExit();
+
+        switch (item) {
+            case "text.1M":
+                InventoryGenerator.writeText(rows, file);
+                return () -> {
+                    List<Software> list = new ArrayList<>();
+                    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            list.add(Software.fromString(line));
+                        }
+                    }
+                    return list;
+                };
+            case "binary.1M":
+                BinarySnapshot.write(rows, 0, file);
+                return () -> {
+                    BinarySnapshot snapshot = BinarySnapshot.open(file);
+                    List<Software> list = new ArrayList<>(snapshot.size());
+                    for (int i = 0; i < snapshot.size(); i++) {
+                        list.add(snapshot.get(i));
+                    }
+                    return list;
+                };
+            case "binaryOpenOnly.1M":
+                BinarySnapshot.write(rows, 0, file);
+                return () -> BinarySnapshot.open(file);
+            default: throw unknown("startup." + item);
+        }
+    }
+
+    // Populating the dashboard table headless: the old DefaultTableModel rebuild
+    // against SoftwareTableModel, unsorted and sorted by name; and one edit from the
+    // dialog, published to the table
+    private static Workload table(String item) throws IOException {
+        File dataFile = tempDataFile("table");
+        deleteDataFile(dataFile);
+        SoftwareManager manager = new SoftwareManager(dataFile);
+        manager.mergeScanned(InventoryGenerator.generate(100_000, 42));
+
+        Workload body;
+        switch (item) {
+            case "legacyDefaultModel.100k": {
+                DefaultTableModel legacy = new DefaultTableModel(new String[]{"Name", "Version", "Installation Date", "Status"}, 0);
+                body = () -> {
+                    legacy.setRowCount(0);
+                    for (Software s : new ArrayList<>(manager.getAllSoftware())) {
+                        legacy.addRow(new Object[]{ s.getName(), s.getVersion(), s.getInstallationDate(), s.getStatus() });
+                    }
+                    return legacy.getRowCount();
+                };
+                break;
+            }
+            case "refresh.100k":
+            case "sortedRefresh.100k": {
+                SoftwareTableModel model = new SoftwareTableModel(manager);
+                if (item.startsWith("sorted")) model.sortBy(0);
+                body = () -> {
+                    model.refresh();
+                    return model.getRowCount();
+                };
+                break;
+            }
+            case "edit.100k": {
+                SoftwareTableModel model = new SoftwareTableModel(manager);
+                int[] next = new int[1];
+                body = () -> {
+                    int row = next[0]++ % manager.size();
+                    Software s = manager.get(row);
+                    manager.updateSoftware(row, s.getName(), s.getVersion(), s.getInstallationDate(),
+                        s.getStatus() == Status.TRIAL ? Status.INSTALLED : Status.TRIAL);
+                    return model.getRowCount();
+                };
+                break;
+            }
+            default:
+                manager.close();
+                throw unknown("table." + item);
+        }
+        return new Workload() {
+            @Override
+            public Object run() throws Exception {
+                return body.run();
+            }
+
+            @Override
+            public void close() {
+                manager.close();
+                deleteDataFile(dataFile);
+            }
+        };
+    }
+
+    // SoftwareIndex on 1M rows: the build, the update after 10 edits, then typical
+    // searches against a linear scan with the same predicate. Searches are meant to
+    // stay under 10 ms.
+    private static Workload query(String item) {
+        List<Software> rows = List.copyOf(InventoryGenerator.generate(1_000_000, 42));
+        if (item.equals("build.1m")) return () -> SoftwareIndex.build(rows);
+        SoftwareIndex index = SoftwareIndex.build(rows);
+        if (item.equals("update.1m")) {
+            List<Software> edited = new ArrayList<>(rows);
+            for (int i = 0; i < 10; i++) {
+                int row = i * 99_991;
+                edited.set(row, edited.get(row).withStatus(Status.EXPIRED));
+            }
+            List<Software> next = List.copyOf(edited);
+            return () -> index.update(next);
+        }
+        LocalDate to = LocalDate.of(2026, 2, 26);
+
+        SoftwareQuery contains = SoftwareQuery.all().nameContains("chrome 4242");
+        SoftwareQuery prefix = SoftwareQuery.all().nameStartsWith("Mozilla Fire").sortBy(SoftwareQuery.Sort.NAME, false).limit(100);
+        SoftwareQuery recent = SoftwareQuery.all().status(Status.TRIAL)
+            .installedBetween(to.minusDays(30), to).sortBy(SoftwareQuery.Sort.DATE, true);
+        SoftwareQuery newest = SoftwareQuery.all().status(Status.INSTALLED).versionAtLeast("20")
+            .sortBy(SoftwareQuery.Sort.DATE, true).limit(50);
+        switch (item) {
+            case "scan.contains.1m": return () -> scan(rows, contains);
+            case "index.contains.1m": return () -> index.select(contains);
+            case "index.prefix.1m": return () -> index.select(prefix);
+            case "scan.statusDate.1m": return () -> scan(rows, recent);
+            case "index.statusDate.1m": return () -> index.select(recent);
+            case "index.newest50.1m": return () -> index.select(newest);
+            default: throw unknown("query." + item);
+        }
+    }
+
+    private static int scan(List<Software> rows, SoftwareQuery query) {
+        int count = 0;
+        for (Software s : rows) {
+            if (query.matches(s)) count++;
+        }
+        return count;
+    }
+
+    // 1M version comparisons on pre-parsed Versions against splitting the strings on
+    // every call, then range lookups in a VersionIndex of 1M rows over 1,000 products
+    private static Workload version(String item) {
+        List<Software> generated = InventoryGenerator.generate(1_000_000, 42);
+        String[] texts = new String[generated.size()];
+        Version[] versions = new Version[generated.size()];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = generated.get(i).getVersion();
+            versions[i] = Version.of(texts[i]);
+        }
+
+        switch (item) {
+            case "compare.split.1m":
+                return () -> {
+                    int less = 0;
+                    for (int i = 1; i < texts.length; i++) {
+                        if (compareBySplit(texts[i - 1], texts[i]) < 0) less++;
+                    }
+                    return less;
+                };
+            case "compare.parsed.1m":
+                return () -> {
+                    int less = 0;
+                    for (int i = 1; i < versions.length; i++) {
+                        if (versions[i - 1].compareTo(versions[i]) < 0) less++;
+                    }
+                    return less;
+                };
+            case "index.build.1m":
+            case "index.olderThan.1k":
+                break;
+            default: throw unknown("version." + item);
+        }
+
+        List<Software> rows = new ArrayList<>(generated.size());
+        for (int i = 0; i < generated.size(); i++) {
+            Software s = generated.get(i);
+            rows.add(new Software("Product " + (i % 1_000), s.getVersion(), s.getEpochDay(), s.getStatus()));
+        }
+        if (item.equals("index.build.1m")) return () -> new VersionIndex(rows);
+        VersionIndex index = new VersionIndex(rows);
+        Version below = Version.of("2.45");
+        return () -> {
+            int count = 0;
+            for (int p = 0; p < 1_000; p++) count += index.count("Product " + p, null, below);
+            return count;
+        };
+    }
+
+    // The obvious implementation: split and parse both strings on every comparison
+    private static int compareBySplit(String a, String b) {
+        String[] left = a.split("\\.");
+        String[] right = b.split("\\.");
+        for (int i = 0; i < Math.max(left.length, right.length); i++) {
+            int l = i < left.length ? Integer.parseInt(left[i]) : 0;
+            int r = i < right.length ? Integer.parseInt(right[i]) : 0;
+            if (l != r) return Integer.compare(l, r);
+        }
+        return 0;
+    }
+
+    // FleetInventory ingest of 5,000 generated host exports with 300 entries each,
+    // then the fleet-wide questions over the result
+    private static Workload fleet(String item) throws IOException {
+        File directory = Files.createTempDirectory("fleet").toFile();
+        Workload body;
+        try {
+            InventoryGenerator.writeFleet(directory, 5_000, 300, 42);
+            if (item.equals("ingest.5000x300")) {
+                body = () -> {
+                    FleetInventory fleet = new FleetInventory();
+                    fleet.ingest(directory);
+                    return fleet;
+                };
+            } else {
+                FleetInventory fleet = new FleetInventory();
+                fleet.ingest(directory);
+                switch (item) {
+                    case "productHostCounts": body = () -> fleet.productHostCounts(); break;
+                    case "versionSpread": body = () -> fleet.versionSpread("Mozilla Chrome"); break;
+                    case "hostsBelow": body = () -> fleet.hostsBelow("Mozilla Chrome", "5.1"); break;
+                    default: throw unknown("fleet." + item);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteDirectory(directory);
+            throw e;
+        }
+        return new Workload() {
+            @Override
+            public Object run() throws Exception {
+                return body.run();
+            }
+
+            @Override
+            public void close() {
+                deleteDirectory(directory);
+            }
+        };
+    }
+
+    // A 20k-package dpkg status file read on its own, then scanned through the pipeline
+    // together with a second copy, as two sources feeding one merge; then back-to-back
+    // rescans where the scan cache answers both sources
+    private static Workload sources(String item) throws Exception {
+        File directory = Files.createTempDirectory("sources").toFile();
+        File first = new File(directory, "status");
+        File second = new File(directory, "status2");
+        try (PrintWriter out = new PrintWriter(new FileWriter(first))) {
+            for (Software s : InventoryGenerator.generate(20_000, 42)) {
+                out.println("Package: " + s.getName().toLowerCase().replace(' ', '-'));
+                out.println("Status: install ok installed");
+                out.println("Architecture: amd64");
+                out.println("Version: " + s.getVersion());
+                out.println("Description: generated package");
+                out.println(" with a continuation line");
+                out.println();
+            }
+        }
+        Files.copy(first.toPath(), second.toPath());
+        DpkgSource dpkg = new DpkgSource(first.toPath());
+        List<SoftwareSource> sources = List.of(dpkg, new DpkgSource(second.toPath()));
+        File dataFile = tempDataFile("sources");
+        File stateFile = new File(dataFile.getPath() + ".scanstate");
+        File cacheFile = new File(dataFile.getPath() + ".scancache");
+        SoftwareManager[] cached = new SoftwareManager[1];
+
+        Workload body;
+        switch (item) {
+            case "dpkgStatus.20k":
+                body = () -> {
+                    int[] count = new int[1];
+                    dpkg.scan(dpkg.getScopes().get(0), entry -> count[0]++);
+                    return count[0];
+                };
+                break;
+            case "pipeline.2x20k":
+                body = () -> {
+                    deleteDataFile(dataFile);
+                    stateFile.delete();
+                    SoftwareManager manager = new SoftwareManager(dataFile);
+                    manager.setSources(sources);
+                    ChangeSet changes = manager.scanForChanges();
+                    manager.close();
+                    return changes;
+                };
+                break;
+            case "pipeline.cached.2x20k":
+                deleteDataFile(dataFile);
+                stateFile.delete();
+                cached[0] = new SoftwareManager(dataFile);
+                cached[0].setSources(sources);
+                cached[0].scanForChanges();
+                body = () -> cached[0].scanForChanges();
+                break;
+            default:
+                deleteDirectory(directory);
+                throw unknown("sources." + item);
+        }
+        return new Workload() {
+            @Override
+            public Object run() throws Exception {
+                return body.run();
+            }
+
+            @Override
+            public void close() {
+                if (cached[0] != null) cached[0].close();
+                deleteDataFile(dataFile);
+                stateFile.delete();
+                cacheFile.delete();
+                deleteDirectory(directory);
+            }
+        };
+    }
+
+    // Bulk load of 1M scan rows (addAll then sync) and reading them back, through the
+    // text journal and through JdbcSoftwareRepository on an embedded H2 database; then a
+    // page and a count from that database
+    private static Workload repository(String item) throws IOException {
+        List<Software> rows = InventoryGenerator.generate(1_000_000, 42);
+
+        if (item.startsWith("text.")) {
+            File dataFile = tempDataFile("repository");
+            deleteDataFile(dataFile);
+            Workload body;
+            switch (item) {
+                case "text.addAll.1M":
+                    body = () -> {
+                        deleteDataFile(dataFile);
+                        TextSoftwareRepository repository = new TextSoftwareRepository(dataFile);
+                        repository.load();
+                        repository.addAll(rows);
+                        repository.sync();
+                        repository.close();
+                        return repository;
+                    };
+                    break;
+                case "text.load.1M":
+                    TextSoftwareRepository writer = new TextSoftwareRepository(dataFile);
+                    writer.load();
+                    writer.checkpoint(rows, true);
+                    writer.close();
+                    body = () -> {
+                        TextSoftwareRepository repository = new TextSoftwareRepository(dataFile);
+                        List<Software> loaded = repository.load();
+                        repository.close();
+                        return loaded.size();
+                    };
+                    break;
+                default: throw unknown("repository." + item);
+            }
+            return new Workload() {
+                @Override
+                public Object run() throws Exception {
+                    return body.run();
+                }
+
+                @Override
+                public void close() {
+                    deleteDataFile(dataFile);
+                }
+            };
+        }
+
+        File directory = Files.createTempDirectory("repository").toFile();
+        int[] databases = new int[1];
+        // A new database file for each addAll, which needs an empty table
+        Function<Integer, String> url = n -> "jdbc:h2:" + new File(directory, "bench" + n).getAbsolutePath();
+        JdbcSoftwareRepository[] open = new JdbcSoftwareRepository[1];
+        Workload body;
+        switch (item) {
+            case "jdbc.addAll.1M":
+                body = new Workload() {
+                    @Override
+                    public void prepare() {
+                        databases[0]++;
+                    }
+
+                    @Override
+                    public Object run() throws IOException {
+                        try (JdbcSoftwareRepository repository = new JdbcSoftwareRepository(url.apply(databases[0]))) {
+                            repository.load();
+                            repository.addAll(rows);
+                            repository.sync();
+                            return repository;
+                        }
+                    }
+                };
+                break;
+            case "jdbc.load.1M":
+            case "jdbc.page.50":
+            case "jdbc.count":
+                try (JdbcSoftwareRepository repository = new JdbcSoftwareRepository(url.apply(0))) {
+                    repository.load();
+                    repository.addAll(rows);
+                    repository.sync();
+                }
+                if (item.equals("jdbc.load.1M")) {
+                    body = () -> {
+                        try (JdbcSoftwareRepository repository = new JdbcSoftwareRepository(url.apply(0))) {
+                            return repository.load().size();
+                        }
+                    };
+                    break;
+                }
+                open[0] = new JdbcSoftwareRepository(url.apply(0));
+                open[0].load();
+                SoftwareQuery query = SoftwareQuery.all().nameStartsWith("m").status(Status.INSTALLED)
+                    .sortBy(SoftwareQuery.Sort.NAME, false);
+                body = item.equals("jdbc.count") ? () -> open[0].count(query) : () -> open[0].page(query, 1000, 50);
+                break;
+            default:
+                deleteDirectory(directory);
+                throw unknown("repository." + item);
+        }
+        return new Workload() {
+            @Override
+            public void prepare() throws Exception {
+                body.prepare();
+            }
+
+            @Override
+            public Object run() throws Exception {
+                return body.run();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (open[0] != null) open[0].close();
+                deleteDirectory(directory);
+            }
+        };
+    }
+
+    // 1M records through each ExportFormat: write, read back, and import into an
+    // empty manager (read plus upsertAll and the journal); the file size per record
+    // is printed after the write
+    private static Workload export(String item) throws Exception {
+        String[] parts = item.split("\\.");
+        ExportFormat format = null;
+        for (ExportFormat f : ExportFormat.values()) {
+            if (f.name().equalsIgnoreCase(parts[0])) format = f;
+        }
+        if (format == null || parts.length != 3) throw unknown("export." + item);
+        ExportFormat selected = format;
+        List<Software> rows = InventoryGenerator.generate(1_000_000, 42);
+        File file = File.createTempFile("bench", "." + format.getExtension());
+        file.deleteOnExit();
+        Workload write = () -> {
+            try (SoftwareWriter writer = selected.openWriter(new FileOutputStream(file))) {
+                for (Software s : rows) writer.write(s);
+            }
+            return file.length();
+        };
+        File dataFile = tempDataFile("export");
+
+        Workload body;
+        switch (parts[1]) {
+            case "write":
+                body = write;
+                break;
+            case "read":
+                write.run();
+                body = () -> {
+                    int count = 0;
+                    try (SoftwareReader reader = selected.openReader(new FileInputStream(file))) {
+                        while (reader.read() != null) count++;
+                    }
+                    return count;
+                };
+                break;
+            case "import":
+                write.run();
+                body = () -> {
+                    deleteDataFile(dataFile);
+                    SoftwareManager manager = new SoftwareManager(dataFile);
+                    int added = manager.importFrom(file, selected);
+                    manager.close();
+                    return added;
+                };
+                break;
+            default:
+                file.delete();
+                throw unknown("export." + item);
+        }
+        return new Workload() {
+            @Override
+            public Object run() throws Exception {
+                return body.run();
+            }
+
+            @Override
+            public void close() {
+                if (parts[1].equals("write")) {
+                    System.out.printf("export.%s.bytesPerRecord %.1f bytes%n", parts[0], (double) file.length() / rows.size());
+                }
+                deleteDataFile(dataFile);
+                file.delete();
+            }
+        };
+    }
+
+    // One short command through a new /bin/sh each time, as the PowerShell scan used
+    // to run, against the same command on a pooled session
+    private static Workload shell(String item) {
+        if (!new File("/bin/sh").canExecute()) throw new IllegalStateException("shell benchmarks need /bin/sh");
+        switch (item) {
+            case "spawnPerCommand":
+                return () -> {
+                    Process process = new ProcessBuilder("/bin/sh", "-c", "echo hello").start();
+                    byte[] output = process.getInputStream().readAllBytes();
+                    process.waitFor();
+                    return output;
+                };
+            case "pooledSession": {
+                ShellSessionPool pool = ShellSessionPool.posix(1);
+                return new Workload() {
+                    @Override
+                    public Object run() throws Exception {
+                        return pool.run("echo hello", 10, TimeUnit.SECONDS);
+                    }
+
+                    @Override
+                    public void close() {
+                        pool.close();
+                        Metrics.Timer command = Metrics.SHELL_COMMAND;
+                        System.out.printf("shell.command p50 %.3f ms, p99 %.3f ms, %d spawns avoided%n",
+                            command.percentileNanos(0.5) / 1e6, command.percentileNanos(0.99) / 1e6,
+                            Metrics.SHELL_SPAWNS_AVOIDED.get());
+                    }
+                };
+            }
+            default: throw unknown("shell." + item);
+        }
+    }
+
+    // 10M events: 100k products with 100 version and status changes each, an hour apart
+    // per product
+    private static final int HISTORY_PRODUCTS = 100_000;
+    private static final int HISTORY_CHANGES = 100;
+    private static final long HISTORY_START = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    private static final long HOUR = 3_600_000L;
+
+    private static long writeHistory(File file) throws IOException {
+        Status[] statuses = Status.values();
+        try (SoftwareHistory history = SoftwareHistory.open(file)) {
+            for (int c = 0; c < HISTORY_CHANGES; c++) {
+                for (int p = 0; p < HISTORY_PRODUCTS; p++) {
+                    history.record("Product " + p, "1." + c, 18_000 + c, statuses[(p + c) % 3],
+                        HISTORY_START + c * HOUR + p);
+                }
+            }
+            return history.size();
+        }
+    }
+
+    private static Workload history(String item) throws IOException {
+        File file = File.createTempFile("history", ".history");
+        File index = new File(file.getPath() + ".index");
+        file.deleteOnExit();
+        index.deleteOnExit();
+        file.delete();
+        if (item.equals("write.10M")) {
+            return new Workload() {
+                @Override
+                public void prepare() {
+                    file.delete();
+                }
+
+                @Override
+                public Object run() throws IOException {
+                    return writeHistory(file);
+                }
+
+                @Override
+                public void close() {
+                    System.out.printf("history.bytesPerEvent %.2f bytes%n",
+                        (double) file.length() / ((long) HISTORY_PRODUCTS * HISTORY_CHANGES));
+                    file.delete();
+                    index.delete();
+                }
+            };
+        }
+
+        writeHistory(file);
+        SoftwareHistory[] loaded = new SoftwareHistory[1];
+        Instant middle = Instant.ofEpochMilli(HISTORY_START + HISTORY_CHANGES / 2 * HOUR);
+        Workload body;
+        switch (item) {
+            case "open.10M":
+            case "replay.10M":
+                // replay.10M opens without the index, reading the whole log
+                body = new Workload() {
+                    @Override
+                    public void prepare() throws IOException {
+                        if (loaded[0] != null) loaded[0].close();
+                        loaded[0] = null;
+                        if (item.startsWith("replay")) index.delete();
+                    }
+
+                    @Override
+                    public Object run() throws IOException {
+                        return loaded[0] = SoftwareHistory.open(file);
+                    }
+                };
+                break;
+            case "inventoryAsOf.100k":
+            case "timeline.100":
+            case "asOf.1": {
+                SoftwareHistory history = SoftwareHistory.open(file);
+                loaded[0] = history;
+                if (item.startsWith("inventoryAsOf")) {
+                    body = () -> history.inventoryAsOf(middle);
+                } else if (item.startsWith("timeline")) {
+                    body = () -> history.timeline("Product 4242");
+                } else {
+                    body = () -> history.asOf("Product 4242", middle);
+                }
+                break;
+            }
+            default:
+                file.delete();
+                index.delete();
+                throw unknown("history." + item);
+        }
+        return new Workload() {
+            @Override
+            public void prepare() throws Exception {
+                body.prepare();
+            }
+
+            @Override
+            public Object run() throws Exception {
+                return body.run();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (loaded[0] != null) loaded[0].close();
+                file.delete();
+                index.delete();
+            }
+        };
+    }
+
+    // EntityResolver over 1M names: 700k distinct products, then 300k respellings of
+    // them (case and spacing, "Inc.", a version, an architecture tag, a dropped last
+    // letter). The clustering prints how many pairs were compared against the n^2/2 of
+    // all pairs, how many respellings found their product, and how many products were
+    // merged into another by mistake.
+    private static Workload resolve(String item) {
+        int products = 700_000;
+        int variants = 300_000;
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>(products + variants);
+        for (int i = 0; i < products; i++) {
+            names.add(capitalize(randomWord(random, 5, 9)) + " " + capitalize(randomWord(random, 4, 10))
+                + " " + capitalize(randomWord(random, 4, 8)));
+        }
+        int[] original = new int[variants];
+        for (int v = 0; v < variants; v++) {
+            original[v] = random.nextInt(products);
+            String base = names.get(original[v]);
+            String variant;
+            switch (v % 5) {
+                case 0: variant = base.toLowerCase().replace(" ", "  "); break;
+                case 1: variant = base + ", Inc."; break;
+                case 2: variant = base + " " + random.nextInt(20) + "." + random.nextInt(10); break;
+                case 3: variant = base + " (x64)"; break;
+                default: variant = base.substring(0, base.length() - 1);
+            }
+            names.add(variant);
+        }
+        EntityResolver.Rules rules = EntityResolver.Rules.defaults();
+
+        switch (item) {
+            case "cluster.1m":
+                return new Workload() {
+                    private int[] groups;
+                    private long comparisons;
+
+                    @Override
+                    public Object run() {
+                        long before = Metrics.RESOLVE_COMPARISONS.get();
+                        groups = EntityResolver.cluster(names, rules);
+                        comparisons = Metrics.RESOLVE_COMPARISONS.get() - before;
+                        return groups;
+                    }
+
+                    @Override
+                    public void close() {
+                        int found = 0;
+                        for (int v = 0; v < variants; v++) {
+                            if (groups[products + v] == groups[original[v]]) found++;
+                        }
+                        int wrong = 0;
+                        for (int i = 0; i < products; i++) {
+                            if (groups[i] != i) wrong++;
+                        }
+                        long allPairs = (long) names.size() * (names.size() - 1) / 2;
+                        System.out.printf("resolve.comparisons %d pairs (%.1f per name, %d in all)%n",
+                            comparisons, (double) comparisons / names.size(), allPairs);
+                        System.out.printf("resolve.recall %.1f %%, falseMerges %d products%n",
+                            100.0 * found / variants, wrong);
+                    }
+                };
+            case "index.700k":
+                return () -> {
+                    EntityResolver index = new EntityResolver(rules);
+                    index.addAll(names.subList(0, products));
+                    return index;
+                };
+            case "match.10k": {
+                EntityResolver index = new EntityResolver(rules);
+                index.addAll(names.subList(0, products));
+                List<String> queries = names.subList(products, products + 10_000);
+                return () -> {
+                    int matched = 0;
+                    for (String query : queries) {
+                        if (index.match(query) != null) matched++;
+                    }
+                    return matched;
+                };
+            }
+            default: throw unknown("resolve." + item);
+        }
+    }
+
+    private static String randomWord(Random random, int min, int max) {
+        String letters = "abcdefghijklmnopqrstuvwxyz";
+        char[] word = new char[min + random.nextInt(max - min + 1)];
+        for (int i = 0; i < word.length; i++) word[i] = letters.charAt(random.nextInt(letters.length()));
+        return new String(word);
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    // TimerWheel with 10M deadlines spread over a year at one-second ticks, then
+    // advanced through that year a day at a time; and ExpiryScheduler setting and then
+    // expiring deadlines for every Trial or Installed record of 100k in one batch.
+    // Needs about 600 MB of heap for the wheel.
+    private static Workload expiry(String item) throws IOException {
+        long day = 86_400_000L;
+        switch (item) {
+            case "wheel.schedule.10M":
+            case "wheel.advanceYear.10M": {
+                int timers = 10_000_000;
+                long start = LocalDate.of(2026, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+                long year = 365 * day;
+                Random random = new Random(42);
+                long[] deadlines = new long[timers];
+                for (int i = 0; i < timers; i++) deadlines[i] = start + (long) (random.nextDouble() * year);
+                boolean schedule = item.startsWith("wheel.schedule");
+                return new Workload() {
+                    private TimerWheel wheel;
+
+                    @Override
+                    public void prepare() {
+                        wheel = null;
+                        if (schedule) return;
+                        wheel = new TimerWheel(1000, start);
+                        for (int i = 0; i < timers; i++) wheel.schedule(deadlines[i], i);
+                    }
+
+                    @Override
+                    public Object run() {
+                        if (schedule) {
+                            wheel = new TimerWheel(1000, start);
+                            for (int i = 0; i < timers; i++) wheel.schedule(deadlines[i], i);
+                            return wheel.size();
+                        }
+                        long fired = 0;
+                        for (long now = start + day; now <= start + year; now += day) {
+                            fired += wheel.advance(now, payload -> { });
+                        }
+                        return fired;
+                    }
+                };
+            }
+            case "setDeadlines.100k":
+            case "batch.100k": {
+                List<Software> rows = InventoryGenerator.generate(100_000, 42);
+                File dataFile = tempDataFile("expiry");
+                boolean batch = item.startsWith("batch");
+                return new Workload() {
+                    private SoftwareManager manager;
+                    private Map<String, Instant> due;
+
+                    // A fresh inventory each time, as the batch leaves every record Expired
+                    @Override
+                    public void prepare() throws IOException {
+                        if (manager != null) manager.close();
+                        deleteDataFile(dataFile);
+                        InventoryGenerator.writeText(rows, dataFile);
+                        manager = new SoftwareManager(dataFile);
+                        due = new HashMap<>();
+                        Instant yesterday = Instant.now().minusMillis(day);
+                        for (Software s : manager.getAllSoftware()) {
+                            if (ExpiryScheduler.canExpire(s.getStatus())) due.put(s.getName(), yesterday);
+                        }
+                        // A new history is seeded with every record on first use; not part of the batch
+                        manager.getHistory();
+                        if (batch) manager.getExpiryScheduler().setDeadlines(due);
+                    }
+
+                    @Override
+                    public Object run() throws IOException {
+                        ExpiryScheduler scheduler = manager.getExpiryScheduler();
+                        if (batch) return scheduler.runDue().size();
+                        scheduler.setDeadlines(due);
+                        return scheduler.size();
+                    }
+
+                    @Override
+                    public void close() {
+                        if (manager != null) manager.close();
+                        deleteDataFile(dataFile);
+                    }
+                };
+            }
+            default: throw unknown("expiry." + item);
+        }
+    }
+
+    // Cost of the instrumentation itself: 1M timer records, spans and filtered-out debug logs
+    private static Workload metrics(String item) {
+        Metrics.Timer timer = Metrics.timer("benchmark.record");
+        switch (item) {
+            case "timerRecord.1M":
+                return () -> {
+                    for (int i = 0; i < 1_000_000; i++) timer.record(i);
+                    return timer;
+                };
+            case "span.1M":
+                return () -> {
+                    for (int i = 0; i < 1_000_000; i++) {
+                        try (Metrics.Span span = timer.start()) {
+                            span.setCount(i);
+                        }
+                    }
+                    return timer;
+                };
+            case "debugLogFiltered.1M":
+                Log.setLevel(Log.Level.INFO);
+                return () -> {
+                    for (int i = 0; i < 1_000_000; i++) Log.debug("benchmark.debug", "i", i);
+                    return timer;
+                };
+            default: throw unknown("metrics." + item);
+        }
+    }
+
+    static String powerShellFixture(int lines) {
+        StringBuilder sb = new StringBuilder("\"DisplayName\",\"DisplayVersion\",\"InstallDate\"\r\n");
+        for (int i = 0; i < lines; i++) {
+            switch (i % 4) {
+                case 0:
+                    sb.append("\"Product ").append(i).append("\",\"1.").append(i % 97).append(".0\",\"20260226\"\r\n");
+                    break;
+                case 1:
+                    sb.append("\"Vendor, Inc. Tool ").append(i).append("\",\"16.0.").append(i).append("\",\"\"\r\n");
+                    break;
+                case 2:
+                    sb.append("\"The \"\"Quoted\"\" App ").append(i).append("\",\"2025.2\",\"20251203\"\r\n");
+                    break;
+                default:
+                    sb.append("\"Microsoft Visual C++ 2015 x64 Redistributable - 14.").append(i)
+                      .append("\",\"14.40.33810.0\",\"20240101\"\r\n");
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
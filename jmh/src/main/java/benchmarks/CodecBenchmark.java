@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Software.toString / fromString over 100k rows
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CodecBenchmark extends WorkloadBenchmark {
+    @Param({ "toString", "encode.reused", "fromString", "legacySplit" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "codec." + name;
+    }
+}
\ No newline at end of file
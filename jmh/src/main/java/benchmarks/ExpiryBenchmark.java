@@ -0,0 +1,28 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// TimerWheel with 10M deadlines spread over a year at one-second ticks, then
+// advanced through that year a day at a time; and ExpiryScheduler marking 100k
+// records Expired in one batch
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ExpiryBenchmark extends WorkloadBenchmark {
+    @Param({ "wheel.schedule.10M", "wheel.advanceYear.10M", "setDeadlines.100k", "batch.100k" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "expiry." + name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 1M records through each ExportFormat: write, read back, and import into an
+// empty manager (read plus upsertAll and the journal); the file size per record is
+// printed after the write
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ExportBenchmark extends WorkloadBenchmark {
+    @Param({ "csv.write.1M", "csv.read.1M", "csv.import.1M", "jsonl.write.1M", "jsonl.read.1M", "jsonl.import.1M", "columnar.write.1M", "columnar.read.1M", "columnar.import.1M" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "export." + name;
+    }
+}
\ No newline at end of file
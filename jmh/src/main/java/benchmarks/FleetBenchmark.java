@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// FleetInventory ingest of 5,000 generated host exports with 300 entries each,
+// then the fleet-wide questions over the result
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FleetBenchmark extends WorkloadBenchmark {
+    @Param({ "ingest.5000x300", "productHostCounts", "versionSpread", "hostsBelow" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "fleet." + name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Parsing 1M text lines into the legacy record and into Software; the retained
+// bytes per row are printed when each case ends
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HeapBenchmark extends WorkloadBenchmark {
+    @Param({ "legacy", "software" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "heap." + name;
+    }
+}
\ No newline at end of file
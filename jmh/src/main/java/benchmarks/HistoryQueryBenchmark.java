@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Point-in-time and per-product queries on the 10M-event history
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HistoryQueryBenchmark extends WorkloadBenchmark {
+    @Param({ "inventoryAsOf.100k", "timeline.100", "asOf.1" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "history." + name;
+    }
+}
\ No newline at end of file
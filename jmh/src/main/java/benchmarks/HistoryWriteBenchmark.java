@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 10M events: 100k products with 100 version and status changes each, an hour apart
+// per product, written and then opened, with and without the index
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HistoryWriteBenchmark extends WorkloadBenchmark {
+    @Param({ "write.10M", "open.10M", "replay.10M" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "history." + name;
+    }
+}
\ No newline at end of file
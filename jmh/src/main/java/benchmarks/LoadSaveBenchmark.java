@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// SoftwareManager.loadData (through the constructor) and saveData at each inventory size
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadSaveBenchmark extends WorkloadBenchmark {
+    @Param({ "load.1k", "save.1k", "load.100k", "save.100k", "load.1M", "save.1M" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "loadsave." + name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Scan dedup: linear equalsIgnoreCase loop vs the normalized-name index, without
+// and with fuzzy matching
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MergeBenchmark extends WorkloadBenchmark {
+    @Param({ "legacyLinear.20k", "nameIndex.100k", "resolve.100k" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "merge." + name;
+    }
+}
\ No newline at end of file
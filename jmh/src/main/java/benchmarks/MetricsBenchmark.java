@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of the instrumentation itself: 1M timer records, spans and filtered-out debug logs
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MetricsBenchmark extends WorkloadBenchmark {
+    @Param({ "timerRecord.1M", "span.1M", "debugLogFiltered.1M" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "metrics." + name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// SoftwareIndex on 1M rows: the build, the update after 10 edits, then typical
+// searches against a linear scan with the same predicate. Searches are meant to
+// stay under 10 ms.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark extends WorkloadBenchmark {
+    @Param({ "build.1m", "update.1m", "scan.contains.1m", "index.contains.1m", "index.prefix.1m", "scan.statusDate.1m", "index.statusDate.1m", "index.newest50.1m" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "query." + name;
+    }
+}
\ No newline at end of file
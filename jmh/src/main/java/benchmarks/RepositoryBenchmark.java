@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Bulk load of 1M scan rows (addAll then sync) and reading them back, through the
+// text journal and through JdbcSoftwareRepository on an embedded H2 database
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RepositoryBenchmark extends WorkloadBenchmark {
+    @Param({ "text.addAll.1M", "text.load.1M", "jdbc.addAll.1M", "jdbc.load.1M" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "repository." + name;
+    }
+}
\ No newline at end of file
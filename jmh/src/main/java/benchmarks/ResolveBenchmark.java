@@ -0,0 +1,28 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// EntityResolver over 1M names: 700k distinct products, then 300k respellings of
+// them (case and spacing, "Inc.", a version, an architecture tag, a dropped last
+// letter). Comparisons, recall and false merges are printed after the clustering.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ResolveBenchmark extends WorkloadBenchmark {
+    @Param({ "cluster.1m", "index.700k", "match.10k" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "resolve." + name;
+    }
+}
\ No newline at end of file
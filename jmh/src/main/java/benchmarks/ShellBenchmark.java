@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One short command through a new /bin/sh each time, as the PowerShell scan used
+// to run, against the same command on a pooled session
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShellBenchmark extends WorkloadBenchmark {
+    @Param({ "spawnPerCommand", "pooledSession" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "shell." + name;
+    }
+}
\ No newline at end of file
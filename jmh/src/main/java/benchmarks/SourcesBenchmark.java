@@ -0,0 +1,28 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A 20k-package dpkg status file read on its own, then scanned through the pipeline
+// together with a second copy, as two sources feeding one merge; then back-to-back
+// rescans where the scan cache answers both sources
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourcesBenchmark extends WorkloadBenchmark {
+    @Param({ "dpkgStatus.20k", "pipeline.2x20k", "pipeline.cached.2x20k" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "sources." + name;
+    }
+}
\ No newline at end of file
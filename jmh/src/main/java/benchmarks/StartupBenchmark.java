@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Loading 1M records: text lines through Software.fromString vs the binary snapshot
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark extends WorkloadBenchmark {
+    @Param({ "text.1M", "binary.1M", "binaryOpenOnly.1M" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "startup." + name;
+    }
+}
\ No newline at end of file
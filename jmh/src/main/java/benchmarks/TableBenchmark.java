@@ -0,0 +1,28 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Populating the dashboard table headless: the old DefaultTableModel rebuild
+// against SoftwareTableModel, unsorted and sorted by name; and one edit from the
+// dialog, published to the table
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TableBenchmark extends WorkloadBenchmark {
+    @Param({ "legacyDefaultModel.100k", "refresh.100k", "sortedRefresh.100k", "edit.100k" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "table." + name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 1M version comparisons on pre-parsed Versions against splitting the strings on
+// every call, then range lookups in a VersionIndex of 1M rows over 1,000 products
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark extends WorkloadBenchmark {
+    @Param({ "compare.split.1m", "compare.parsed.1m", "index.build.1m", "index.olderThan.1k" })
+    public String name;
+
+    @Override
+    protected String caseName() {
+        return "version." + name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+
+// One benchmark case: run() is the timed body, prepare() runs untimed before each
+// iteration, close() when the case is done. The tracker's classes are in the default
+// package, which JMH won't generate benchmarks for and a named package can't import,
+// so the cases themselves are in BenchmarkCases (default package) and looked up by name.
+public interface Workload extends AutoCloseable {
+    Object run() throws Exception;
+
+    default void prepare() throws Exception {
+    }
+
+    @Override
+    default void close() throws Exception {
+    }
+
+    static Workload open(String name) throws Exception {
+        try {
+            return (Workload) Class.forName("BenchmarkCases").getMethod("open", String.class).invoke(null, name);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Each subclass is one group of cases, picked by its "name" @Param, and sets how the
+// group is timed; the case "codec.toString" is CodecBenchmark.run with name=toString
+@State(Scope.Benchmark)
+public abstract class WorkloadBenchmark {
+    private Workload workload;
+
+    protected abstract String caseName();
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        workload = Workload.open(caseName());
+    }
+
+    @Setup(Level.Iteration)
+    public void prepare() throws Exception {
+        workload.prepare();
+    }
+
+    @Benchmark
+    public Object run() throws Exception {
+        return workload.run();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        workload.close();
+    }
+}
\ No newline at end of file